@@ -0,0 +1,89 @@
+package com.labinf.libraryapi.bench;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.BooksAvailabilityDTO;
+import com.labinf.libraryapi.dto.BooksAvailabilityRequestDTO;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.model.repository.LoanRepository;
+import com.labinf.libraryapi.service.BookAvailabilityService;
+import com.labinf.libraryapi.service.LoanService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Availability of a search results page of books, one third of the catalog being on loan:
+ * one exists query per book against the bulk lookup in the bitmap of loaned books.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvailabilityBenchmark {
+
+    @Param({"200", "1000"})
+    public int pageSize;
+
+    private LoanRepository loanRepository;
+    private BookAvailabilityService availabilityService;
+    private List<Book> page;
+    private BooksAvailabilityRequestDTO byIds;
+    private BooksAvailabilityRequestDTO byIsbns;
+
+    @Setup(Level.Trial)
+    public void setUp(LibraryState state) {
+        loanRepository = state.bean(LoanRepository.class);
+        availabilityService = state.bean(BookAvailabilityService.class);
+
+        List<LoanDTO> checkouts = new ArrayList<>();
+        for (int i = 0; i < state.books; i += 3) {
+            checkouts.add(LoanDTO.builder().isbn("isbn-" + i).customer("Bench").email("bench@library-api.com").build());
+        }
+        state.bean(LoanService.class).saveBatch(checkouts);
+
+        page = state.bean(BookRepository.class).findAll().stream()
+                .limit(pageSize)
+                .collect(Collectors.toList());
+        byIds = BooksAvailabilityRequestDTO.builder()
+                .ids(page.stream().map(Book::getId).collect(Collectors.toList()))
+                .build();
+        byIsbns = BooksAvailabilityRequestDTO.builder()
+                .isbns(page.stream().map(Book::getIsbn).collect(Collectors.toList()))
+                .build();
+    }
+
+    @Benchmark
+    public void existsPerBook(Blackhole blackhole) {
+        for (Book book : page) {
+            blackhole.consume(loanRepository.existsByBookAndNotReturned(book));
+        }
+    }
+
+    @Benchmark
+    public BooksAvailabilityDTO bitmapByIds() {
+        return availabilityService.getAvailability(byIds);
+    }
+
+    @Benchmark
+    public BooksAvailabilityDTO bitmapByIsbns() {
+        return availabilityService.getAvailability(byIsbns);
+    }
+}
@@ -0,0 +1,98 @@
+package com.labinf.libraryapi.bench;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.dto.LoanFilterDTO;
+import com.labinf.libraryapi.model.repository.support.KeysetPage;
+import com.labinf.libraryapi.resource.BookController;
+import com.labinf.libraryapi.resource.LoanController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+
+    @Param({"20", "100"})
+    public int pageSize;
+
+    @Param({"exact", "cached", "estimated", "none"})
+    public String count;
+
+    private BookController bookController;
+    private LoanController loanController;
+    private Pageable page;
+    private BookDTO bookFilter;
+    private LoanFilterDTO loanFilter;
+    private Long popularBookId;
+    private Pageable deepPage;
+    private String deepCursor;
+
+    @Setup(Level.Trial)
+    public void setUp(LibraryState state) {
+        bookController = state.bean(BookController.class);
+        loanController = state.bean(LoanController.class);
+        page = PageRequest.of(0, pageSize);
+        bookFilter = BookDTO.builder().title("book 1").build();
+        loanFilter = LoanFilterDTO.builder()
+                .isbn(state.popularBook.getIsbn())
+                .customer("Customer 1")
+                .build();
+        popularBookId = state.popularBook.getId();
+
+        // the last full page of the catalog, reached by offset and by cursor
+        int lastPage = state.books / pageSize - 1;
+        Sort byTitle = Sort.by("title");
+        deepPage = PageRequest.of(lastPage, pageSize, byTitle);
+        String after = "";
+        for (int i = 0; i < lastPage; i++) {
+            after = LibraryState.await(bookController.findAfter(new BookDTO(), after, PageRequest.of(0, pageSize, byTitle))).getNext();
+        }
+        deepCursor = after;
+    }
+
+    @Benchmark
+    public Slice<BookDTO> findBooks() {
+        return LibraryState.await(bookController.find(bookFilter, page, count));
+    }
+
+    @Benchmark
+    public Slice<BookDTO> deepBooksByOffset() {
+        return LibraryState.await(bookController.find(new BookDTO(), deepPage, count));
+    }
+
+    @Benchmark
+    public KeysetPage<BookDTO> deepBooksByCursor() {
+        return LibraryState.await(bookController.findAfter(new BookDTO(), deepCursor, PageRequest.of(0, pageSize)));
+    }
+
+    @Benchmark
+    public Slice<LoanDTO> findLoans() {
+        return LibraryState.await(loanController.find(loanFilter, page, count));
+    }
+
+    @Benchmark
+    public Slice<LoanDTO> loansByBook() {
+        return LibraryState.awaitBody(bookController.loansByBook(popularBookId, page, count, null));
+    }
+}
@@ -0,0 +1,129 @@
+package com.labinf.libraryapi.bench;
+
+import com.labinf.libraryapi.LibraryApiApplication;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.model.repository.LoanRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Boots the application (on a random port) once per trial against an in-memory H2 and seeds a catalog.
+ * Every book gets {@code loansPerBook} returned loans, and the first book is the
+ * "popular" one with {@code popularLoans} loans so deep loan histories can be measured.
+ */
+@State(Scope.Benchmark)
+public class LibraryState {
+
+    static final String[] ARGS = {
+            "--spring.main.banner-mode=off",
+            "--server.port=0",
+            "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+            "--spring.jpa.show-sql=false",
+            "--spring.boot.admin.client.enabled=false",
+            "--logging.level.root=WARN",
+            "--logging.file=./target/logs/library-api-bench.log"
+    };
+
+    @Param("1000")
+    public int books;
+
+    @Param("2")
+    public int loansPerBook;
+
+    @Param("500")
+    public int popularLoans;
+
+    public ConfigurableApplicationContext context;
+
+    public Book popularBook;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class).run(ARGS);
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Waits for the answer of a controller, which runs on the request executors of the api.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T await(DeferredResult<T> result) {
+        CompletableFuture<Object> answer = new CompletableFuture<>();
+        result.setResultHandler(answer::complete);
+        Object value = answer.join();
+        if (value instanceof Throwable) {
+            throw new IllegalStateException((Throwable) value);
+        }
+        return (T) value;
+    }
+
+    /**
+     * Waits for a controller that answers with headers, like the conditional reads, and gives the body.
+     */
+    public static <T> T awaitBody(DeferredResult<ResponseEntity<T>> result) {
+        return await(result).getBody();
+    }
+
+    public String nextIsbn() {
+        return "bench-" + sequence.incrementAndGet();
+    }
+
+    private void seed() {
+        BookRepository bookRepository = bean(BookRepository.class);
+        LoanRepository loanRepository = bean(LoanRepository.class);
+
+        List<Book> catalog = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            catalog.add(Book.builder()
+                    .title("Book " + i)
+                    .author("Author " + (i % 50))
+                    .isbn("isbn-" + i)
+                    .build());
+        }
+        catalog = bookRepository.saveAll(catalog);
+        popularBook = catalog.get(0);
+
+        List<Loan> loans = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < catalog.size(); i++) {
+            int count = i == 0 ? popularLoans : loansPerBook;
+            for (int j = 0; j < count; j++) {
+                loans.add(Loan.builder()
+                        .book(catalog.get(i))
+                        .customer("Customer " + (j % 100))
+                        .customerEmail("customer" + (j % 100) + "@library-api.com")
+                        .loanDate(today.minusDays(j))
+                        .returned(true)
+                        .build());
+            }
+        }
+        loanRepository.saveAll(loans);
+    }
+}
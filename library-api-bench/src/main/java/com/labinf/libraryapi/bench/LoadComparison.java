@@ -0,0 +1,113 @@
+package com.labinf.libraryapi.bench;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fires the same GET at running instances of the servlet and the reactive api, keeping as many requests
+ * in flight as the concurrency asks, each on its own connection, and prints throughput and latencies.
+ * The instances are started apart so each one has the machine to itself:
+ * <pre>
+ * java -jar library-api/target/library-api-0.0.1-SNAPSHOT-exec.jar
+ * java -jar library-api-reactive/target/library-api-reactive-0.0.1-SNAPSHOT.jar
+ * mvn exec:exec -Dbench.main=com.labinf.libraryapi.bench.LoadComparison \
+ *     -Dbench.args="concurrency=1000 requests=50000 http://localhost:8080 http://localhost:8090"
+ * </pre>
+ * The path may hold {@code {id}}, replaced by a book created on each instance before the run.
+ */
+public class LoadComparison {
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        options.put("concurrency", "500");
+        options.put("requests", "20000");
+        options.put("warmup", "5000");
+        options.put("path", "/api/books/{id}");
+        String[] targets = Arrays.stream(args).filter(arg -> {
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                return true;
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+            return false;
+        }).toArray(String[]::new);
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+        int requests = Integer.parseInt(options.get("requests"));
+        int warmup = Integer.parseInt(options.get("warmup"));
+        for (String target : targets) {
+            ConnectionProvider connections = ConnectionProvider.builder("load")
+                    .maxConnections(concurrency)
+                    .pendingAcquireMaxCount(-1)
+                    .build();
+            try {
+                HttpClient client = HttpClient.create(connections).baseUrl(target);
+                String path = options.get("path").replace("{id}", String.valueOf(createBook(client)));
+                run(client, path, Math.min(concurrency, 50), warmup);
+                long[] latencies = new long[requests];
+                AtomicInteger errors = new AtomicInteger();
+                long begin = System.nanoTime();
+                run(client, path, concurrency, requests, latencies, errors);
+                double seconds = (System.nanoTime() - begin) / 1e9;
+                Arrays.sort(latencies);
+                System.out.printf("%s%s concurrency=%d requests=%d errors=%d %.0f req/s p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                        target, path, concurrency, requests, errors.get(), requests / seconds,
+                        millis(latencies, 0.50), millis(latencies, 0.99), latencies[requests - 1] / 1e6);
+            } finally {
+                connections.dispose();
+            }
+        }
+    }
+
+    private static void run(HttpClient client, String path, int concurrency, int requests) {
+        run(client, path, concurrency, requests, new long[requests], new AtomicInteger());
+    }
+
+    private static void run(HttpClient client, String path, int concurrency, int requests,
+                            long[] latencies, AtomicInteger errors) {
+        Flux.range(0, requests)
+                .flatMap(i -> {
+                    long start = System.nanoTime();
+                    return client.get().uri(path)
+                            .responseSingle((response, body) -> body.asByteArray()
+                                    .then(Mono.just(response.status().code())))
+                            .doOnNext(status -> {
+                                if (status != 200) {
+                                    errors.incrementAndGet();
+                                }
+                            })
+                            .onErrorResume(e -> {
+                                errors.incrementAndGet();
+                                return Mono.empty();
+                            })
+                            .doFinally(signal -> latencies[i] = System.nanoTime() - start);
+                }, concurrency)
+                .blockLast(Duration.ofMinutes(10));
+    }
+
+    private static long createBook(HttpClient client) {
+        String isbn = "load-" + System.nanoTime();
+        String body = client.headers(headers -> headers.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON))
+                .post().uri("/api/books")
+                .send(ByteBufFlux.fromString(Mono.just(
+                        "{\"title\":\"Carga\",\"author\":\"Fulano\",\"isbn\":\"" + isbn + "\"}")))
+                .responseSingle((response, content) -> content.asString())
+                .block(Duration.ofSeconds(30));
+        String id = body.replaceAll(".*\"id\"\\s*:\\s*(\\d+).*", "$1");
+        return Long.parseLong(id);
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+    }
+}
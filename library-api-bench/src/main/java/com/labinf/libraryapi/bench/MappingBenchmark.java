@@ -0,0 +1,98 @@
+package com.labinf.libraryapi.bench;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.api.mapper.BookMapper;
+import com.labinf.libraryapi.api.mapper.LoanMapper;
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.entity.Loan;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row mapping cost of the reflective {@link ModelMapper} the controllers used to call
+ * against the hand-written {@link BookMapper}/{@link LoanMapper}. Scores are per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    private static final int ROWS = 100;
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final BookMapper bookMapper = new BookMapper();
+    private final LoanMapper loanMapper = new LoanMapper(bookMapper);
+
+    private List<Book> books;
+    private List<Loan> loans;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        books = new ArrayList<>(ROWS);
+        loans = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Book book = Book.builder().id((long) i).title("Book " + i).author("Author").isbn("isbn-" + i).build();
+            books.add(book);
+            loans.add(Loan.builder().id((long) i).customer("Customer").customerEmail("customer@library-api.com")
+                    .book(book).loanDate(LocalDate.now()).build());
+        }
+        // the first mapping of a type pair builds its TypeMap, keep that out of the measurement
+        modelMapper.map(books.get(0), BookDTO.class);
+        modelMapper.map(loans.get(0), LoanDTO.class);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void booksWithModelMapper(Blackhole blackhole) {
+        for (Book book : books) {
+            blackhole.consume(modelMapper.map(book, BookDTO.class));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void booksWithMapper(Blackhole blackhole) {
+        for (Book book : books) {
+            blackhole.consume(bookMapper.toDto(book));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void loansWithModelMapper(Blackhole blackhole) {
+        for (Loan loan : loans) {
+            LoanDTO dto = modelMapper.map(loan, LoanDTO.class);
+            dto.setBook(modelMapper.map(loan.getBook(), BookDTO.class));
+            blackhole.consume(dto);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void loansWithMapper(Blackhole blackhole) {
+        for (Loan loan : loans) {
+            blackhole.consume(loanMapper.toDto(loan));
+        }
+    }
+}
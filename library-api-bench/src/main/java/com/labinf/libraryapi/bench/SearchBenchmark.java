@@ -0,0 +1,55 @@
+package com.labinf.libraryapi.bench;
+
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.resource.BookController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Same selective question, "books whose title has 'book' and a word starting with '4242'",
+ * asked to the LIKE filter and to the search index. Only a handful of books match whatever the catalog size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private BookController bookController;
+    private Pageable page;
+    private BookDTO filter;
+
+    @Setup(Level.Trial)
+    public void setUp(LibraryState state) {
+        bookController = state.bean(BookController.class);
+        page = PageRequest.of(0, 20);
+        filter = BookDTO.builder().title("book 4242").build();
+    }
+
+    @Benchmark
+    public Slice<BookDTO> likeFilter() {
+        return LibraryState.await(bookController.find(filter, page, "exact"));
+    }
+
+    @Benchmark
+    public Page<BookDTO> searchIndex() {
+        return LibraryState.await(bookController.search("book 4242*", page));
+    }
+}
@@ -0,0 +1,106 @@
+package com.labinf.libraryapi.bench;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.BatchItemResultDTO;
+import com.labinf.libraryapi.dto.ReturnedLoanDTO;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.service.impl.BookServiceImpl;
+import com.labinf.libraryapi.service.impl.LoanServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    private static final int IMPORT_SIZE = 1000;
+
+    private static final int CHECKOUT_SIZE = 200;
+
+    private LibraryState state;
+    private BookServiceImpl bookService;
+    private LoanServiceImpl loanService;
+    private Book loanBook;
+
+    @Setup(Level.Trial)
+    public void setUp(LibraryState state) {
+        this.state = state;
+        bookService = state.bean(BookServiceImpl.class);
+        loanService = state.bean(LoanServiceImpl.class);
+        loanBook = state.popularBook;
+    }
+
+    @Benchmark
+    public Book saveBook() {
+        return bookService.save(Book.builder()
+                .title("Benchmark")
+                .author("Bench")
+                .isbn(state.nextIsbn())
+                .build());
+    }
+
+    /**
+     * Bulk import, scored per book.
+     */
+    @Benchmark
+    @OperationsPerInvocation(IMPORT_SIZE)
+    public List<BatchItemResultDTO> importBooks() {
+        List<Book> books = new ArrayList<>(IMPORT_SIZE);
+        for (int i = 0; i < IMPORT_SIZE; i++) {
+            books.add(Book.builder().title("Imported").author("Bench").isbn(state.nextIsbn()).build());
+        }
+        return bookService.saveBatch(books);
+    }
+
+    /**
+     * Checks out a desk pile of seeded books and returns it, scored per loan.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CHECKOUT_SIZE)
+    public List<BatchItemResultDTO> checkoutAndReturnBatch() {
+        List<LoanDTO> loans = new ArrayList<>(CHECKOUT_SIZE);
+        for (int i = 1; i <= CHECKOUT_SIZE; i++) {
+            loans.add(LoanDTO.builder().isbn("isbn-" + i).customer("Bench").email("bench@library-api.com").build());
+        }
+        List<ReturnedLoanDTO> returns = new ArrayList<>(CHECKOUT_SIZE);
+        for (BatchItemResultDTO result : loanService.saveBatch(loans)) {
+            returns.add(ReturnedLoanDTO.builder().id(result.getId()).returned(true).build());
+        }
+        return loanService.returnBatch(returns);
+    }
+
+    /**
+     * Checks out the popular book and returns it, so every invocation pays for the same
+     * claim of the book, insert and conditional return.
+     */
+    @Benchmark
+    public Long checkoutAndReturnLoan() {
+        Loan loan = loanService.save(Loan.builder()
+                .book(loanBook)
+                .customer("Bench")
+                .customerEmail("bench@library-api.com")
+                .loanDate(LocalDate.now())
+                .build());
+        return loanService.markReturned(loan.getId(), loan.getVersion(), true).get();
+    }
+}
@@ -0,0 +1,17 @@
+package com.labinf.libraryapi.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+
+/**
+ * Serves the book and loan api from a few event loop threads. The jdbc driver is only on the classpath
+ * for the migrations, which get their own connection from {@code spring.flyway.url}.
+ */
+@SpringBootApplication(exclude = DataSourceAutoConfiguration.class)
+public class LibraryApiReactiveApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(LibraryApiReactiveApplication.class, args);
+    }
+}
@@ -0,0 +1,35 @@
+package com.labinf.libraryapi.reactive.api;
+
+import com.labinf.libraryapi.exceptions.ApiErrors;
+import com.labinf.libraryapi.exceptions.BusinessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Answers the errors with the same bodies as the servlet api.
+ */
+@RestControllerAdvice
+public class ApplicationControllerAdvice {
+
+    @ExceptionHandler(WebExchangeBindException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiErrors handleValidationExceptions(WebExchangeBindException ex){
+        return new ApiErrors(ex.getBindingResult());
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(BusinessException.class)
+    public ApiErrors handleBusinessException(BusinessException ex){
+        return new ApiErrors(ex);
+    }
+
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<ApiErrors> handleResponseStatusException(ResponseStatusException ex){
+        return new ResponseEntity<>(new ApiErrors(ex), ex.getStatus());
+    }
+}
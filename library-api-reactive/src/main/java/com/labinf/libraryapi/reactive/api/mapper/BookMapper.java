@@ -0,0 +1,22 @@
+package com.labinf.libraryapi.reactive.api.mapper;
+
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.reactive.model.entity.Book;
+import org.springframework.stereotype.Component;
+
+@Component
+public class BookMapper {
+
+    public BookDTO toDto(Book book) {
+        return new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn());
+    }
+
+    public Book toEntity(BookDTO dto) {
+        return Book.builder()
+                .id(dto.getId())
+                .title(dto.getTitle())
+                .author(dto.getAuthor())
+                .isbn(dto.getIsbn())
+                .build();
+    }
+}
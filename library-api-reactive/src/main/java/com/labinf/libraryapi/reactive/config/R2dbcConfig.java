@@ -0,0 +1,19 @@
+package com.labinf.libraryapi.reactive.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+
+@Configuration
+public class R2dbcConfig {
+
+    /**
+     * Spring Boot 2.3 only declares the database client, the template inserts rows whose id was taken
+     * from the sequence beforehand, which a repository save would take for an update.
+     */
+    @Bean
+    public R2dbcEntityTemplate r2dbcEntityTemplate(DatabaseClient databaseClient) {
+        return new R2dbcEntityTemplate(databaseClient);
+    }
+}
@@ -0,0 +1,44 @@
+package com.labinf.libraryapi.reactive.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Row of the {@code book} table created by the migrations of library-api.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table("book")
+public class Book {
+
+    public static final String ISBN_UNIQUE = "uk_book_isbn";
+
+    @Id
+    private Long id;
+
+    private String title;
+
+    private String author;
+
+    private String isbn;
+
+    /**
+     * Open loan of the book, only written by the conditional statements of the repository.
+     */
+    @Column("active_loan_id")
+    private Long activeLoanId;
+
+    /**
+     * Shared with library-api, which builds its ETags from it, so the updates of the repository bump it too.
+     */
+    @Version
+    private Long version;
+}
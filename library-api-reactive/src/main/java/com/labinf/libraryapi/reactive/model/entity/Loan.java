@@ -0,0 +1,58 @@
+package com.labinf.libraryapi.reactive.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDate;
+
+/**
+ * Row of the {@code loan} table created by the migrations of library-api.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table("loan")
+public class Loan {
+
+    public static final String ACTIVE_BOOK_UNIQUE = "uk_loan_active_book";
+
+    @Id
+    private Long id;
+
+    private String customer;
+
+    @Column("customer_email")
+    private String customerEmail;
+
+    @Column("id_book")
+    private Long bookId;
+
+    @Column("loan_date")
+    private LocalDate loanDate;
+
+    private Boolean returned;
+
+    @Column("returned_date")
+    private LocalDate returnedDate;
+
+    /**
+     * The book id while the loan is open and null once it is returned, so the unique
+     * constraint allows a single open loan per book.
+     */
+    @Column("active_book")
+    private Long activeBook;
+
+    @Version
+    private Long version;
+
+    public Long openBook() {
+        return bookId == null || Boolean.TRUE.equals(returned) ? null : bookId;
+    }
+}
@@ -0,0 +1,39 @@
+package com.labinf.libraryapi.reactive.model.repository;
+
+import com.labinf.libraryapi.reactive.model.entity.Book;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+public interface BookRepository extends ReactiveCrudRepository<Book, Long> {
+
+    /**
+     * Takes a whole block of the sequence the servlet api allocates from, so the ids never collide.
+     */
+    @Query("select next value for book_seq")
+    Mono<Long> nextId();
+
+    Mono<Book> findByIsbn(String isbn);
+
+    /**
+     * Points the book at the loan only if it is on the shelf.
+     */
+    @Modifying
+    @Query("update book set active_loan_id = :loanId where id = :bookId and active_loan_id is null")
+    Mono<Integer> claim(Long bookId, Long loanId);
+
+    /**
+     * Copies the open loan of the book, as recorded on the loan table, to its pointer.
+     */
+    @Modifying
+    @Query("update book set active_loan_id = (select l.id from loan l where l.active_book = book.id) where id = :bookId")
+    Mono<Integer> syncActiveLoan(Long bookId);
+
+    /**
+     * Writes only the edited columns, a full save would also write back the active loan it read.
+     */
+    @Modifying
+    @Query("update book set title = :title, author = :author, version = version + 1 where id = :id")
+    Mono<Integer> updateDetails(Long id, String title, String author);
+}
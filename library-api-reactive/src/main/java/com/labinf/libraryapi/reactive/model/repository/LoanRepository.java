@@ -0,0 +1,15 @@
+package com.labinf.libraryapi.reactive.model.repository;
+
+import com.labinf.libraryapi.reactive.model.entity.Loan;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+public interface LoanRepository extends ReactiveCrudRepository<Loan, Long>, LoanRepositoryCustom {
+
+    /**
+     * Takes a whole block of the sequence the servlet api allocates from, so the ids never collide.
+     */
+    @Query("select next value for loan_seq")
+    Mono<Long> nextId();
+}
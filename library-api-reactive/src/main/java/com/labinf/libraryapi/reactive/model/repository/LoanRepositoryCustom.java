@@ -0,0 +1,16 @@
+package com.labinf.libraryapi.reactive.model.repository;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.LoanFilterDTO;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+
+public interface LoanRepositoryCustom {
+
+    /**
+     * Loans matching the filter with their book, read in one join and ordered by id.
+     */
+    Flux<LoanDTO> findDtos(LoanFilterDTO filter, Pageable pageable);
+
+    Flux<LoanDTO> findDtosByBook(Long bookId, Pageable pageable);
+}
@@ -0,0 +1,90 @@
+package com.labinf.libraryapi.reactive.model.repository;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.LoanFilterDTO;
+import io.r2dbc.spi.Row;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LoanRepositoryImpl implements LoanRepositoryCustom {
+
+    static final String SELECT_DTO = "select l.id, l.customer, l.customer_email, b.id as book_id, b.title, b.author, b.isbn " +
+            "from loan l join book b on b.id = l.id_book";
+
+    private final DatabaseClient client;
+
+    public LoanRepositoryImpl(DatabaseClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Same conditions as the servlet api: the isbn and the customer combined as the filter says,
+     * the loan date range and the returned state always narrow the result.
+     */
+    @Override
+    public Flux<LoanDTO> findDtos(LoanFilterDTO filter, Pageable pageable) {
+        List<String> identity = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> params = new LinkedHashMap<>();
+        if (filter.getIsbn() != null) {
+            identity.add("b.isbn = :isbn");
+            params.put("isbn", filter.getIsbn());
+        }
+        if (filter.getCustomer() != null) {
+            identity.add("l.customer = :customer");
+            params.put("customer", filter.getCustomer());
+        }
+        if (!identity.isEmpty()) {
+            String join = filter.getMatch() == LoanFilterDTO.Match.ALL ? " and " : " or ";
+            conditions.add("(" + String.join(join, identity) + ")");
+        }
+        if (filter.getFrom() != null) {
+            conditions.add("l.loan_date >= :from");
+            params.put("from", filter.getFrom());
+        }
+        if (filter.getTo() != null) {
+            conditions.add("l.loan_date <= :to");
+            params.put("to", filter.getTo());
+        }
+        if (filter.getReturned() != null) {
+            conditions.add(filter.getReturned() ? "l.returned = true" : "l.active_book is not null");
+        }
+        return select(conditions, params, pageable);
+    }
+
+    @Override
+    public Flux<LoanDTO> findDtosByBook(Long bookId, Pageable pageable) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("bookId", bookId);
+        List<String> conditions = new ArrayList<>();
+        conditions.add("l.id_book = :bookId");
+        return select(conditions, params, pageable);
+    }
+
+    private Flux<LoanDTO> select(List<String> conditions, Map<String, Object> params, Pageable pageable) {
+        StringBuilder sql = new StringBuilder(SELECT_DTO);
+        if (!conditions.isEmpty()) {
+            sql.append(" where ").append(String.join(" and ", conditions));
+        }
+        sql.append(" order by l.id limit :limit offset :offset");
+        DatabaseClient.GenericExecuteSpec spec = client.execute(sql.toString())
+                .bind("limit", pageable.getPageSize())
+                .bind("offset", pageable.getOffset());
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            spec = spec.bind(param.getKey(), param.getValue());
+        }
+        return spec.map((row, metadata) -> toDto(row)).all();
+    }
+
+    private static LoanDTO toDto(Row row) {
+        return new LoanDTO(row.get("id", Long.class), row.get("customer", String.class),
+                row.get("customer_email", String.class), row.get("book_id", Long.class),
+                row.get("title", String.class), row.get("author", String.class), row.get("isbn", String.class));
+    }
+}
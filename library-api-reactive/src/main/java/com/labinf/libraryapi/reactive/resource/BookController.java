@@ -0,0 +1,79 @@
+package com.labinf.libraryapi.reactive.resource;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.reactive.api.mapper.BookMapper;
+import com.labinf.libraryapi.reactive.model.entity.Book;
+import com.labinf.libraryapi.reactive.service.BookService;
+import com.labinf.libraryapi.reactive.service.LoanService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+/**
+ * The servlet api endpoints without the batch, search and cursor variants. Listings stream the
+ * rows of the page instead of wrapping them in a slice.
+ */
+@RestController
+@RequestMapping("/api/books")
+@RequiredArgsConstructor
+@Slf4j
+public class BookController {
+
+    private final LoanService loanService;
+    private final BookService service;
+    private final BookMapper bookMapper;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<BookDTO> create(@RequestBody @Valid BookDTO dto) {
+        log.info("creating a book for isbn {}", dto.getIsbn());
+        Book entity = bookMapper.toEntity(dto);
+        entity.setId(null);
+        return service.save(entity).map(bookMapper::toDto);
+    }
+
+    @GetMapping("{id}")
+    public Mono<BookDTO> get(@PathVariable Long id) {
+        log.info("obtain a book by id {}", id);
+        return book(id).map(bookMapper::toDto);
+    }
+
+    @DeleteMapping("{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> delete(@PathVariable Long id) {
+        log.info("delete a book by id {}", id);
+        return book(id).flatMap(service::delete);
+    }
+
+    @PutMapping("{id}")
+    public Mono<BookDTO> update(@PathVariable("id") Long id, @RequestBody BookDTO dto) {
+        log.info("update a book by id {}", id);
+        return book(id).flatMap(book -> {
+            book.setAuthor(dto.getAuthor());
+            book.setTitle(dto.getTitle());
+            return service.update(book);
+        }).map(bookMapper::toDto);
+    }
+
+    @GetMapping
+    public Flux<BookDTO> find(BookDTO dto, Pageable pageRequest) {
+        return service.find(bookMapper.toEntity(dto), pageRequest).map(bookMapper::toDto);
+    }
+
+    @GetMapping("{id}/loans")
+    public Flux<LoanDTO> loansByBook(@PathVariable Long id, Pageable pageable) {
+        return book(id).flatMapMany(book -> loanService.getLoansByBook(book, pageable));
+    }
+
+    private Mono<Book> book(Long id) {
+        return service.getById(id).switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)));
+    }
+}
@@ -0,0 +1,55 @@
+package com.labinf.libraryapi.reactive.resource;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.LoanFilterDTO;
+import com.labinf.libraryapi.dto.ReturnedLoanDTO;
+import com.labinf.libraryapi.reactive.model.entity.Loan;
+import com.labinf.libraryapi.reactive.service.BookService;
+import com.labinf.libraryapi.reactive.service.LoanService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/loans")
+@RequiredArgsConstructor
+public class LoanController {
+
+    private final LoanService service;
+    private final BookService bookService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Long> create(@RequestBody LoanDTO dto) {
+        return bookService.getBookByIsbn(dto.getIsbn())
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn")))
+                .flatMap(book -> service.save(Loan.builder()
+                        .bookId(book.getId())
+                        .customer(dto.getCustomer())
+                        .loanDate(LocalDate.now())
+                        .build()))
+                .map(Loan::getId);
+    }
+
+    @PatchMapping("{id}")
+    public Mono<Void> returnedBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto) {
+        return service.getById(id)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .flatMap(loan -> {
+                    loan.setReturned(dto.getReturned());
+                    return service.update(loan);
+                })
+                .then();
+    }
+
+    @GetMapping
+    public Flux<LoanDTO> find(LoanFilterDTO dto, Pageable pageable) {
+        return service.find(dto, pageable);
+    }
+}
@@ -0,0 +1,21 @@
+package com.labinf.libraryapi.reactive.service;
+
+import com.labinf.libraryapi.reactive.model.entity.Book;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface BookService {
+
+    Mono<Book> save(Book book);
+
+    Mono<Book> getById(Long id);
+
+    Mono<Void> delete(Book book);
+
+    Mono<Book> update(Book book);
+
+    Flux<Book> find(Book filter, Pageable pageRequest);
+
+    Mono<Book> getBookByIsbn(String isbn);
+}
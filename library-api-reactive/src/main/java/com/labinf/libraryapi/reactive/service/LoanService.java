@@ -0,0 +1,22 @@
+package com.labinf.libraryapi.reactive.service;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.LoanFilterDTO;
+import com.labinf.libraryapi.reactive.model.entity.Book;
+import com.labinf.libraryapi.reactive.model.entity.Loan;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface LoanService {
+
+    Mono<Loan> save(Loan loan);
+
+    Mono<Loan> getById(Long id);
+
+    Mono<Loan> update(Loan loan);
+
+    Flux<LoanDTO> find(LoanFilterDTO filter, Pageable page);
+
+    Flux<LoanDTO> getLoansByBook(Book book, Pageable pageable);
+}
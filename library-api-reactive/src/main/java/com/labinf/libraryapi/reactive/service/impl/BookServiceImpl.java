@@ -0,0 +1,101 @@
+package com.labinf.libraryapi.reactive.service.impl;
+
+import com.labinf.libraryapi.exceptions.BusinessException;
+import com.labinf.libraryapi.reactive.model.entity.Book;
+import com.labinf.libraryapi.reactive.model.repository.BookRepository;
+import com.labinf.libraryapi.reactive.service.BookService;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+public class BookServiceImpl implements BookService {
+
+    private final BookRepository repository;
+
+    private final R2dbcEntityTemplate template;
+
+    public BookServiceImpl(BookRepository repository, R2dbcEntityTemplate template) {
+        this.repository = repository;
+        this.template = template;
+    }
+
+    /**
+     * As in the servlet api the unique constraint on isbn keeps concurrent creates apart.
+     */
+    @Override
+    public Mono<Book> save(Book book) {
+        return repository.nextId()
+                .flatMap(id -> {
+                    book.setId(id);
+                    return template.insert(book);
+                })
+                .onErrorMap(DataIntegrityViolationException.class, BookServiceImpl::duplicateIsbn);
+    }
+
+    @Override
+    public Mono<Book> getById(Long id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    public Mono<Void> delete(Book book) {
+        if (book == null || book.getId() == null) {
+            return Mono.error(new IllegalArgumentException("Book id can be null"));
+        }
+        return repository.deleteById(book.getId());
+    }
+
+    @Override
+    public Mono<Book> update(Book book) {
+        if (book == null || book.getId() == null) {
+            return Mono.error(new IllegalArgumentException("Book id can be null"));
+        }
+        return repository.updateDetails(book.getId(), book.getTitle(), book.getAuthor()).thenReturn(book);
+    }
+
+    /**
+     * Same matching as the servlet api: the fields set on the filter are contained in the column, ignoring case.
+     */
+    @Override
+    public Flux<Book> find(Book filter, Pageable pageRequest) {
+        Criteria criteria = Criteria.empty();
+        if (filter.getTitle() != null) {
+            criteria = criteria.and("title").like(contains(filter.getTitle())).ignoreCase(true);
+        }
+        if (filter.getAuthor() != null) {
+            criteria = criteria.and("author").like(contains(filter.getAuthor())).ignoreCase(true);
+        }
+        if (filter.getIsbn() != null) {
+            criteria = criteria.and("isbn").like(contains(filter.getIsbn())).ignoreCase(true);
+        }
+        Query query = Query.query(criteria)
+                .sort(pageRequest.getSort().isSorted() ? pageRequest.getSort() : Sort.by("id"))
+                .limit(pageRequest.getPageSize())
+                .offset(pageRequest.getOffset());
+        return template.select(Book.class).matching(query).all();
+    }
+
+    @Override
+    public Mono<Book> getBookByIsbn(String isbn) {
+        return repository.findByIsbn(isbn);
+    }
+
+    private static String contains(String value) {
+        return "%" + value + "%";
+    }
+
+    private static Throwable duplicateIsbn(DataIntegrityViolationException e) {
+        String message = e.getMessage();
+        if (message != null && message.toLowerCase().contains(Book.ISBN_UNIQUE)) {
+            return new BusinessException(BusinessException.DUPLICATE_ISBN);
+        }
+        return e;
+    }
+}
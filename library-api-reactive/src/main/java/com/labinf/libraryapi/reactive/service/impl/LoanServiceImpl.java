@@ -0,0 +1,90 @@
+package com.labinf.libraryapi.reactive.service.impl;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.LoanFilterDTO;
+import com.labinf.libraryapi.exceptions.BusinessException;
+import com.labinf.libraryapi.reactive.model.entity.Book;
+import com.labinf.libraryapi.reactive.model.entity.Loan;
+import com.labinf.libraryapi.reactive.model.repository.BookRepository;
+import com.labinf.libraryapi.reactive.model.repository.LoanRepository;
+import com.labinf.libraryapi.reactive.service.LoanService;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+@Service
+public class LoanServiceImpl implements LoanService {
+
+    private final LoanRepository repository;
+
+    private final BookRepository bookRepository;
+
+    private final R2dbcEntityTemplate template;
+
+    public LoanServiceImpl(LoanRepository repository, BookRepository bookRepository, R2dbcEntityTemplate template) {
+        this.repository = repository;
+        this.bookRepository = bookRepository;
+        this.template = template;
+    }
+
+    /**
+     * Same rule as the servlet api: the loan is inserted holding its book in the active book column and
+     * the book is claimed for it with one conditional update, a book already loaned fails either one.
+     * A loan saved as returned holds no book and leaves the pointer of the book alone.
+     */
+    @Override
+    @Transactional
+    public Mono<Loan> save(Loan loan) {
+        return repository.nextId()
+                .flatMap(id -> {
+                    loan.setId(id);
+                    loan.setActiveBook(loan.openBook());
+                    return template.insert(loan);
+                })
+                .flatMap(saved -> saved.getActiveBook() == null ? Mono.just(saved)
+                        : bookRepository.claim(saved.getBookId(), saved.getId())
+                        .flatMap(claimed -> claimed == 0
+                                ? Mono.<Loan>error(new BusinessException(BusinessException.ALREADY_LOANED))
+                                : Mono.just(saved)))
+                .onErrorMap(DataIntegrityViolationException.class, LoanServiceImpl::alreadyLoaned);
+    }
+
+    @Override
+    public Mono<Loan> getById(Long id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    @Transactional
+    public Mono<Loan> update(Loan loan) {
+        loan.setActiveBook(loan.openBook());
+        loan.setReturnedDate(Boolean.TRUE.equals(loan.getReturned()) ? LocalDate.now() : null);
+        return repository.save(loan)
+                .flatMap(saved -> bookRepository.syncActiveLoan(saved.getBookId()).thenReturn(saved))
+                .onErrorMap(DataIntegrityViolationException.class, LoanServiceImpl::alreadyLoaned);
+    }
+
+    @Override
+    public Flux<LoanDTO> find(LoanFilterDTO filter, Pageable page) {
+        return repository.findDtos(filter, page);
+    }
+
+    @Override
+    public Flux<LoanDTO> getLoansByBook(Book book, Pageable pageable) {
+        return repository.findDtosByBook(book.getId(), pageable);
+    }
+
+    private static Throwable alreadyLoaned(DataIntegrityViolationException e) {
+        String message = e.getMessage();
+        if (message != null && message.toLowerCase().contains(Loan.ACTIVE_BOOK_UNIQUE)) {
+            return new BusinessException(BusinessException.ALREADY_LOANED);
+        }
+        return e;
+    }
+}
@@ -0,0 +1,140 @@
+package com.labinf.libraryapi.reactive.resource;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.dto.ReturnedLoanDTO;
+import com.labinf.libraryapi.exceptions.BusinessException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ReactiveApiTest {
+
+    static String BOOK_API = "/api/books";
+    static String LOAN_API = "/api/loans";
+
+    @Autowired
+    WebTestClient client;
+
+    @Test
+    @DisplayName("Deve criar e obter um livro")
+    public void createAndGetBookTest() {
+        //cenario
+        BookDTO created = createBook("001");
+
+        //execução
+        BookDTO found = client.get().uri(BOOK_API + "/" + created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(BookDTO.class).returnResult().getResponseBody();
+
+        //verificação
+        assertThat(found).isEqualTo(created);
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro ao cadastrar um livro com isbn ja utilizado por outro")
+    public void createBookWithDuplicatedIsbnTest() {
+        //cenario
+        createBook("002");
+
+        //execução
+        WebTestClient.ResponseSpec response = client.post().uri(BOOK_API)
+                .bodyValue(book("002"))
+                .exchange();
+
+        //verificação
+        response.expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo(BusinessException.DUPLICATE_ISBN);
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de validação quando não houver dados suficientes")
+    public void createInvalidBookTest() {
+        client.post().uri(BOOK_API)
+                .bodyValue(new BookDTO())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors.length()").isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 ao obter um livro inexistente")
+    public void bookNotFoundTest() {
+        client.get().uri(BOOK_API + "/999999")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Deve emprestar, recusar o segundo emprestimo e emprestar de novo depois da devolução")
+    public void loanReturnAndLoanAgainTest() {
+        //cenario
+        BookDTO book = createBook("003");
+        Long loanId = loan("003").expectStatus().isCreated()
+                .expectBody(Long.class).returnResult().getResponseBody();
+
+        //execução
+        loan("003").expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo(BusinessException.ALREADY_LOANED);
+        client.patch().uri(LOAN_API + "/" + loanId)
+                .bodyValue(ReturnedLoanDTO.builder().returned(true).build())
+                .exchange()
+                .expectStatus().isOk();
+
+        //verificação
+        loan("003").expectStatus().isCreated();
+        client.get().uri(BOOK_API + "/" + book.getId() + "/loans?size=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("length()").isEqualTo(2)
+                .jsonPath("[0].id").isEqualTo(loanId)
+                .jsonPath("[0].book.isbn").isEqualTo("003");
+        client.get().uri(LOAN_API + "?isbn=003&returned=false")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("length()").isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros pelo titulo ignorando maiusculas")
+    public void findBooksTest() {
+        //cenario
+        client.post().uri(BOOK_API)
+                .bodyValue(BookDTO.builder().title("Reativo na pratica").author("Fulano").isbn("004").build())
+                .exchange()
+                .expectStatus().isCreated();
+
+        //execução e verificação
+        client.get().uri(BOOK_API + "?title=REATIVO&page=0&size=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("length()").isEqualTo(1)
+                .jsonPath("[0].isbn").isEqualTo("004");
+    }
+
+    private BookDTO createBook(String isbn) {
+        return client.post().uri(BOOK_API)
+                .bodyValue(book(isbn))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(BookDTO.class).returnResult().getResponseBody();
+    }
+
+    private WebTestClient.ResponseSpec loan(String isbn) {
+        return client.post().uri(LOAN_API)
+                .bodyValue(LoanDTO.builder().isbn(isbn).customer("Fulano").email("fulano@email.com").build())
+                .exchange();
+    }
+
+    private static BookDTO book(String isbn) {
+        return BookDTO.builder().title("As aventuras").author("Artur").isbn(isbn).build();
+    }
+}
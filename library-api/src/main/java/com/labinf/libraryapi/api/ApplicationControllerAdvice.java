@@ -2,6 +2,7 @@ package com.labinf.libraryapi.api;
 
 import com.labinf.libraryapi.exceptions.ApiErrors;
 import com.labinf.libraryapi.exceptions.BusinessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -31,6 +32,15 @@ public class ApplicationControllerAdvice {
         return new ApiErrors(ex);
     }
 
+    /**
+     * The row changed since the client read it, a conditional update of a stale version.
+     */
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ApiErrors handleOptimisticLockingFailureException(OptimisticLockingFailureException ex){
+        return new ApiErrors(ex);
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity handleResponseStatusException(ResponseStatusException ex){
         return new ResponseEntity(new ApiErrors(ex), ex.getStatus());
@@ -21,4 +21,13 @@ public class LoanDTO {
     @NotEmpty
     private String email;
     private BookDTO book;
+
+    /**
+     * Row of {@link com.labinf.libraryapi.model.repository.LoanRepository#LOAN_DTO}, the isbn stays empty
+     * and the book is nested as {@link com.labinf.libraryapi.api.mapper.LoanMapper} does.
+     */
+    public LoanDTO(Long id, String customer, String email,
+                   Long bookId, String bookTitle, String bookAuthor, String bookIsbn) {
+        this(id, null, customer, email, new BookDTO(bookId, bookTitle, bookAuthor, bookIsbn));
+    }
 }
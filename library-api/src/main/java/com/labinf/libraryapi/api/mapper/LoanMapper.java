@@ -0,0 +1,28 @@
+package com.labinf.libraryapi.api.mapper;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.model.entity.Loan;
+
+public class LoanMapper {
+
+    private final BookMapper bookMapper;
+
+    public LoanMapper(BookMapper bookMapper) {
+        this.bookMapper = bookMapper;
+    }
+
+    /**
+     * The loan isbn stays empty, the book is nested instead, as the API always returned it.
+     */
+    public LoanDTO toDto(Loan loan) {
+        if (loan == null) {
+            return null;
+        }
+        return LoanDTO.builder()
+                .id(loan.getId())
+                .customer(loan.getCustomer())
+                .email(loan.getCustomerEmail())
+                .book(bookMapper.toDto(loan.getBook()))
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.labinf.libraryapi.config;
+
+import com.labinf.libraryapi.config.async.AsyncRequests;
+import com.labinf.libraryapi.config.async.RequestExecutor;
+import com.labinf.libraryapi.config.routing.ReplicaRouting;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+
+@Configuration
+public class AsyncConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor searchRequestExecutor(@Value("${application.async.search.pool-size:8}") int poolSize,
+                                                        @Value("${application.async.search.queue-capacity:100}") int queueCapacity) {
+        return requestExecutor("search-", poolSize, queueCapacity);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor lookupRequestExecutor(@Value("${application.async.lookup.pool-size:16}") int poolSize,
+                                                        @Value("${application.async.lookup.queue-capacity:200}") int queueCapacity) {
+        return requestExecutor("lookup-", poolSize, queueCapacity);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor writeRequestExecutor(@Value("${application.async.write.pool-size:8}") int poolSize,
+                                                       @Value("${application.async.write.queue-capacity:100}") int queueCapacity) {
+        return requestExecutor("write-", poolSize, queueCapacity);
+    }
+
+    @Bean
+    public AsyncRequests asyncRequests(@Qualifier("searchRequestExecutor") ThreadPoolTaskExecutor search,
+                                       @Qualifier("lookupRequestExecutor") ThreadPoolTaskExecutor lookup,
+                                       @Qualifier("writeRequestExecutor") ThreadPoolTaskExecutor write,
+                                       @Value("${application.async.search.timeout:PT10S}") Duration searchTimeout,
+                                       @Value("${application.async.lookup.timeout:PT2S}") Duration lookupTimeout,
+                                       @Value("${application.async.write.timeout:PT30S}") Duration writeTimeout) {
+        return new AsyncRequests(new RequestExecutor(search, searchTimeout),
+                new RequestExecutor(lookup, lookupTimeout),
+                new RequestExecutor(write, writeTimeout));
+    }
+
+    /**
+     * The request runs on the pool thread, so its read-your-writes scope opens there and not on the
+     * servlet thread that went through the filter.
+     */
+    private ThreadPoolTaskExecutor requestExecutor(String name, int poolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(name);
+        executor.setTaskDecorator(task -> () -> {
+            ReplicaRouting.beginRequest();
+            try {
+                task.run();
+            } finally {
+                ReplicaRouting.endRequest();
+            }
+        });
+        return executor;
+    }
+}
@@ -0,0 +1,11 @@
+package com.labinf.libraryapi.config;
+
+import com.labinf.libraryapi.model.repository.support.PagingRepositoryImpl;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+@Configuration
+@EnableJpaRepositories(basePackages = "com.labinf.libraryapi.model.repository",
+        repositoryBaseClass = PagingRepositoryImpl.class)
+public class JpaConfig {
+}
@@ -0,0 +1,24 @@
+package com.labinf.libraryapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class MailConfig {
+
+    /**
+     * Each thread holds at most one SMTP connection while it sends a batch,
+     * so the pool size bounds the connections opened against the mail server.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor mailDispatchExecutor(@Value("${application.mail.dispatch.pool-size:4}") int poolSize){
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("mail-dispatch-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+}
@@ -0,0 +1,98 @@
+package com.labinf.libraryapi.config;
+
+import com.labinf.libraryapi.config.routing.ReadWriteRoutingDataSource;
+import com.labinf.libraryapi.config.routing.ReadYourWritesFilter;
+import com.labinf.libraryapi.config.routing.ReplicaReadsAspect;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas behind the primary configured by {@code spring.datasource}, only when
+ * {@code application.datasource.replica.urls} lists some. Without it Spring Boot builds the single data source.
+ * The pools are not beans of their own: each data source bean makes Spring Boot look up the primary
+ * one to run its initializer, which would be this one still in creation.
+ */
+@Configuration
+@ConditionalOnExpression("!'${application.datasource.replica.urls:}'.trim().isEmpty()")
+public class RoutingDataSourceConfig {
+
+    /**
+     * Replicas share the credentials of the primary unless their own are set. With {@code migrate} the
+     * migrations also run on them, for local stand-ins that are not fed by replication.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 @Value("${application.datasource.replica.urls}") List<String> urls,
+                                 @Value("${application.datasource.replica.username:}") String username,
+                                 @Value("${application.datasource.replica.password:}") String password,
+                                 @Value("${application.datasource.replica.migrate:false}") boolean migrate,
+                                 @Value("${spring.flyway.locations:classpath:db/migration}") String[] locations) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+        List<HikariDataSource> replicas = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url.trim())
+                    .username(StringUtils.hasText(username) ? username : properties.determineUsername())
+                    .password(StringUtils.hasText(username) ? password : properties.determinePassword())
+                    .build();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setReadOnly(true);
+            if (migrate) {
+                Flyway.configure().dataSource(replica).locations(locations).load().migrate();
+            }
+            replicas.add(replica);
+        }
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replicas);
+        routing.afterPropertiesSet();
+        return new RoutingDataSource(routing);
+    }
+
+    @Bean
+    public ReplicaReadsAspect replicaReadsAspect() {
+        return new ReplicaReadsAspect();
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter();
+    }
+
+    /**
+     * Takes the connection only on the first statement, when the transaction is already marked read-only.
+     */
+    static class RoutingDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+        private final ReadWriteRoutingDataSource routing;
+
+        RoutingDataSource(ReadWriteRoutingDataSource routing) {
+            super(routing);
+            this.routing = routing;
+        }
+
+        @Override
+        public void close() {
+            routing.close();
+        }
+    }
+}
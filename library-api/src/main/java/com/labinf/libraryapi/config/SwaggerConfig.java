@@ -2,6 +2,7 @@ package com.labinf.libraryapi.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.async.DeferredResult;
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
@@ -22,6 +23,7 @@ public class SwaggerConfig {
                 .apis(RequestHandlerSelectors.basePackage("com.labinf.libraryapi.resource"))
                 .paths(PathSelectors.any())
                 .build()
+                .genericModelSubstitutes(DeferredResult.class)
                 .apiInfo(apiInfo());
     }
 
@@ -0,0 +1,42 @@
+package com.labinf.libraryapi.config.async;
+
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.Callable;
+
+/**
+ * The executors of the controllers, one per kind of request so that slow listings cannot hold the
+ * threads of the lookups by id nor of the writes.
+ */
+public class AsyncRequests {
+
+    private final RequestExecutor search;
+
+    private final RequestExecutor lookup;
+
+    private final RequestExecutor write;
+
+    public AsyncRequests(RequestExecutor search, RequestExecutor lookup, RequestExecutor write) {
+        this.search = search;
+        this.lookup = lookup;
+        this.write = write;
+    }
+
+    /**
+     * Listings and searches, whose cost grows with the filter and the page.
+     */
+    public <T> DeferredResult<T> search(Callable<T> work) {
+        return search.submit(work);
+    }
+
+    /**
+     * Reads of a single book or of the availability, answered by key or from memory.
+     */
+    public <T> DeferredResult<T> lookup(Callable<T> work) {
+        return lookup.submit(work);
+    }
+
+    public <T> DeferredResult<T> write(Callable<T> work) {
+        return write.submit(work);
+    }
+}
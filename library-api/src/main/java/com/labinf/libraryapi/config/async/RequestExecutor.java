@@ -0,0 +1,41 @@
+package com.labinf.libraryapi.config.async;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs the work of one kind of request on a pool of its own, releasing the servlet thread meanwhile.
+ * A full queue answers 503 right away and a request that outlives the timeout answers 503 as well.
+ */
+public class RequestExecutor {
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final long timeout;
+
+    public RequestExecutor(ThreadPoolTaskExecutor executor, Duration timeout) {
+        this.executor = executor;
+        this.timeout = timeout.toMillis();
+    }
+
+    public <T> DeferredResult<T> submit(Callable<T> work) {
+        DeferredResult<T> result = new DeferredResult<>(timeout);
+        ListenableFuture<T> future;
+        try {
+            future = executor.submitListenable(work);
+        } catch (TaskRejectedException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Servidor ocupado, tente novamente.", e);
+        }
+        future.addCallback(result::setResult, result::setErrorResult);
+        // drops the work still queued, work already running may be writing and is let finish
+        result.onTimeout(() -> future.cancel(false));
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+package com.labinf.libraryapi.config.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the read-only transactions of the {@link ReplicaReads} services to the replicas, in turn, and
+ * everything else to the primary. A write pins the rest of the request to the primary.
+ * Must sit behind a lazy connection proxy: the read-only flag of the transaction is only known
+ * once it has begun, after the transaction manager asked for the connection.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    static final String REPLICA = "replica-";
+
+    private final HikariDataSource primary;
+
+    private final List<HikariDataSource> replicas;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadWriteRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(REPLICA + i, replicas.get(i));
+        }
+        this.primary = primary;
+        this.replicas = replicas;
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+        primary.close();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            ReplicaRouting.pinToPrimary();
+            return PRIMARY;
+        }
+        if (replicas.isEmpty() || !ReplicaRouting.isReplicaReads() || ReplicaRouting.isPinnedToPrimary()) {
+            return PRIMARY;
+        }
+        return REPLICA + Math.floorMod(next.getAndIncrement(), replicas.size());
+    }
+}
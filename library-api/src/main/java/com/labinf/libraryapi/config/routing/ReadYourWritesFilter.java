@@ -0,0 +1,26 @@
+package com.labinf.libraryapi.config.routing;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Opens the scope in which a write pins the following reads of the request to the primary.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReplicaRouting.beginRequest();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRouting.endRequest();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.labinf.libraryapi.config.routing;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The {@code @Transactional(readOnly = true)} methods of the annotated service may read from a replica.
+ * Read-only transactions elsewhere, like the loaders of the in-memory indexes, stay on the primary.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReplicaReads {
+}
@@ -0,0 +1,23 @@
+package com.labinf.libraryapi.config.routing;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * Marks the calls of the {@link ReplicaReads} services, the data source decides on the first
+ * statement of each transaction, so the order against the transaction interceptor does not matter.
+ */
+@Aspect
+public class ReplicaReadsAspect {
+
+    @Around("@within(com.labinf.libraryapi.config.routing.ReplicaReads)")
+    public Object replicaReads(ProceedingJoinPoint call) throws Throwable {
+        ReplicaRouting.enterReplicaReads();
+        try {
+            return call.proceed();
+        } finally {
+            ReplicaRouting.exitReplicaReads();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.labinf.libraryapi.config.routing;
+
+/**
+ * Routing state of the current thread: whether a {@link ReplicaReads} service is running, and whether the
+ * current request already wrote, in which case it keeps reading from the primary to see its own writes.
+ */
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<Integer> REPLICA_READS = new ThreadLocal<>();
+
+    /**
+     * Null outside of a request, where nothing is pinned.
+     */
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private ReplicaRouting() {
+    }
+
+    static void enterReplicaReads() {
+        Integer depth = REPLICA_READS.get();
+        REPLICA_READS.set(depth == null ? 1 : depth + 1);
+    }
+
+    static void exitReplicaReads() {
+        Integer depth = REPLICA_READS.get();
+        if (depth == null || depth <= 1) {
+            REPLICA_READS.remove();
+        } else {
+            REPLICA_READS.set(depth - 1);
+        }
+    }
+
+    static boolean isReplicaReads() {
+        return REPLICA_READS.get() != null;
+    }
+
+    public static void beginRequest() {
+        PINNED.set(Boolean.FALSE);
+    }
+
+    public static void endRequest() {
+        PINNED.remove();
+    }
+
+    static void pinToPrimary() {
+        if (PINNED.get() != null) {
+            PINNED.set(Boolean.TRUE);
+        }
+    }
+
+    public static boolean isPinnedToPrimary() {
+        return Boolean.TRUE.equals(PINNED.get());
+    }
+}
@@ -0,0 +1,34 @@
+package com.labinf.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.ConstraintViolation;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResultDTO {
+    private int index;
+    private String key;
+    private BatchItemStatus status;
+    private Long id;
+    private List<String> errors;
+
+    public static BatchItemResultDTO invalid(int index, String key, Set<? extends ConstraintViolation<?>> violations) {
+        return BatchItemResultDTO.builder()
+                .index(index)
+                .key(key)
+                .status(BatchItemStatus.INVALID)
+                .errors(violations.stream()
+                        .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+}
@@ -0,0 +1,10 @@
+package com.labinf.libraryapi.dto;
+
+public enum BatchItemStatus {
+    CREATED,
+    UPDATED,
+    DUPLICATE,
+    INVALID,
+    NOT_FOUND,
+    ALREADY_LOANED
+}
@@ -0,0 +1,23 @@
+package com.labinf.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookAvailabilityDTO {
+
+    private Long id;
+
+    private boolean available;
+
+    private Long activeLoanId;
+
+    public BookAvailabilityDTO(Long id, Long activeLoanId) {
+        this(id, activeLoanId == null, activeLoanId);
+    }
+}
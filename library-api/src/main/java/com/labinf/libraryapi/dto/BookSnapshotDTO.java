@@ -0,0 +1,44 @@
+package com.labinf.libraryapi.dto;
+
+import com.labinf.libraryapi.model.entity.Book;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Immutable copy of a book row. The book caches hold these, so the instance every caller gets can not be changed.
+ */
+@Value
+@Builder
+public class BookSnapshotDTO {
+    Long id;
+    String title;
+    String author;
+    String isbn;
+    Long activeLoanId;
+    Long version;
+
+    public static BookSnapshotDTO of(Book book) {
+        return BookSnapshotDTO.builder()
+                .id(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .isbn(book.getIsbn())
+                .activeLoanId(book.getActiveLoanId())
+                .version(book.getVersion())
+                .build();
+    }
+
+    /**
+     * A detached book of the caller's own, to reference from a loan or to delete.
+     */
+    public Book toBook() {
+        return Book.builder()
+                .id(id)
+                .title(title)
+                .author(author)
+                .isbn(isbn)
+                .activeLoanId(activeLoanId)
+                .version(version)
+                .build();
+    }
+}
@@ -0,0 +1,23 @@
+package com.labinf.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Whether each asked book is on the shelf, keyed as it was asked.
+ * An isbn of no book is left out, an id is answered as is.
+ */
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BooksAvailabilityDTO {
+
+    private Map<Long, Boolean> ids;
+
+    private Map<String, Boolean> isbns;
+}
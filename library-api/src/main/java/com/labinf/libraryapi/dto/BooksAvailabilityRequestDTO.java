@@ -0,0 +1,28 @@
+package com.labinf.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.ArrayList;
+import java.util.List;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BooksAvailabilityRequestDTO {
+
+    public static final int MAX_BOOKS = 5000;
+
+    @Builder.Default
+    @Size(max = MAX_BOOKS)
+    private List<@NotNull Long> ids = new ArrayList<>();
+
+    @Builder.Default
+    @Size(max = MAX_BOOKS)
+    private List<@NotNull String> isbns = new ArrayList<>();
+}
@@ -0,0 +1,18 @@
+package com.labinf.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lowest and highest id of a set of rows, both null when it is empty.
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdRangeDTO {
+    private Long from;
+    private Long to;
+}
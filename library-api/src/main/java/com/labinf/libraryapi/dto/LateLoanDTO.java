@@ -0,0 +1,21 @@
+package com.labinf.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LateLoanDTO {
+    private Long loanId;
+    private String customer;
+    private String customerEmail;
+    private String bookTitle;
+    private String bookIsbn;
+    private LocalDate loanDate;
+}
@@ -4,12 +4,38 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 
+import java.time.LocalDate;
+
+/**
+ * Fields left null are not filtered on. The isbn and the customer are combined as {@link #match} says,
+ * the loan date range and the returned state always narrow the result.
+ */
 @Builder
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class LoanFilterDTO {
+
+    public enum Match {
+        /** loans of the isbn and of the customer */
+        ALL,
+        /** loans of the isbn or of the customer */
+        ANY
+    }
+
     private String isbn;
     private String customer;
+
+    @Builder.Default
+    private Match match = Match.ANY;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+
+    private Boolean returned;
 }
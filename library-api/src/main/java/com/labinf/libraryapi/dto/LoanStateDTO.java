@@ -0,0 +1,19 @@
+package com.labinf.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The columns of a loan a return writes from, read without loading the loan.
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoanStateDTO {
+    private Long bookId;
+    private Long activeBook;
+    private Long version;
+}
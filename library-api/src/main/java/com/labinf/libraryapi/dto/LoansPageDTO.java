@@ -0,0 +1,20 @@
+package com.labinf.libraryapi.dto;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Slice;
+
+/**
+ * A page of the loans of a book with the version it was read at, without the page when the caller already has it.
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoansPageDTO {
+    private LoansVersionDTO version;
+    private Slice<LoanDTO> page;
+}
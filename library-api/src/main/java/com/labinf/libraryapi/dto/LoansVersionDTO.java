@@ -0,0 +1,21 @@
+package com.labinf.libraryapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What the loans of a book look like without reading them: the version of the book, how many loans it has,
+ * the newest one and the sum of their versions, which only grow.
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoansVersionDTO {
+    private Long bookVersion;
+    private Long count;
+    private Long lastId;
+    private Long versions;
+}
@@ -5,11 +5,19 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.NotNull;
+
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
 public class ReturnedLoanDTO {
 
+    /**
+     * Only read by the batch return, the single return takes the id from the path.
+     */
+    @NotNull
+    private Long id;
+
     private Boolean returned;
 }
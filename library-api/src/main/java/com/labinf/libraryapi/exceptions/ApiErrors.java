@@ -1,5 +1,6 @@
 package com.labinf.libraryapi.exceptions;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -9,6 +10,8 @@ import java.util.List;
 
 public class ApiErrors {
 
+    public static final String CONCURRENT_UPDATE = "Registro alterado por outra requisição, obtenha a versão atual e tente novamente.";
+
     private List<String> errors;
 
     public ApiErrors(BindingResult bindingResult) {
@@ -27,4 +30,8 @@ public class ApiErrors {
     public ApiErrors(ResponseStatusException ex){
         this.errors = Arrays.asList(ex.getReason());
     }
+
+    public ApiErrors(OptimisticLockingFailureException ex){
+        this.errors = Arrays.asList(CONCURRENT_UPDATE);
+    }
 }
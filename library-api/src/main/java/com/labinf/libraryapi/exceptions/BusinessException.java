@@ -1,6 +1,11 @@
 package com.labinf.libraryapi.exceptions;
 
 public class BusinessException extends RuntimeException {
+
+    public static final String DUPLICATE_ISBN = "Isbn já cadastrado.";
+
+    public static final String ALREADY_LOANED = "Book already loaned";
+
     public BusinessException(String s) {
         super(s);
     }
@@ -1,5 +1,6 @@
 package com.labinf.libraryapi.model.entity;
 
+import com.labinf.libraryapi.service.search.BookIndexListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,12 +14,16 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table
+@EntityListeners(BookIndexListener.class)
+@Table(uniqueConstraints = @UniqueConstraint(name = Book.ISBN_UNIQUE, columnNames = "isbn"))
 public class Book {
 
+    public static final String ISBN_UNIQUE = "uk_book_isbn";
+
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
 
     @Column
@@ -30,6 +35,21 @@ public class Book {
     @Column
     private String isbn;
 
+    /**
+     * Open loan of the book, null while it is on the shelf. Only written by the conditional
+     * statements of {@link com.labinf.libraryapi.model.repository.BookRepository}, never by an entity
+     * save, so a stale cached book cannot overwrite it.
+     */
+    @Column(name = "active_loan_id", insertable = false, updatable = false)
+    private Long activeLoanId;
+
+    /**
+     * Bumped by every save, not by the statements that move the active loan pointer,
+     * so it changes exactly when the representation of the book does.
+     */
+    @Version
+    private Long version;
+
     @OneToMany(mappedBy = "book", fetch = FetchType.LAZY)
     private List<Loan> loans;
 }
@@ -0,0 +1,64 @@
+package com.labinf.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Range of ids of one run of a scheduled job. Free while it has no lease or its lease is over,
+ * so the shard of a node that stopped midway is taken over by another one.
+ * A failed shard keeps a lease until its backoff is over, and is never free again once {@code failedAt} is set.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "job_shard",
+        uniqueConstraints = @UniqueConstraint(name = "uk_job_shard_run", columnNames = {"job_name", "run_key", "shard"}))
+public class JobShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_name", nullable = false)
+    private String jobName;
+
+    @Column(name = "run_key", nullable = false)
+    private String runKey;
+
+    @Column(nullable = false)
+    private int shard;
+
+    @Column(name = "from_id", nullable = false)
+    private long fromId;
+
+    @Column(name = "to_id", nullable = false)
+    private long toId;
+
+    @Column
+    private String owner;
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "done_at")
+    private LocalDateTime doneAt;
+
+    @Column(name = "failed_at")
+    private LocalDateTime failedAt;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
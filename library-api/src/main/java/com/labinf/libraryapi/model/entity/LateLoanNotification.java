@@ -0,0 +1,74 @@
+package com.labinf.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Outbox row of a late loan email. Written together with the overdue scan and
+ * drained by the relay, the dedupe key keeps one row per loan and run day.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "late_loan_notification",
+        uniqueConstraints = @UniqueConstraint(name = "uk_late_loan_notification_dedupe", columnNames = "dedupe_key"))
+public class LateLoanNotification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "dedupe_key", nullable = false)
+    private String dedupeKey;
+
+    @Column(name = "loan_id")
+    private Long loanId;
+
+    @Column
+    private String customer;
+
+    @Column
+    private String email;
+
+    @Column(name = "book_title")
+    private String bookTitle;
+
+    @Column(name = "book_isbn")
+    private String bookIsbn;
+
+    @Column(name = "loan_date")
+    private LocalDate loanDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private NotificationStatus status;
+
+    @Column
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claimed_by")
+    private String claimedBy;
+
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+}
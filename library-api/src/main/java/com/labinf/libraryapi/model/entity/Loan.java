@@ -1,5 +1,6 @@
 package com.labinf.libraryapi.model.entity;
 
+import com.labinf.libraryapi.service.availability.LoanedBooksListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,10 +14,15 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @Builder
 @Entity
+@EntityListeners(LoanedBooksListener.class)
+@Table(uniqueConstraints = @UniqueConstraint(name = Loan.ACTIVE_BOOK_UNIQUE, columnNames = "active_book"))
 public class Loan {
 
+    public static final String ACTIVE_BOOK_UNIQUE = "uk_loan_active_book";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
 
     @Column
@@ -26,7 +32,7 @@ public class Loan {
     private String customerEmail;
 
     @JoinColumn(name = "id_book")
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Book book;
 
     @Column
@@ -34,4 +40,30 @@ public class Loan {
 
     @Column
     private Boolean returned;
+
+    @Column
+    private LocalDate returnedDate;
+
+    /**
+     * The book id while the loan is open and null once it is returned, so the unique
+     * constraint allows a single open loan per book.
+     */
+    @Column(name = "active_book")
+    private Long activeBook;
+
+    @Version
+    private Long version;
+
+    @PrePersist
+    @PreUpdate
+    void trackActiveBook() {
+        activeBook = openBook();
+    }
+
+    /**
+     * The book id the active book takes on the next write.
+     */
+    public Long openBook() {
+        return book == null || Boolean.TRUE.equals(returned) ? null : book.getId();
+    }
 }
@@ -0,0 +1,8 @@
+package com.labinf.libraryapi.model.entity;
+
+public enum NotificationStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    DEAD
+}
@@ -1,14 +1,99 @@
 package com.labinf.libraryapi.model.repository;
 
+import com.labinf.libraryapi.dto.BookAvailabilityDTO;
+import com.labinf.libraryapi.dto.BookDTO;
 import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.repository.support.PagingRepository;
+import com.labinf.libraryapi.model.repository.support.Projection;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+public interface BookRepository extends JpaRepository<Book, Long>, PagingRepository<Book> {
+
+    Projection<BookDTO> BOOK_DTO = Projection.of(BookDTO.class, "id", "title", "author", "isbn");
 
     boolean existsByIsbn(String isbn);
 
     Optional<Book> findByIsbn(String isbn);
 
+    @Query("select b.version from Book b where b.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("select b.isbn from Book b where b.isbn in :isbns")
+    Set<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    @Query("select b.isbn from Book b where b.id in :ids and b.isbn is not null")
+    Set<String> findIsbnsById(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.labinf.libraryapi.dto.BookDTO(b.id, b.title, b.author, b.isbn) from Book b where b.isbn in :isbns")
+    List<BookDTO> findDtosByIsbnIn(@Param("isbns") Collection<String> isbns);
+
+    @Query("select new com.labinf.libraryapi.dto.BookAvailabilityDTO(b.id, b.activeLoanId) from Book b where b.id = :id")
+    Optional<BookAvailabilityDTO> findAvailability(@Param("id") Long id);
+
+    /**
+     * One statement instead of the select and merge of a detached book, so no version is compared.
+     */
+    @Modifying
+    @Query("delete from Book b where b.id = :id")
+    int deleteBook(@Param("id") Long id);
+
+    /**
+     * Points the book at the loan only if it is on the shelf. The row lock makes concurrent checkouts
+     * of the book wait for each other, the ones that come after the first update no row.
+     */
+    @Modifying
+    @Query("update Book b set b.activeLoanId = :loanId where b.id = :bookId and b.activeLoanId is null")
+    int claim(@Param("bookId") Long bookId, @Param("loanId") Long loanId);
+
+    /**
+     * Writes the edited columns only if the book is still at the version the caller read, no select to merge it first.
+     * Updates no row when another write got there before.
+     */
+    @Modifying
+    @Query("update Book b set b.title = :title, b.author = :author, b.version = b.version + 1 " +
+            "where b.id = :id and b.version = :version")
+    int updateDetails(@Param("id") Long id, @Param("version") Long version,
+                      @Param("title") String title, @Param("author") String author);
+
+    /**
+     * Copies the open loan of each book, as recorded on the loan table, to its pointer.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Book b set b.activeLoanId = (select l.id from Loan l where l.activeBook = b.id) where b.id in :bookIds")
+    int syncActiveLoan(@Param("bookIds") Collection<Long> bookIds);
+
+    /**
+     * Books whose pointer disagrees with the loan table: no pointer for an open loan,
+     * or a pointer to a loan that is returned or of another book. Read by id after {@code after}.
+     */
+    @Query("select b.id from Book b where b.id > :after and ( " +
+            " ( b.activeLoanId is null and exists ( select l.id from Loan l where l.activeBook = b.id ) ) " +
+            " or ( b.activeLoanId is not null and not exists ( select l.id from Loan l where l.id = b.activeLoanId and l.activeBook = b.id ) ) ) " +
+            " order by b.id")
+    List<Long> findDriftedIds(@Param("after") Long after, Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select b from Book b")
+    Stream<Book> streamAll();
+
 }
@@ -0,0 +1,26 @@
+package com.labinf.libraryapi.model.repository;
+
+import com.labinf.libraryapi.model.entity.Book;
+import org.springframework.data.jpa.domain.Specification;
+
+public final class BookSpecifications {
+
+    private BookSpecifications() {
+    }
+
+    /**
+     * Same matching as the example used by the paged search: every informed field contained, ignoring case.
+     */
+    public static Specification<Book> matching(Book filter) {
+        return Specification.where(containing("title", filter.getTitle()))
+                .and(containing("author", filter.getAuthor()))
+                .and(containing("isbn", filter.getIsbn()));
+    }
+
+    private static Specification<Book> containing(String attribute, String value) {
+        if (value == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.like(cb.lower(root.get(attribute)), "%" + value.toLowerCase() + "%");
+    }
+}
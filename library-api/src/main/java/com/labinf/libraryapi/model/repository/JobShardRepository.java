@@ -0,0 +1,66 @@
+package com.labinf.libraryapi.model.repository;
+
+import com.labinf.libraryapi.model.entity.JobShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface JobShardRepository extends JpaRepository<JobShard, Long> {
+
+    boolean existsByJobNameAndRunKey(String jobName, String runKey);
+
+    /**
+     * Unfinished shards of every run of the job that nobody holds: never claimed, with an expired lease
+     * or done with their backoff. Shards that failed for good are left out.
+     */
+    @Query("select s.id from JobShard s where s.jobName = :job and s.doneAt is null and s.failedAt is null " +
+            " and ( s.leaseUntil is null or s.leaseUntil < :now ) order by s.id")
+    List<Long> findFreeShardIds(@Param("job") String job, @Param("now") LocalDateTime now);
+
+    /**
+     * Takes the shard only if it is still free, of the nodes that race for it a single one updates the row.
+     */
+    @Modifying
+    @Query("update JobShard s set s.owner = :owner, s.leaseUntil = :until where s.id = :id " +
+            " and s.doneAt is null and s.failedAt is null " +
+            " and ( s.leaseUntil is null or s.leaseUntil < :now )")
+    int claim(@Param("id") Long id, @Param("owner") String owner,
+              @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    /**
+     * Updates no row when the lease expired and another node took the shard over.
+     */
+    @Modifying
+    @Query("update JobShard s set s.doneAt = :now, s.leaseUntil = null where s.id = :id and s.owner = :owner and s.doneAt is null")
+    int complete(@Param("id") Long id, @Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    /**
+     * Extends the lease of a shard still held by the owner, updates no row when another node took it over.
+     */
+    @Modifying
+    @Query("update JobShard s set s.leaseUntil = :until where s.id = :id and s.owner = :owner " +
+            " and s.doneAt is null and s.failedAt is null")
+    int renew(@Param("id") Long id, @Param("owner") String owner, @Param("until") LocalDateTime until);
+
+    /**
+     * Counts a failed attempt and keeps the lease until the backoff is over, so no node retries it before.
+     */
+    @Modifying
+    @Query("update JobShard s set s.attempts = s.attempts + 1, s.lastError = :error, s.leaseUntil = :until " +
+            " where s.id = :id and s.owner = :owner and s.doneAt is null and s.failedAt is null")
+    int retry(@Param("id") Long id, @Param("owner") String owner,
+              @Param("until") LocalDateTime until, @Param("error") String error);
+
+    /**
+     * Counts the last attempt and gives the shard up, it is never claimed again.
+     */
+    @Modifying
+    @Query("update JobShard s set s.attempts = s.attempts + 1, s.lastError = :error, s.failedAt = :now, s.leaseUntil = null " +
+            " where s.id = :id and s.owner = :owner and s.doneAt is null and s.failedAt is null")
+    int fail(@Param("id") Long id, @Param("owner") String owner,
+             @Param("now") LocalDateTime now, @Param("error") String error);
+}
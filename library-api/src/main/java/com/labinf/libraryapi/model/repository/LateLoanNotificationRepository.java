@@ -0,0 +1,61 @@
+package com.labinf.libraryapi.model.repository;
+
+import com.labinf.libraryapi.model.entity.LateLoanNotification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface LateLoanNotificationRepository extends JpaRepository<LateLoanNotification, Long> {
+
+    @Query("select n.dedupeKey from LateLoanNotification n where n.dedupeKey in :keys")
+    Set<String> findExistingDedupeKeys(@Param("keys") Collection<String> keys);
+
+    /**
+     * Emails with something to send: pending rows whose backoff is over,
+     * or rows claimed by a relay that did not finish before its claim expired.
+     */
+    @Query("select distinct n.email from LateLoanNotification n " +
+            " where ( n.status = com.labinf.libraryapi.model.entity.NotificationStatus.PENDING and n.nextAttemptAt <= :now ) " +
+            " or ( n.status = com.labinf.libraryapi.model.entity.NotificationStatus.SENDING and n.claimedUntil < :now ) " +
+            " order by n.email")
+    List<String> findDueEmails(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update LateLoanNotification n set n.status = com.labinf.libraryapi.model.entity.NotificationStatus.SENDING, " +
+            " n.claimedBy = :owner, n.claimedUntil = :until where n.email in :emails " +
+            " and ( ( n.status = com.labinf.libraryapi.model.entity.NotificationStatus.PENDING and n.nextAttemptAt <= :now ) " +
+            " or ( n.status = com.labinf.libraryapi.model.entity.NotificationStatus.SENDING and n.claimedUntil < :now ) )")
+    int claim(@Param("emails") Collection<String> emails, @Param("owner") String owner,
+              @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    List<LateLoanNotification> findByClaimedByOrderByEmailAscLoanIdAsc(String claimedBy);
+
+    /**
+     * The writes below only touch rows still claimed by {@code owner}: once a claim expired and another relay
+     * took the rows over, the late relay updates nothing.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update LateLoanNotification n set n.status = com.labinf.libraryapi.model.entity.NotificationStatus.SENT, " +
+            " n.sentAt = :now, n.claimedBy = null, n.claimedUntil = null where n.id in :ids and n.claimedBy = :owner")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update LateLoanNotification n set n.status = com.labinf.libraryapi.model.entity.NotificationStatus.PENDING, " +
+            " n.attempts = n.attempts + 1, n.nextAttemptAt = :next, n.lastError = :error, n.claimedBy = null, n.claimedUntil = null " +
+            " where n.id in :ids and n.claimedBy = :owner")
+    int retry(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+              @Param("next") LocalDateTime next, @Param("error") String error);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update LateLoanNotification n set n.status = com.labinf.libraryapi.model.entity.NotificationStatus.DEAD, " +
+            " n.attempts = n.attempts + 1, n.lastError = :error, n.claimedBy = null, n.claimedUntil = null " +
+            " where n.id in :ids and n.claimedBy = :owner")
+    int dead(@Param("ids") Collection<Long> ids, @Param("owner") String owner, @Param("error") String error);
+}
@@ -1,28 +1,121 @@
 package com.labinf.libraryapi.model.repository;
 
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.IdRangeDTO;
+import com.labinf.libraryapi.dto.LateLoanDTO;
+import com.labinf.libraryapi.dto.LoanStateDTO;
+import com.labinf.libraryapi.dto.LoansVersionDTO;
 import com.labinf.libraryapi.model.entity.Book;
 import com.labinf.libraryapi.model.entity.Loan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import com.labinf.libraryapi.model.repository.support.KeysetCursor;
+import com.labinf.libraryapi.model.repository.support.KeysetPage;
+import com.labinf.libraryapi.model.repository.support.PagingRepository;
+import com.labinf.libraryapi.model.repository.support.Projection;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface LoanRepository extends JpaRepository<Loan, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
+public interface LoanRepository extends JpaRepository<Loan, Long>, PagingRepository<Loan> {
+
+    String LATE_LOANS_FETCH_SIZE = "500";
+
+    String LOANED_BOOKS_FETCH_SIZE = "1000";
+
+    Projection<LoanDTO> LOAN_DTO = Projection.of(LoanDTO.class,
+            "id", "customer", "customerEmail", "book.id", "book.title", "book.author", "book.isbn");
+
+    /**
+     * The open loan of a book is the one holding its id in the unique active book column,
+     * so this reads one entry of that index instead of every loan of the book.
+     */
     @Query(value="SELECT case WHEN ( count (l.id) > 0 ) then true else  false end from Loan l " +
-            " where l.book =:book  and ( l.returned is null or l.returned is false ) "  )
+            " where l.activeBook = :#{#book.id} ")
     boolean existsByBookAndNotReturned(@Param("book") Book book);
 
-    @Query(value="SELECT l FROM Loan as l JOIN l.book as b WHERE b.isbn= :isbn OR l.customer= :customer")
-    Page<Loan> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable page);
+    /**
+     * Changes whenever a loan of the book is added, changed or removed, or the book itself changes.
+     * Empty when the book does not exist.
+     */
+    @Query("select new com.labinf.libraryapi.dto.LoansVersionDTO(b.version, count(l.id), coalesce(max(l.id), 0), " +
+            "coalesce(sum(l.version), 0)) from Book b left join b.loans l where b.id = :bookId group by b.version")
+    Optional<LoansVersionDTO> findLoansVersionByBook(@Param("bookId") Long bookId);
+
+    @Query("select new com.labinf.libraryapi.dto.LoanStateDTO(l.book.id, l.activeBook, l.version) from Loan l where l.id = :id")
+    Optional<LoanStateDTO> findState(@Param("id") Long id);
+
+    /**
+     * Returns or reopens the loan only if it is still at the version the caller read, no select to merge it first.
+     * Updates no row when another write got there before.
+     */
+    @Modifying
+    @Query("update Loan l set l.returned = :returned, l.returnedDate = :returnedDate, l.activeBook = :activeBook, " +
+            "l.version = l.version + 1 where l.id = :id and l.version = :version")
+    int markReturned(@Param("id") Long id, @Param("version") Long version, @Param("returned") Boolean returned,
+                     @Param("returnedDate") LocalDate returnedDate, @Param("activeBook") Long activeBook);
 
-    Page<Loan> findByBook(Book book, Pageable pageable);
+    @EntityGraph(attributePaths = "book")
+    @Query(value = "select l from Loan l where l.book = :book",
+            countQuery = "select count(l) from Loan l where l.book = :book")
+    Page<Loan> findByBook(@Param("book") Book book, Pageable pageable);
+
+    /**
+     * Listings read the book of every row, so it comes in the same select.
+     */
+    @Override
+    @EntityGraph(attributePaths = "book")
+    Slice<Loan> findSlice(Specification<Loan> spec, Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = "book")
+    KeysetPage<Loan> findAfter(Specification<Loan> spec, KeysetCursor cursor, int size);
 
     @Query("select l from Loan l where l.loanDate <= :threeDaysAgo and ( l.returned is null or l.returned is false ) ")
     List<Loan> findByLoanDateLessThanAndNotReturned(@Param("threeDaysAgo") LocalDate threeDaysAgo);
+
+    @Query("select new com.labinf.libraryapi.dto.IdRangeDTO(min(l.id), max(l.id)) from Loan l " +
+            " where l.loanDate <= :threeDaysAgo and ( l.returned is null or l.returned is false ) ")
+    IdRangeDTO findLateLoanIdRange(@Param("threeDaysAgo") LocalDate threeDaysAgo);
+
+    /**
+     * Forward-only scan of the late loans with ids from {@code fromId} to {@code toId}, only with the columns
+     * needed to notify the customer. Rows come ordered by email so the loans of one customer are adjacent.
+     * Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = LATE_LOANS_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select new com.labinf.libraryapi.dto.LateLoanDTO(l.id, l.customer, l.customerEmail, b.title, b.isbn, l.loanDate) " +
+            " from Loan l join l.book b where l.loanDate <= :threeDaysAgo and ( l.returned is null or l.returned is false ) " +
+            " and l.id between :fromId and :toId order by l.customerEmail, l.id")
+    Stream<LateLoanDTO> streamLateLoans(@Param("threeDaysAgo") LocalDate threeDaysAgo,
+                                        @Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * Ids of the books with an open loan, read from the unique active book column.
+     * Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = LOANED_BOOKS_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select l.activeBook from Loan l where l.activeBook is not null")
+    Stream<Long> streamLoanedBookIds();
 }
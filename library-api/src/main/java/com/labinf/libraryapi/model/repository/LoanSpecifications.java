@@ -0,0 +1,50 @@
+package com.labinf.libraryapi.model.repository;
+
+import com.labinf.libraryapi.dto.LoanFilterDTO;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.repository.support.Filter;
+import org.springframework.data.jpa.domain.Specification;
+
+public final class LoanSpecifications {
+
+    private LoanSpecifications() {
+    }
+
+    /**
+     * Only the fields the filter sets become conditions. With {@link LoanFilterDTO.Match#ANY} and both the
+     * isbn and the customer set, the filter has two branches, one per index.
+     */
+    public static Filter<Loan> filter(LoanFilterDTO dto) {
+        Filter<Loan> identity = dto.getMatch() == LoanFilterDTO.Match.ALL ? Filter.allOf() : Filter.anyOf();
+        identity.equal("book.isbn", dto.getIsbn())
+                .equal("customer", dto.getCustomer());
+        return Filter.<Loan>allOf()
+                .with(identity)
+                .between("loanDate", dto.getFrom(), dto.getTo())
+                .where(returned(dto.getReturned()));
+    }
+
+    /**
+     * An open loan is the one holding its book in the active book column, a null state matches any loan.
+     */
+    public static Specification<Loan> returned(Boolean returned) {
+        if (returned == null) {
+            return null;
+        }
+        return returned
+                ? (root, query, cb) -> cb.isTrue(root.get("returned"))
+                : (root, query, cb) -> cb.isNotNull(root.get("activeBook"));
+    }
+
+    public static Specification<Loan> ofBook(Book book) {
+        return (root, query, cb) -> cb.equal(root.get("book"), book);
+    }
+
+    /**
+     * Compares the foreign key column, for callers that have the id of the book but not the book.
+     */
+    public static Specification<Loan> ofBook(Long bookId) {
+        return (root, query, cb) -> cb.equal(root.get("book").get("id"), bookId);
+    }
+}
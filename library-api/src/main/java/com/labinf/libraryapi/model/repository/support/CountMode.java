@@ -0,0 +1,25 @@
+package com.labinf.libraryapi.model.repository.support;
+
+import com.labinf.libraryapi.exceptions.BusinessException;
+
+/**
+ * How the total of a paged listing is obtained.
+ */
+public enum CountMode {
+    /** count query for every page, except the last one whose total is known */
+    EXACT,
+    /** count reused for the same filter within a TTL */
+    CACHED,
+    /** count stopped at a cap, exact below it */
+    ESTIMATED,
+    /** no count, only whether there is a next page */
+    NONE;
+
+    public static CountMode of(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException("Invalid count mode: " + value);
+        }
+    }
+}
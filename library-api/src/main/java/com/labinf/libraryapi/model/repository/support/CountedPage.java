@@ -0,0 +1,31 @@
+package com.labinf.libraryapi.model.repository.support;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Page that also tells how its total was obtained.
+ */
+public class CountedPage<T> extends PageImpl<T> {
+
+    private final CountMode countMode;
+
+    public CountedPage(List<T> content, Pageable pageable, long total, CountMode countMode) {
+        super(content, pageable, total);
+        this.countMode = countMode;
+    }
+
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    @Override
+    public <U> CountedPage<U> map(Function<? super T, ? extends U> converter) {
+        return new CountedPage<>(getContent().stream().map(converter).collect(Collectors.toList()),
+                getPageable(), getTotalElements(), countMode);
+    }
+}
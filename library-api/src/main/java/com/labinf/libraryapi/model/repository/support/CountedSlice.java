@@ -0,0 +1,32 @@
+package com.labinf.libraryapi.model.repository.support;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Page without total, for {@link CountMode#NONE}.
+ */
+public class CountedSlice<T> extends SliceImpl<T> {
+
+    public CountedSlice(List<T> content, Pageable pageable, boolean hasNext) {
+        super(content, pageable, hasNext);
+    }
+
+    public CountMode getCountMode() {
+        return CountMode.NONE;
+    }
+
+    public boolean getHasNext() {
+        return hasNext();
+    }
+
+    @Override
+    public <U> CountedSlice<U> map(Function<? super T, ? extends U> converter) {
+        return new CountedSlice<>(getContent().stream().map(converter).collect(Collectors.toList()),
+                getPageable(), hasNext());
+    }
+}
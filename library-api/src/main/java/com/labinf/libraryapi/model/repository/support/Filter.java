@@ -0,0 +1,135 @@
+package com.labinf.libraryapi.model.repository.support;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds the condition of a listing from the fields a request actually sets: a condition on a null value
+ * is left out instead of matching nothing, and a group with nothing left is dropped.
+ * Attribute paths like {@code book.isbn} go through an inner join shared with the projection.
+ * <p>
+ * An OR can defeat the index of each of its sides, so {@link #branches()} distributes the groups into
+ * conjunctions that can each be read with one index and then merged as a union.
+ */
+public final class Filter<T> {
+
+    /**
+     * Beyond this the union would cost more queries than it saves, the filter is read as one OR query.
+     */
+    static final int MAX_BRANCHES = 8;
+
+    private final boolean any;
+
+    private final Specification<T> condition;
+
+    private final List<Filter<T>> parts = new ArrayList<>();
+
+    private Filter(boolean any, Specification<T> condition) {
+        this.any = any;
+        this.condition = condition;
+    }
+
+    /**
+     * Group matching the rows that satisfy all its conditions.
+     */
+    public static <T> Filter<T> allOf() {
+        return new Filter<>(false, null);
+    }
+
+    /**
+     * Group matching the rows that satisfy any of its conditions.
+     */
+    public static <T> Filter<T> anyOf() {
+        return new Filter<>(true, null);
+    }
+
+    public Filter<T> equal(String path, Object value) {
+        return value == null ? this : where((root, query, cb) -> cb.equal(PagingRepositoryImpl.path(root, path), value));
+    }
+
+    /**
+     * Inclusive range, either bound can be left open.
+     */
+    public <Y extends Comparable<? super Y>> Filter<T> between(String path, Y from, Y to) {
+        if (from != null) {
+            where((root, query, cb) -> cb.greaterThanOrEqualTo(PagingRepositoryImpl.<Y>path(root, path), from));
+        }
+        if (to != null) {
+            where((root, query, cb) -> cb.lessThanOrEqualTo(PagingRepositoryImpl.<Y>path(root, path), to));
+        }
+        return this;
+    }
+
+    public Filter<T> where(Specification<T> specification) {
+        if (specification != null) {
+            parts.add(new Filter<>(false, specification));
+        }
+        return this;
+    }
+
+    public Filter<T> with(Filter<T> group) {
+        if (!group.isEmpty()) {
+            parts.add(group);
+        }
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return condition == null && parts.isEmpty();
+    }
+
+    /**
+     * The whole filter as one condition, null when nothing was set.
+     */
+    public Specification<T> toSpecification() {
+        if (condition != null) {
+            return condition;
+        }
+        Specification<T> specification = null;
+        for (Filter<T> part : parts) {
+            Specification<T> next = part.toSpecification();
+            specification = specification == null ? Specification.where(next)
+                    : any ? specification.or(next) : specification.and(next);
+        }
+        return specification;
+    }
+
+    /**
+     * Conjunctions whose union is the filter, a single one when the filter has no OR worth splitting.
+     * An empty filter gives one null branch, which matches every row.
+     */
+    public List<Specification<T>> branches() {
+        List<Specification<T>> branches = expand();
+        return branches.size() > MAX_BRANCHES ? Collections.singletonList(toSpecification()) : branches;
+    }
+
+    private List<Specification<T>> expand() {
+        if (condition != null) {
+            return Collections.singletonList(condition);
+        }
+        List<Specification<T>> branches = Collections.singletonList(null);
+        if (any && !parts.isEmpty()) {
+            branches = new ArrayList<>();
+            for (Filter<T> part : parts) {
+                branches.addAll(part.expand());
+            }
+            return branches;
+        }
+        for (Filter<T> part : parts) {
+            List<Specification<T>> combined = new ArrayList<>();
+            for (Specification<T> branch : branches) {
+                for (Specification<T> next : part.expand()) {
+                    combined.add(branch == null ? Specification.where(next) : branch.and(next));
+                }
+            }
+            if (combined.size() > MAX_BRANCHES) {
+                return combined;
+            }
+            branches = combined;
+        }
+        return branches;
+    }
+}
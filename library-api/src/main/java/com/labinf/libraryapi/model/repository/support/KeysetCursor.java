@@ -0,0 +1,71 @@
+package com.labinf.libraryapi.model.repository.support;
+
+import com.labinf.libraryapi.exceptions.BusinessException;
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Position of a keyset page: the sort key, its direction and the key and id of the last row returned.
+ * Travels to the client as an opaque url-safe token, so the following requests only need the token.
+ */
+@Getter
+public final class KeysetCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final String key;
+    private final Sort.Direction direction;
+    private final Long lastId;
+    private final String lastValue;
+
+    private KeysetCursor(String key, Sort.Direction direction, Long lastId, String lastValue) {
+        this.key = key;
+        this.direction = direction;
+        this.lastId = lastId;
+        this.lastValue = lastValue;
+    }
+
+    /**
+     * Reads the {@code after} token, or starts from the first page ordered by the first
+     * requested sort key when the token is blank. Only {@code keys} can be used as sort key.
+     */
+    public static KeysetCursor of(String after, Sort sort, Set<String> keys) {
+        KeysetCursor cursor = after == null || after.isEmpty() ? first(sort) : decode(after);
+        if (!keys.contains(cursor.key)) {
+            throw new BusinessException("Sort not supported with cursor: " + cursor.key);
+        }
+        return cursor;
+    }
+
+    private static KeysetCursor first(Sort sort) {
+        Sort.Order order = sort.stream().findFirst().orElse(Sort.Order.asc("id"));
+        return new KeysetCursor(order.getProperty(), order.getDirection(), null, null);
+    }
+
+    private static KeysetCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                    .split("\\" + SEPARATOR, 4);
+            return new KeysetCursor(parts[0], Sort.Direction.fromString(parts[1]), Long.valueOf(parts[2]), parts[3]);
+        } catch (RuntimeException e) {
+            throw new BusinessException("Invalid cursor");
+        }
+    }
+
+    public boolean isFirst() {
+        return lastId == null;
+    }
+
+    public KeysetCursor next(Long lastId, Object lastValue) {
+        return new KeysetCursor(key, direction, lastId, String.valueOf(lastValue));
+    }
+
+    public String encode() {
+        String token = key + SEPARATOR + direction + SEPARATOR + lastId + SEPARATOR + lastValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+}
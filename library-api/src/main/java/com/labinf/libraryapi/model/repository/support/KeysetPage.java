@@ -0,0 +1,26 @@
+package com.labinf.libraryapi.model.repository.support;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * One page of a keyset scan. {@code next} is the token of the following page, null on the last one.
+ */
+@Getter
+@AllArgsConstructor
+public class KeysetPage<T> {
+
+    private final List<T> content;
+
+    private final int size;
+
+    private final String next;
+
+    public <R> KeysetPage<R> map(Function<? super T, ? extends R> converter) {
+        return new KeysetPage<>(content.stream().map(converter).collect(Collectors.toList()), size, next);
+    }
+}
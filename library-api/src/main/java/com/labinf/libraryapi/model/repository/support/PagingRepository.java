@@ -0,0 +1,56 @@
+package com.labinf.libraryapi.model.repository.support;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.util.List;
+
+@NoRepositoryBean
+public interface PagingRepository<T> extends JpaSpecificationExecutor<T> {
+
+    /**
+     * Seek pagination: returns up to {@code size} rows after the cursor position, ordered by the cursor key
+     * and then by id. The position is a {@code (key, id) > (?, ?)} condition instead of an offset and no
+     * count is run, so any page costs the same as the first one.
+     * The key column must not hold nulls.
+     */
+    KeysetPage<T> findAfter(Specification<T> spec, KeysetCursor cursor, int size);
+
+    /**
+     * The requested page without the count query: one extra row is read to know if there is a next page.
+     */
+    Slice<T> findSlice(Specification<T> spec, Pageable pageable);
+
+    /**
+     * Same as {@link #findSlice(Specification, Pageable)} but selects only the columns of the projection,
+     * so no entity is managed or snapshotted for dirty checking.
+     */
+    <P> Slice<P> findSlice(Specification<T> spec, Pageable pageable, Projection<P> projection);
+
+    /**
+     * Page of the union of the branches, see {@link Filter#branches()}. Each branch is its own query on the ids
+     * and sort keys of its first rows up to the end of the page, so it reads its own index instead of the whole
+     * table an OR would. The branches are merged in memory, duplicates dropped, and the rows of the page read
+     * by id. A sort on id is always added to break ties.
+     */
+    <P> Slice<P> findSlice(List<Specification<T>> branches, Pageable pageable, Projection<P> projection);
+
+    /**
+     * Counts the matching rows but stops at {@code limit}, so the cost is bounded however many rows match.
+     */
+    long countUpTo(Specification<T> spec, int limit);
+
+    /**
+     * Distinct rows of the union of the branches up to {@code limit}, each branch reading only its ids.
+     */
+    long countUpTo(List<Specification<T>> branches, int limit);
+
+    /**
+     * Distinct rows of the union of the branches, one {@code count(*)} over a SQL UNION of the ids each branch
+     * selects, so every branch reads its own index as it does for the page instead of the whole table an OR would.
+     */
+    long count(List<Specification<T>> branches);
+}
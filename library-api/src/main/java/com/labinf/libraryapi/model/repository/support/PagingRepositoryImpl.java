@@ -0,0 +1,326 @@
+package com.labinf.libraryapi.model.repository.support;
+
+import com.labinf.libraryapi.exceptions.BusinessException;
+import org.hibernate.engine.query.spi.QueryPlanCache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.Type;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.Jpa21Utils;
+import org.springframework.data.jpa.repository.query.JpaEntityGraph;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.jpa.repository.support.CrudMethodMetadata;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Parameter;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Base class of the application repositories, adds the keyset and count-free queries to the Spring Data ones.
+ */
+public class PagingRepositoryImpl<T, ID extends Serializable> extends SimpleJpaRepository<T, ID>
+        implements PagingRepository<T> {
+
+    private final JpaEntityInformation<T, ?> entityInformation;
+
+    private final EntityManager entityManager;
+
+    public PagingRepositoryImpl(JpaEntityInformation<T, ?> entityInformation, EntityManager entityManager) {
+        super(entityInformation, entityManager);
+        this.entityInformation = entityInformation;
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public KeysetPage<T> findAfter(Specification<T> spec, KeysetCursor cursor, int size) {
+        String idName = entityInformation.getIdAttribute().getName();
+        boolean byId = idName.equals(cursor.getKey());
+        boolean ascending = cursor.getDirection().isAscending();
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(getDomainClass());
+        Root<T> root = query.from(getDomainClass());
+        Path<Comparable> key = root.get(cursor.getKey());
+        Path<Comparable> id = root.get(idName);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                predicates.add(predicate);
+            }
+        }
+        if (!cursor.isFirst()) {
+            Comparable lastId = cursor.getLastId();
+            Predicate afterId = ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId);
+            if (byId) {
+                predicates.add(afterId);
+            } else {
+                Comparable lastValue = parse(cursor.getLastValue(), key.getJavaType());
+                // the redundant >= bound lets the database range scan the index on the key
+                predicates.add(ascending ? cb.greaterThanOrEqualTo(key, lastValue) : cb.lessThanOrEqualTo(key, lastValue));
+                predicates.add(cb.or(
+                        ascending ? cb.greaterThan(key, lastValue) : cb.lessThan(key, lastValue),
+                        cb.and(cb.equal(key, lastValue), afterId)));
+            }
+        }
+
+        List<Order> orders = new ArrayList<>();
+        if (!byId) {
+            orders.add(ascending ? cb.asc(key) : cb.desc(key));
+        }
+        orders.add(ascending ? cb.asc(id) : cb.desc(id));
+        query.where(predicates.toArray(new Predicate[0])).orderBy(orders);
+
+        List<T> rows = withFetchGraphs(entityManager.createQuery(query)).setMaxResults(size + 1).getResultList();
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, size, null);
+        }
+        List<T> content = rows.subList(0, size);
+        T last = content.get(size - 1);
+        KeysetCursor next = cursor.next((Long) entityInformation.getId(last),
+                new BeanWrapperImpl(last).getPropertyValue(cursor.getKey()));
+        return new KeysetPage<>(new ArrayList<>(content), size, next.encode());
+    }
+
+    @Override
+    public Slice<T> findSlice(Specification<T> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(getDomainClass());
+        Root<T> root = query.from(getDomainClass());
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+        List<T> rows = withFetchGraphs(entityManager.createQuery(query))
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<T> content = hasNext ? new ArrayList<>(rows.subList(0, pageable.getPageSize())) : rows;
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    public <P> Slice<P> findSlice(Specification<T> spec, Pageable pageable, Projection<P> projection) {
+        List<P> rows = entityManager.createQuery(select(spec, projection, pageable.getSort()))
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<P> content = hasNext ? new ArrayList<>(rows.subList(0, pageable.getPageSize())) : rows;
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <P> Slice<P> findSlice(List<Specification<T>> branches, Pageable pageable, Projection<P> projection) {
+        String idName = entityInformation.getIdAttribute().getName();
+        Sort sort = pageable.getSort().getOrderFor(idName) == null ? pageable.getSort().and(Sort.by(idName)) : pageable.getSort();
+        int end = (int) pageable.getOffset() + pageable.getPageSize();
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        Map<Object, Object[]> keys = new LinkedHashMap<>();
+        for (Specification<T> branch : branches) {
+            CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+            Root<T> root = query.from(getDomainClass());
+            Predicate predicate = branch == null ? null : branch.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+            List<Selection<?>> selections = new ArrayList<>();
+            selections.add(root.get(idName));
+            sort.forEach(order -> selections.add(path(root, order.getProperty())));
+            query.multiselect(selections).orderBy(QueryUtils.toOrders(sort, root, cb));
+            for (Object[] row : entityManager.createQuery(query).setMaxResults(end + 1).getResultList()) {
+                keys.putIfAbsent(row[0], row);
+            }
+        }
+
+        Comparator<Object[]> order = null;
+        int column = 1;
+        for (Sort.Order sortOrder : sort) {
+            int index = column++;
+            Comparator<Object[]> next = Comparator.comparing(row -> (Comparable) row[index],
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            next = sortOrder.isAscending() ? next : next.reversed();
+            order = order == null ? next : order.thenComparing(next);
+        }
+        List<Object> ids = keys.values().stream()
+                .sorted(order)
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .map(row -> row[0])
+                .collect(Collectors.toList());
+        boolean hasNext = keys.size() > end;
+        if (ids.isEmpty()) {
+            return new SliceImpl<>(Collections.emptyList(), pageable, hasNext);
+        }
+        Specification<T> page = (root, query, builder) -> root.get(idName).in(ids);
+        return new SliceImpl<>(entityManager.createQuery(select(page, projection, sort)).getResultList(), pageable, hasNext);
+    }
+
+    @Override
+    public long countUpTo(Specification<T> spec, int limit) {
+        return entityManager.createQuery(selectIds(spec)).setMaxResults(limit).getResultList().size();
+    }
+
+    @Override
+    public long countUpTo(List<Specification<T>> branches, int limit) {
+        Set<Object> ids = new HashSet<>();
+        for (Specification<T> branch : branches) {
+            ids.addAll(entityManager.createQuery(selectIds(branch)).setMaxResults(limit).getResultList());
+            if (ids.size() >= limit) {
+                return limit;
+            }
+        }
+        return ids.size();
+    }
+
+    /**
+     * JPQL has no UNION: each branch is translated by Hibernate to its SQL, the criteria parameters are moved
+     * to the positions they took in it, and the database counts the union of the selects.
+     */
+    @Override
+    public long count(List<Specification<T>> branches) {
+        QueryPlanCache plans = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getQueryPlanCache();
+        List<String> selects = new ArrayList<>(branches.size());
+        List<Object> values = new ArrayList<>();
+        List<Type> types = new ArrayList<>();
+        for (Specification<T> branch : branches) {
+            org.hibernate.query.Query<?> query = entityManager.createQuery(selectIds(branch)).unwrap(org.hibernate.query.Query.class);
+            QueryTranslator translator = plans.getHQLQueryPlan(query.getQueryString(), false, Collections.emptyMap())
+                    .getTranslators()[0];
+            Map<Integer, Parameter<?>> located = new TreeMap<>();
+            for (Parameter<?> parameter : query.getParameters()) {
+                for (int location : translator.getParameterTranslations().getNamedParameterInformation(parameter.getName())
+                        .getSourceLocations()) {
+                    located.put(location, parameter);
+                }
+            }
+            located.values().forEach(parameter -> {
+                values.add(query.getParameterValue(parameter.getName()));
+                types.add(translator.getParameterTranslations().getNamedParameterInformation(parameter.getName()).getExpectedType());
+            });
+            selects.add(translator.getSQLString());
+        }
+        String sql = "select count(*) from (" + String.join(" union ", selects) + ") ids";
+        NativeQuery<?> count = entityManager.createNativeQuery(sql).unwrap(NativeQuery.class);
+        for (int i = 0; i < values.size(); i++) {
+            count.setParameter(i + 1, values.get(i), types.get(i));
+        }
+        return ((Number) count.getSingleResult()).longValue();
+    }
+
+    private CriteriaQuery<Object> selectIds(Specification<T> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> query = cb.createQuery(Object.class);
+        Root<T> root = query.from(getDomainClass());
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return query.select(root.get(entityInformation.getIdAttribute().getName()));
+    }
+
+    private <P> CriteriaQuery<P> select(Specification<T> spec, Projection<P> projection, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<P> query = cb.createQuery(projection.getType());
+        Root<T> root = query.from(getDomainClass());
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        List<Selection<?>> selections = new ArrayList<>(projection.getPaths().size());
+        for (String path : projection.getPaths()) {
+            selections.add(path(root, path));
+        }
+        query.select(cb.construct(projection.getType(), selections.toArray(new Selection[0])));
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return query;
+    }
+
+    /**
+     * Resolves a dotted attribute path, reusing the join already made by the specification if there is one.
+     */
+    @SuppressWarnings("unchecked")
+    static <Y> Path<Y> path(Root<?> root, String path) {
+        String[] names = path.split("\\.");
+        From<?, ?> from = root;
+        for (int i = 0; i < names.length - 1; i++) {
+            String name = names[i];
+            From<?, ?> parent = from;
+            from = parent.getJoins().stream()
+                    .filter(join -> join.getAttribute().getName().equals(name) && join.getJoinType() == JoinType.INNER)
+                    .findFirst()
+                    .<From<?, ?>>map(join -> join)
+                    .orElseGet(() -> parent.join(name));
+        }
+        return (Path<Y>) from.get(names[names.length - 1]);
+    }
+
+    /**
+     * Applies the {@code @EntityGraph} declared on the repository method, as Spring Data does for its own queries.
+     */
+    private TypedQuery<T> withFetchGraphs(TypedQuery<T> query) {
+        CrudMethodMetadata metadata = getRepositoryMethodMetadata();
+        if (metadata != null) {
+            metadata.getEntityGraph().ifPresent(graph -> Jpa21Utils.tryGetFetchGraphHints(entityManager,
+                    new JpaEntityGraph(graph, getDomainClass().getSimpleName() + "." + metadata.getMethod().getName()),
+                    getDomainClass()).forEach(query::setHint));
+        }
+        return query;
+    }
+
+    private static Comparable<?> parse(String value, Class<?> type) {
+        if (String.class.equals(type)) {
+            return value;
+        }
+        try {
+            if (Long.class.equals(type)) {
+                return Long.valueOf(value);
+            }
+            if (LocalDate.class.equals(type)) {
+                return LocalDate.parse(value);
+            }
+        } catch (RuntimeException e) {
+            throw new BusinessException("Invalid cursor");
+        }
+        throw new IllegalArgumentException("Unsupported keyset key type " + type.getName());
+    }
+}
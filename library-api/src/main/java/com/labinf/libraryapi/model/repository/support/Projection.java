@@ -0,0 +1,29 @@
+package com.labinf.libraryapi.model.repository.support;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only shape of a listing row: the class built with a constructor expression and the
+ * attribute paths passed to its constructor, in order. A path like {@code book.title} reads
+ * the column through an inner join, so only the listed columns are selected.
+ */
+@Getter
+public final class Projection<P> {
+
+    private final Class<P> type;
+
+    private final List<String> paths;
+
+    private Projection(Class<P> type, List<String> paths) {
+        this.type = type;
+        this.paths = paths;
+    }
+
+    public static <P> Projection<P> of(Class<P> type, String... paths) {
+        return new Projection<>(type, Collections.unmodifiableList(Arrays.asList(paths)));
+    }
+}
@@ -1,11 +1,24 @@
 package com.labinf.libraryapi.resource;
 
 import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.api.mapper.BookMapper;
+import com.labinf.libraryapi.api.mapper.LoanMapper;
+import com.labinf.libraryapi.config.async.AsyncRequests;
+import com.labinf.libraryapi.dto.BatchItemResultDTO;
+import com.labinf.libraryapi.dto.BookAvailabilityDTO;
 import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.dto.BookSnapshotDTO;
+import com.labinf.libraryapi.dto.BooksAvailabilityDTO;
+import com.labinf.libraryapi.dto.BooksAvailabilityRequestDTO;
+import com.labinf.libraryapi.dto.LoansPageDTO;
+import com.labinf.libraryapi.dto.LoansVersionDTO;
 import com.labinf.libraryapi.exceptions.ApiErrors;
 import com.labinf.libraryapi.exceptions.BusinessException;
 import com.labinf.libraryapi.model.entity.Book;
 import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.model.repository.support.KeysetPage;
+import com.labinf.libraryapi.service.BookAvailabilityService;
 import com.labinf.libraryapi.service.BookService;
 import com.labinf.libraryapi.service.LoanService;
 import io.swagger.annotations.Api;
@@ -14,20 +27,26 @@ import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/books")
@@ -37,27 +56,85 @@ import java.util.stream.Collectors;
 public class BookController {
 
     private final LoanService loanService;
+    private final BookAvailabilityService availabilityService;
     private final BookService service;
-    private final ModelMapper modelMapper;
+    private final BookMapper bookMapper;
+    private final LoanMapper loanMapper;
+    private final Validator validator;
+    private final AsyncRequests requests;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     @ApiOperation("Create a book")
-    public BookDTO create(@RequestBody @Valid  BookDTO dto) {
+    public DeferredResult<BookDTO> create(@RequestBody @Valid  BookDTO dto) {
         log.info("creating a book for isbn {}", dto.getIsbn());
-        Book entity =modelMapper.map(dto, Book.class);
-        entity = service.save(entity);
-        return modelMapper.map(entity, BookDTO.class);
+        Book entity = bookMapper.toEntity(dto);
+        entity.setId(null);
+        return requests.write(() -> bookMapper.toDto(service.save(entity)));
     }
 
+    @PostMapping("batch")
+    @ApiOperation("Import books in batch")
+    public DeferredResult<List<BatchItemResultDTO>> createBatch(@RequestBody List<BookDTO> dtos) {
+        log.info("importing {} books", dtos.size());
+        return requests.write(() -> importBatch(dtos));
+    }
+
+    private List<BatchItemResultDTO> importBatch(List<BookDTO> dtos) {
+        BatchItemResultDTO[] results = new BatchItemResultDTO[dtos.size()];
+        List<Book> books = new ArrayList<>(dtos.size());
+        List<Integer> positions = new ArrayList<>(dtos.size());
+        for (int i = 0; i < dtos.size(); i++) {
+            BookDTO dto = dtos.get(i);
+            Set<ConstraintViolation<BookDTO>> violations = validator.validate(dto);
+            if (violations.isEmpty()) {
+                Book book = bookMapper.toEntity(dto);
+                book.setId(null);
+                books.add(book);
+                positions.add(i);
+            } else {
+                results[i] = BatchItemResultDTO.invalid(i, dto.getIsbn(), violations);
+            }
+        }
+        List<BatchItemResultDTO> saved = service.saveBatch(books);
+        for (int i = 0; i < saved.size(); i++) {
+            BatchItemResultDTO result = saved.get(i);
+            result.setIndex(positions.get(i));
+            results[result.getIndex()] = result;
+        }
+        return Arrays.asList(results);
+    }
 
     @GetMapping("{id}")
     @ApiOperation("Obtain book datails by id")
-    public BookDTO get(@PathVariable Long id){
+    public DeferredResult<ResponseEntity<BookDTO>> get(@PathVariable Long id,
+                                                       @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
         log.info("obtain a book by id {}", id);
-        return service.getById(id)
-                .map( book -> modelMapper.map(book, BookDTO.class))
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return requests.lookup(() -> {
+            // the version is read from the database every time, the cache of this node may be behind another one
+            Long version = service.getVersion(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+            String etag = ETags.of(version);
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return ETags.<BookDTO>notModified(etag);
+            }
+            BookSnapshotDTO book = service.getById(id)
+                    .filter(cached -> version.equals(cached.getVersion()))
+                    .orElseGet(() -> service.reload(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)));
+            return ResponseEntity.ok().eTag(ETags.of(book.getVersion())).body(bookMapper.toDto(book));
+        });
+    }
+
+    @GetMapping("{id}/availability")
+    @ApiOperation("Tell whether the book is on the shelf and, if not, its open loan")
+    public DeferredResult<BookAvailabilityDTO> availability(@PathVariable Long id){
+        return requests.lookup(() -> availabilityService.getAvailability(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)));
+    }
+
+    @PostMapping("availability")
+    @ApiOperation("Tell which of the books, by id or isbn, are on the shelf")
+    public DeferredResult<BooksAvailabilityDTO> availability(@RequestBody @Valid BooksAvailabilityRequestDTO request){
+        return requests.lookup(() -> availabilityService.getAvailability(request));
     }
 
     @DeleteMapping("{id}")
@@ -66,52 +143,84 @@ public class BookController {
     @ApiResponses({
             @ApiResponse(code=204, message = "Book succesfully deleted")
     })
-    public void delete(@PathVariable Long id){
+    public DeferredResult<Void> delete(@PathVariable Long id){
         log.info("delete a book by id {}", id);
-        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        service.delete(book);
+        return requests.write(() -> {
+            if (!service.delete(id)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }
+            return null;
+        });
     }
 
     @PutMapping("{id}")
     @ApiOperation("Update book  by id")
-    public BookDTO update(@PathVariable("id") Long id, @RequestBody BookDTO dto){
+    public DeferredResult<ResponseEntity<BookDTO>> update(@PathVariable("id") Long id, @RequestBody BookDTO dto,
+                                                          @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch){
         log.info("update a book by id {}", id);
-        return service.getById(id).map(book -> {
-
-            book.setAuthor(dto.getAuthor());
-            book.setTitle(dto.getTitle());
-            service.update(book);
-            return modelMapper.map(book, BookDTO.class);
-
-        }).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-
+        Long expected = ifMatch == null ? null : ETags.version(ifMatch);
+        return requests.write(() -> service.update(id, expected, dto)
+                .map(updated -> ResponseEntity.ok().eTag(ETags.of(updated.getVersion())).body(bookMapper.toDto(updated)))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)));
     }
 
     @GetMapping
     @ApiOperation("Find books  by filter")
-    public Page<BookDTO> find(BookDTO dto, Pageable pageRequest){
-        Book filter = modelMapper.map(dto, Book.class);
-        Page<Book> result = service.find(filter, pageRequest);
-        List<BookDTO> list =  result.getContent().stream()
-                                .map(entity -> modelMapper.map(entity, BookDTO.class))
-                .collect(Collectors.toList());
-        return new PageImpl<BookDTO>(list, pageRequest, result.getTotalElements());
+    public DeferredResult<Slice<BookDTO>> find(BookDTO dto, Pageable pageRequest,
+                               @RequestParam(name = "count", defaultValue = "exact") String count){
+        Book filter = bookMapper.toEntity(dto);
+        CountMode countMode = CountMode.of(count);
+        return requests.search(() -> service.find(filter, pageRequest, countMode));
+    }
+
+    @GetMapping(params = "q")
+    @ApiOperation("Search books by words of the title, author or isbn, best matches first. A word ending with * matches as prefix")
+    public DeferredResult<Page<BookDTO>> search(@RequestParam String q, Pageable pageRequest){
+        return requests.search(() -> service.search(q, pageRequest).map(bookMapper::toDto));
+    }
+
+    @GetMapping(params = {"after", "!q"})
+    @ApiOperation("Find books by filter, one cursor page at a time")
+    public DeferredResult<KeysetPage<BookDTO>> findAfter(BookDTO dto, @RequestParam String after, Pageable pageRequest){
+        Book filter = bookMapper.toEntity(dto);
+        return requests.search(() -> service.findAfter(filter, after, pageRequest.getSort(), pageRequest.getPageSize())
+                .map(bookMapper::toDto));
     }
 
     @GetMapping("{id}/loans")
     @ApiOperation("Find loans book  by book_id")
-    public Page<LoanDTO> loansByBook(@PathVariable Long id, Pageable pageable){
-           Book book = service.getById(id).orElseThrow(()-> new ResponseStatusException(HttpStatus.NOT_FOUND));
-           Page<Loan> result = loanService.getLoansByBook(book, pageable);
-           List<LoanDTO> list = result.getContent().stream().map(loan -> {
-            Book loanBook = loan.getBook();
-            BookDTO bookDTO = modelMapper.map(loanBook, BookDTO.class);
-            LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
-            loanDTO.setBook(bookDTO);
-            return loanDTO;
-        }).collect(Collectors.toList());
-
-        return new PageImpl<LoanDTO>(list, pageable, result.getTotalElements());
+    public DeferredResult<ResponseEntity<Slice<LoanDTO>>> loansByBook(@PathVariable Long id, Pageable pageable,
+                                      @RequestParam(name = "count", defaultValue = "exact") String count,
+                                      @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+           CountMode countMode = CountMode.of(count);
+           return requests.search(() -> {
+               LoansPageDTO loans = loanService.getLoansByBook(id, pageable, countMode,
+                       version -> ETags.matches(ifNoneMatch, loansTag(version, pageable, countMode)))
+                       .orElseThrow(()-> new ResponseStatusException(HttpStatus.NOT_FOUND));
+               String etag = loansTag(loans.getVersion(), pageable, countMode);
+               if (loans.getPage() == null) {
+                   return ETags.<Slice<LoanDTO>>notModified(etag);
+               }
+               return ResponseEntity.ok().eTag(etag).body(loans.getPage());
+           });
+    }
+
+    /**
+     * A cached total can change without the loans changing, so those pages are only weakly tagged.
+     */
+    private static String loansTag(LoansVersionDTO version, Pageable pageable, CountMode countMode) {
+        return countMode == CountMode.CACHED ? ETags.weak(version, pageable) : ETags.of(version, pageable, countMode);
+    }
+
+    @GetMapping(value = "{id}/loans", params = "after")
+    @ApiOperation("Find loans book by book_id, one cursor page at a time")
+    public DeferredResult<KeysetPage<LoanDTO>> loansByBookAfter(@PathVariable Long id, @RequestParam String after, Pageable pageable){
+        return requests.search(() -> {
+            Book book = service.getById(id).map(BookSnapshotDTO::toBook)
+                    .orElseThrow(()-> new ResponseStatusException(HttpStatus.NOT_FOUND));
+            return loanService.getLoansByBookAfter(book, after, pageable.getSort(), pageable.getPageSize())
+                    .map(loanMapper::toDto);
+        });
     }
 
 }
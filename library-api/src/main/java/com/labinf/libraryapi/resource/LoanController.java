@@ -1,27 +1,38 @@
 package com.labinf.libraryapi.resource;
 
 import com.labinf.libraryapi.api.dto.LoanDTO;
-import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.api.mapper.LoanMapper;
+import com.labinf.libraryapi.config.async.AsyncRequests;
+import com.labinf.libraryapi.dto.BatchItemResultDTO;
+import com.labinf.libraryapi.dto.BookSnapshotDTO;
 import com.labinf.libraryapi.dto.LoanFilterDTO;
 import com.labinf.libraryapi.dto.ReturnedLoanDTO;
 import com.labinf.libraryapi.model.entity.Book;
 import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.model.repository.support.KeysetPage;
 import com.labinf.libraryapi.service.BookService;
 import com.labinf.libraryapi.service.LoanService;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/loans")
@@ -30,43 +41,84 @@ public class LoanController {
 
     private final LoanService service;
     private final BookService bookService;
-    private final ModelMapper modelMapper;
+    private final LoanMapper loanMapper;
+    private final Validator validator;
+    private final AsyncRequests requests;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public Long create (@RequestBody LoanDTO dto){
-        Book book = bookService.getBookByIsbn(dto.getIsbn())
-                .orElseThrow(()-> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn"));
-        Loan entity = Loan.builder()
-                        .book(book)
-                        .customer(dto.getCustomer())
-                        .loanDate(LocalDate.now())
-                        .build();
-        entity = service.save(entity);
-        return entity.getId();
+    public DeferredResult<Long> create (@RequestBody LoanDTO dto){
+        return requests.write(() -> {
+            Book book = bookService.getBookByIsbn(dto.getIsbn()).map(BookSnapshotDTO::toBook)
+                    .orElseThrow(()-> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn"));
+            Loan entity = Loan.builder()
+                            .book(book)
+                            .customer(dto.getCustomer())
+                            .loanDate(LocalDate.now())
+                            .build();
+            entity = service.save(entity);
+            return entity.getId();
+        });
+    }
+
+    @PostMapping("batch")
+    public DeferredResult<List<BatchItemResultDTO>> createBatch(@RequestBody List<LoanDTO> dtos) {
+        return requests.write(() -> batch(dtos, LoanDTO::getIsbn, service::saveBatch));
+    }
+
+    @PatchMapping("batch")
+    public DeferredResult<List<BatchItemResultDTO>> returnedBooks(@RequestBody List<ReturnedLoanDTO> dtos) {
+        return requests.write(() -> batch(dtos, dto -> String.valueOf(dto.getId()), service::returnBatch));
     }
 
     @PatchMapping("{id}")
-    public void returnedBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto){
-        Loan loan = service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        loan.setReturned(dto.getReturned());
-        service.update(loan);
+    public DeferredResult<ResponseEntity<Void>> returnedBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto,
+                                                             @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Long version = ifMatch == null ? null : ETags.version(ifMatch);
+        return requests.write(() -> service.markReturned(id, version, dto.getReturned())
+                .map(updated -> ResponseEntity.ok().eTag(ETags.of(updated)).<Void>build())
+                .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND)));
     }
 
     @GetMapping
-    public Page<LoanDTO> find(LoanFilterDTO dto, Pageable pageable){
-         Page<Loan> result = service.find(dto,pageable);
-        List<LoanDTO> loanDTOS = result.getContent().stream()
-                .map(
-                        entity ->{
-                            Book book = entity.getBook();
-                            BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
-                            LoanDTO loanDTO = modelMapper.map(entity, LoanDTO.class);
-                            loanDTO.setBook(bookDTO);
-                            return loanDTO;
-                        })
-                .collect(Collectors.toList());
-        return new PageImpl<LoanDTO>(loanDTOS, pageable, result.getTotalElements());
+    public DeferredResult<Slice<LoanDTO>> find(LoanFilterDTO dto, Pageable pageable,
+                               @RequestParam(name = "count", defaultValue = "exact") String count){
+        CountMode countMode = CountMode.of(count);
+        return requests.search(() -> service.find(dto, pageable, countMode));
+    }
+
+    @GetMapping(params = "after")
+    public DeferredResult<KeysetPage<LoanDTO>> findAfter(LoanFilterDTO dto, @RequestParam String after, Pageable pageable){
+        return requests.search(() -> service.findAfter(dto, after, pageable.getSort(), pageable.getPageSize())
+                .map(loanMapper::toDto));
+    }
+
+    /**
+     * Answers the invalid items right away and hands the others to the service,
+     * putting its results back at the position of each item in the request.
+     */
+    private <T> List<BatchItemResultDTO> batch(List<T> dtos, Function<T, String> key,
+                                               Function<List<T>, List<BatchItemResultDTO>> process) {
+        BatchItemResultDTO[] results = new BatchItemResultDTO[dtos.size()];
+        List<T> valid = new ArrayList<>(dtos.size());
+        List<Integer> positions = new ArrayList<>(dtos.size());
+        for (int i = 0; i < dtos.size(); i++) {
+            T dto = dtos.get(i);
+            Set<ConstraintViolation<T>> violations = validator.validate(dto);
+            if (violations.isEmpty()) {
+                valid.add(dto);
+                positions.add(i);
+            } else {
+                results[i] = BatchItemResultDTO.invalid(i, key.apply(dto), violations);
+            }
+        }
+        List<BatchItemResultDTO> processed = process.apply(valid);
+        for (int i = 0; i < processed.size(); i++) {
+            BatchItemResultDTO result = processed.get(i);
+            result.setIndex(positions.get(i));
+            results[result.getIndex()] = result;
+        }
+        return Arrays.asList(results);
     }
 
 }
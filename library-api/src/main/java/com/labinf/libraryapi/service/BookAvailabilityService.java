@@ -0,0 +1,16 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.dto.BookAvailabilityDTO;
+import com.labinf.libraryapi.dto.BooksAvailabilityDTO;
+import com.labinf.libraryapi.dto.BooksAvailabilityRequestDTO;
+
+import java.util.Optional;
+
+public interface BookAvailabilityService {
+
+    Optional<BookAvailabilityDTO> getAvailability(Long bookId);
+
+    BooksAvailabilityDTO getAvailability(BooksAvailabilityRequestDTO request);
+
+    int reconcile();
+}
@@ -1,21 +1,56 @@
 package com.labinf.libraryapi.service;
 
+import com.labinf.libraryapi.dto.BatchItemResultDTO;
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.dto.BookSnapshotDTO;
 import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.model.repository.support.KeysetPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface BookService {
     Book save(Book any);
 
-    Optional<Book> getById(Long id);
+    /**
+     * Cached copy of the book, which may lag behind a write made on another node.
+     */
+    Optional<BookSnapshotDTO> getById(Long id);
 
-    void delete(Book book);
+    /**
+     * Reads the book again and replaces the cached copy, for one found older than the database.
+     */
+    Optional<BookSnapshotDTO> reload(Long id);
 
-    Book update(Book book);
+    /**
+     * Version of the book without loading it, to answer conditional requests.
+     */
+    Optional<Long> getVersion(Long id);
 
-    Page<Book> find(Book filter, Pageable pageRequst);
+    /**
+     * Deletes the book whatever version the caller last saw, false if there is no such book.
+     */
+    boolean delete(Long id);
 
-    Optional<Book> getBookByIsbn(String isbn);
+    /**
+     * Writes the title and author of the book if it is still at the given version, or else at the one it has now,
+     * and moves the version on. Gives the book as written, empty if it does not exist, and throws an
+     * {@link org.springframework.dao.OptimisticLockingFailureException} when the version is stale.
+     */
+    Optional<Book> update(Long id, Long version, BookDTO details);
+
+    Slice<BookDTO> find(Book filter, Pageable pageRequst, CountMode countMode);
+
+    Page<Book> search(String query, Pageable pageable);
+
+    KeysetPage<Book> findAfter(Book filter, String after, Sort sort, int size);
+
+    Optional<BookSnapshotDTO> getBookByIsbn(String isbn);
+
+    List<BatchItemResultDTO> saveBatch(List<Book> books);
 }
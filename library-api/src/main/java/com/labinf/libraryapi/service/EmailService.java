@@ -1,7 +1,10 @@
 package com.labinf.libraryapi.service;
 
+import com.labinf.libraryapi.service.mail.LateLoanDigest;
+import com.labinf.libraryapi.service.mail.MailDispatchReport;
+
 import java.util.List;
 
 public interface EmailService {
-    void sendMails(String message, List<String> mailList);
+    MailDispatchReport sendDigests(String message, List<LateLoanDigest> digests);
 }
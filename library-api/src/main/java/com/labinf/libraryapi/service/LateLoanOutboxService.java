@@ -0,0 +1,20 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.service.mail.MailDispatchReport;
+
+public interface LateLoanOutboxService {
+
+    int enqueueLateLoans();
+
+    /**
+     * Queues only the late loans with ids from {@code fromId} to {@code toId}, the shard of a run.
+     */
+    int enqueueLateLoans(long fromId, long toId);
+
+    /**
+     * Same as above, running {@code afterChunk} after each chunk is queued, like renewing the lease of the shard.
+     */
+    int enqueueLateLoans(long fromId, long toId, Runnable afterChunk);
+
+    MailDispatchReport relay();
+}
@@ -1,25 +1,60 @@
 package com.labinf.libraryapi.service;
 
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.BatchItemResultDTO;
+import com.labinf.libraryapi.dto.IdRangeDTO;
+import com.labinf.libraryapi.dto.LateLoanDTO;
 import com.labinf.libraryapi.dto.LoanFilterDTO;
+import com.labinf.libraryapi.dto.LoansPageDTO;
+import com.labinf.libraryapi.dto.LoansVersionDTO;
+import com.labinf.libraryapi.dto.ReturnedLoanDTO;
 import com.labinf.libraryapi.model.entity.Book;
 import com.labinf.libraryapi.model.entity.Loan;
 import com.labinf.libraryapi.resource.BookController;
-import org.springframework.data.domain.Page;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.model.repository.support.KeysetPage;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public interface LoanService {
     Loan save(Loan loan);
 
     Optional<Loan> getById(Long id);
 
-    Loan update(Loan loan);
+    /**
+     * Returns or reopens the loan without loading it, at the given version or else at the one it has now.
+     * Gives the new version, empty if the loan does not exist, and throws an
+     * {@link org.springframework.dao.OptimisticLockingFailureException} when the version is stale.
+     */
+    Optional<Long> markReturned(Long id, Long version, Boolean returned);
 
-    Page<Loan> find(LoanFilterDTO filter, Pageable page);
+    Slice<LoanDTO> find(LoanFilterDTO filter, Pageable page, CountMode countMode);
 
-    Page<Loan> getLoansByBook(Book book, Pageable pageable);
+    /**
+     * A page of the loans of the book with their version, both read in the same transaction.
+     * The page is left out when {@code unchanged} accepts the version, empty if the book does not exist.
+     */
+    Optional<LoansPageDTO> getLoansByBook(Long bookId, Pageable pageable, CountMode countMode,
+                                          Predicate<LoansVersionDTO> unchanged);
 
-    List<Loan> getAllLoans();
+    KeysetPage<Loan> findAfter(LoanFilterDTO filter, String after, Sort sort, int size);
+
+    KeysetPage<Loan> getLoansByBookAfter(Book book, String after, Sort sort, int size);
+
+    List<BatchItemResultDTO> saveBatch(List<LoanDTO> loans);
+
+    List<BatchItemResultDTO> returnBatch(List<ReturnedLoanDTO> returns);
+
+    /**
+     * Ids the late loans fall between, to split them into shards.
+     */
+    IdRangeDTO getLateLoanIdRange();
+
+    void processLateLoans(long fromId, long toId, int chunkSize, Consumer<List<LateLoanDTO>> chunkConsumer);
 }
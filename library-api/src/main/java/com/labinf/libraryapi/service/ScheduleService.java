@@ -1,13 +1,13 @@
 package com.labinf.libraryapi.service;
 
-import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.service.availability.LoanedBooksLoader;
+import com.labinf.libraryapi.service.jobs.ShardedJobs;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.time.LocalDate;
 
 @Service
 @RequiredArgsConstructor
@@ -15,16 +15,52 @@ public class ScheduleService {
 
     private static final String CRON_LATE_LOANS ="0 0 0 1/1 * ?";
 
+    static final String LATE_LOANS_JOB = "late-loans";
+
+    private final LateLoanOutboxService outboxService;
+
+    private final BookAvailabilityService availabilityService;
+
+    private final LoanedBooksLoader loanedBooksLoader;
+
     private final LoanService loanService;
-    private final EmailService emailService;
 
-    @Value("${application.mail.lateloans.message}")
-    private String message ;
+    private final ShardedJobs shardedJobs;
+
+    @Value("${application.jobs.late-loans.shards:4}")
+    private int lateLoanShards = 4;
 
+    /**
+     * Only queues the notifications, the relay below sends them so this run never waits on SMTP.
+     * Every node fires, the first one splits the late loans of the day into shards and they all queue
+     * free shards until none is left, so each late loan is scanned and queued by a single node.
+     */
     @Scheduled(cron = CRON_LATE_LOANS)
     public void sendMailToLateLoans(){
-        List<Loan> allLoans = loanService.getAllLoans();
-        List<String> mailList = allLoans.stream().map(loan -> loan.getCustomerEmail()).collect(Collectors.toList());
-        emailService.sendMails(message, mailList);
+        shardedJobs.plan(LATE_LOANS_JOB, LocalDate.now().toString(), lateLoanShards, loanService.getLateLoanIdRange());
+        resumeLateLoans();
+    }
+
+    /**
+     * Takes over the shards a node left unfinished, once their lease is over, and retries the failed ones
+     * once their backoff is over. The lease of a shard is renewed after each chunk of late loans.
+     */
+    @Scheduled(fixedDelayString = "${application.jobs.takeover-delay:PT1M}")
+    public void resumeLateLoans(){
+        shardedJobs.drain(LATE_LOANS_JOB, outboxService::enqueueLateLoans);
+    }
+
+    @Scheduled(fixedDelayString = "${application.mail.outbox.relay-delay:PT30S}")
+    public void relayLateLoanNotifications(){
+        outboxService.relay();
+    }
+
+    /**
+     * Also rebuilds the bitmap of loaned books, which misses loans changed by bulk updates or outside the application.
+     */
+    @Scheduled(fixedDelayString = "${application.books.availability.reconcile-delay:PT10M}")
+    public void reconcileBookAvailability(){
+        availabilityService.reconcile();
+        loanedBooksLoader.load();
     }
 }
@@ -0,0 +1,111 @@
+package com.labinf.libraryapi.service.availability;
+
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Compressed in-memory set of the ids of the books with an open loan.
+ * Ids are mostly dense, so the bitmap takes a few bits per book and a lookup is a couple of array reads:
+ * thousands of books are answered in microseconds without touching the database.
+ */
+@Component
+public class LoanedBooks {
+
+    private Roaring64NavigableMap loaned = new Roaring64NavigableMap();
+
+    /**
+     * Changes made while a rebuild reads the database, replayed on the new bitmap before it is swapped in.
+     */
+    private List<Consumer<Roaring64NavigableMap>> pending;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void loaned(long bookId) {
+        apply(bitmap -> bitmap.addLong(bookId));
+    }
+
+    public void returned(long bookId) {
+        apply(bitmap -> bitmap.removeLong(bookId));
+    }
+
+    public boolean isLoaned(long bookId) {
+        lock.readLock().lock();
+        try {
+            return loaned.contains(bookId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tells for each id, in the given order, whether the book is on the shelf, under a single read lock.
+     */
+    public Map<Long, Boolean> availability(Collection<Long> bookIds) {
+        Map<Long, Boolean> availability = new LinkedHashMap<>(bookIds.size() * 2);
+        lock.readLock().lock();
+        try {
+            for (Long bookId : bookIds) {
+                availability.put(bookId, !loaned.contains(bookId));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return availability;
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return loaned.getLongCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the content with the ids handed by the source. Lookups keep reading the old bitmap
+     * while the source runs, changes made meanwhile are applied to both.
+     */
+    public synchronized void rebuild(Consumer<LongConsumer> source) {
+        withWriteLock(() -> pending = new ArrayList<>());
+        try {
+            Roaring64NavigableMap rebuilt = new Roaring64NavigableMap();
+            source.accept(rebuilt::addLong);
+            withWriteLock(() -> {
+                pending.forEach(change -> change.accept(rebuilt));
+                rebuilt.runOptimize();
+                loaned = rebuilt;
+            });
+        } finally {
+            withWriteLock(() -> pending = null);
+        }
+    }
+
+    private void apply(Consumer<Roaring64NavigableMap> change) {
+        withWriteLock(() -> {
+            change.accept(loaned);
+            if (pending != null) {
+                pending.add(change);
+            }
+        });
+    }
+
+    private void withWriteLock(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.labinf.libraryapi.service.availability;
+
+import com.labinf.libraryapi.model.entity.Loan;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PreUpdate;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Keeps {@link LoanedBooks} in step with every checkout and return, whatever service or repository did it.
+ * Changes reach the bitmap only after the transaction commits, so a rollback never marks a book as loaned.
+ */
+@Component
+public class LoanedBooksListener {
+
+    private final ObjectProvider<LoanedBooks> loanedBooks;
+
+    public LoanedBooksListener(ObjectProvider<LoanedBooks> loanedBooks) {
+        this.loanedBooks = loanedBooks;
+    }
+
+    @PostPersist
+    public void created(Loan loan) {
+        Long bookId = loan.getActiveBook();
+        if (bookId != null) {
+            afterCommit(books -> books.loaned(bookId));
+        }
+    }
+
+    /**
+     * Listeners run before the callbacks of the entity, so the active book still holds the value read from the database.
+     */
+    @PreUpdate
+    public void updated(Loan loan) {
+        activeBookChanged(loan.getActiveBook(), loan.openBook());
+    }
+
+    /**
+     * For the statements that change the active book of a loan without going through the entity.
+     */
+    public void activeBookChanged(Long before, Long after) {
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        afterCommit(books -> {
+            if (before != null) {
+                books.returned(before);
+            }
+            if (after != null) {
+                books.loaned(after);
+            }
+        });
+    }
+
+    @PostRemove
+    public void removed(Loan loan) {
+        Long bookId = loan.getActiveBook();
+        if (bookId != null) {
+            afterCommit(books -> books.returned(bookId));
+        }
+    }
+
+    private void afterCommit(Consumer<LoanedBooks> change) {
+        LoanedBooks books = loanedBooks.getIfAvailable();
+        if (books == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.accept(books);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                change.accept(books);
+            }
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package com.labinf.libraryapi.service.availability;
+
+import com.labinf.libraryapi.model.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.Stream;
+
+/**
+ * Builds the bitmap of loaned books from the loan table when the application starts and on each
+ * reconciliation, later checkouts and returns are applied by {@link LoanedBooksListener}.
+ */
+@Component
+@Slf4j
+public class LoanedBooksLoader {
+
+    private final LoanRepository repository;
+
+    private final LoanedBooks loanedBooks;
+
+    public LoanedBooksLoader(LoanRepository repository, LoanedBooks loanedBooks) {
+        this.repository = repository;
+        this.loanedBooks = loanedBooks;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        long start = System.currentTimeMillis();
+        loanedBooks.rebuild(bitmap -> {
+            try (Stream<Long> bookIds = repository.streamLoanedBookIds()) {
+                bookIds.forEach(bitmap::accept);
+            }
+        });
+        log.info("loaned books loaded with {} books in {} ms", loanedBooks.size(), System.currentTimeMillis() - start);
+    }
+}
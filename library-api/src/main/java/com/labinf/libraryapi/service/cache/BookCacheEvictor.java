@@ -0,0 +1,57 @@
+package com.labinf.libraryapi.service.cache;
+
+import com.labinf.libraryapi.model.repository.BookRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Set;
+
+import static com.labinf.libraryapi.config.CacheConfig.BOOKS;
+import static com.labinf.libraryapi.config.CacheConfig.BOOKS_BY_ISBN;
+
+/**
+ * Evicts the cached books whose rows are written by statements outside of the book service, like the loan
+ * writes moving the active loan pointer. Inside a transaction it evicts again after the commit, so a book
+ * read by another thread before the commit does not stay cached.
+ */
+@Component
+public class BookCacheEvictor {
+
+    private final BookRepository repository;
+
+    private final CacheManager cacheManager;
+
+    public BookCacheEvictor(BookRepository repository, CacheManager cacheManager) {
+        this.repository = repository;
+        this.cacheManager = cacheManager;
+    }
+
+    public void evict(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        Set<String> isbns = repository.findIsbnsById(bookIds);
+        evict(BOOKS, bookIds);
+        evict(BOOKS_BY_ISBN, isbns);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(BOOKS, bookIds);
+                    evict(BOOKS_BY_ISBN, isbns);
+                }
+            });
+        }
+    }
+
+    private void evict(String cacheName, Collection<?> keys) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            keys.forEach(cache::evict);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.labinf.libraryapi.service.impl;
+
+import com.labinf.libraryapi.dto.BookAvailabilityDTO;
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.dto.BooksAvailabilityDTO;
+import com.labinf.libraryapi.dto.BooksAvailabilityRequestDTO;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.service.BookAvailabilityService;
+import com.labinf.libraryapi.service.availability.LoanedBooks;
+import com.labinf.libraryapi.service.cache.BookCacheEvictor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class BookAvailabilityServiceImpl implements BookAvailabilityService {
+
+    private final BookRepository repository;
+
+    private final LoanedBooks loanedBooks;
+
+    private final BookCacheEvictor bookCacheEvictor;
+
+    private final int chunkSize;
+
+    public BookAvailabilityServiceImpl(BookRepository repository, LoanedBooks loanedBooks, BookCacheEvictor bookCacheEvictor,
+                                       @Value("${application.books.availability.reconcile-chunk-size:500}") int chunkSize) {
+        this.repository = repository;
+        this.loanedBooks = loanedBooks;
+        this.bookCacheEvictor = bookCacheEvictor;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Read by primary key from the book row, never from the book cache, so it is always current.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<BookAvailabilityDTO> getAvailability(Long bookId) {
+        return repository.findAvailability(bookId);
+    }
+
+    /**
+     * Answered from the bitmap of loaned books, the database is only read once to turn the isbns into ids.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public BooksAvailabilityDTO getAvailability(BooksAvailabilityRequestDTO request) {
+        List<Long> ids = request.getIds() == null ? Collections.emptyList() : request.getIds();
+        List<String> isbns = request.getIsbns() == null ? Collections.emptyList() : request.getIsbns();
+
+        Map<String, Boolean> byIsbn = new LinkedHashMap<>();
+        if (!isbns.isEmpty()) {
+            Map<String, Long> bookIds = repository.findDtosByIsbnIn(isbns).stream()
+                    .collect(Collectors.toMap(BookDTO::getIsbn, BookDTO::getId));
+            Map<Long, Boolean> availability = loanedBooks.availability(bookIds.values());
+            isbns.stream()
+                    .filter(bookIds::containsKey)
+                    .forEach(isbn -> byIsbn.put(isbn, availability.get(bookIds.get(isbn))));
+        }
+        return BooksAvailabilityDTO.builder()
+                .ids(loanedBooks.availability(ids))
+                .isbns(byIsbn)
+                .build();
+    }
+
+    /**
+     * Repairs the books whose active loan pointer disagrees with the loan table, the source of truth
+     * guarded by its unique constraint. Drifted books are read by id in chunks and each chunk is
+     * fixed with one update.
+     */
+    @Override
+    @Transactional
+    public int reconcile() {
+        int repaired = 0;
+        List<Long> drifted = repository.findDriftedIds(0L, PageRequest.of(0, chunkSize));
+        while (!drifted.isEmpty()) {
+            log.warn("repairing the active loan of {} books, first {}", drifted.size(), drifted.get(0));
+            repository.syncActiveLoan(drifted);
+            bookCacheEvictor.evict(drifted);
+            repaired += drifted.size();
+            drifted = repository.findDriftedIds(drifted.get(drifted.size() - 1), PageRequest.of(0, chunkSize));
+        }
+        return repaired;
+    }
+}
@@ -1,69 +1,269 @@
 package com.labinf.libraryapi.service.impl;
 
+import com.labinf.libraryapi.config.routing.ReplicaReads;
+import com.labinf.libraryapi.dto.BatchItemResultDTO;
+import com.labinf.libraryapi.dto.BatchItemStatus;
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.dto.BookSnapshotDTO;
 import com.labinf.libraryapi.exceptions.BusinessException;
 import com.labinf.libraryapi.model.entity.Book;
 import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.model.repository.BookSpecifications;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.model.repository.support.CountedPage;
+import com.labinf.libraryapi.model.repository.support.KeysetCursor;
+import com.labinf.libraryapi.model.repository.support.KeysetPage;
 import com.labinf.libraryapi.service.BookService;
+import com.labinf.libraryapi.service.paging.PageCounter;
+import com.labinf.libraryapi.service.cache.BookCacheEvictor;
+import com.labinf.libraryapi.service.search.BookIndexListener;
+import com.labinf.libraryapi.service.search.BookSearchIndex;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.convert.QueryByExamplePredicateBuilder;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.labinf.libraryapi.config.CacheConfig.BOOKS;
+import static com.labinf.libraryapi.config.CacheConfig.BOOKS_BY_ISBN;
 
 @Service
+@ReplicaReads
 public class BookServiceImpl implements BookService {
 
+    static final int BATCH_CHUNK_SIZE = 500;
+
+    static final Set<String> KEYSET_KEYS = new HashSet<>(Arrays.asList("id", "title", "author", "isbn"));
+
     private BookRepository repository;
 
-    public BookServiceImpl(BookRepository repository) {
+    private PageCounter pageCounter;
+
+    private BookSearchIndex searchIndex;
+
+    private BookIndexListener indexListener;
+
+    private BookCacheEvictor bookCacheEvictor;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public BookServiceImpl(BookRepository repository, PageCounter pageCounter, BookSearchIndex searchIndex,
+                           BookIndexListener indexListener, BookCacheEvictor bookCacheEvictor) {
         this.repository = repository;
+        this.pageCounter = pageCounter;
+        this.searchIndex = searchIndex;
+        this.indexListener = indexListener;
+        this.bookCacheEvictor = bookCacheEvictor;
     }
 
     @Override
+    @CacheEvict(cacheNames = BOOKS_BY_ISBN, key = "#book.isbn", condition = "#book?.isbn != null")
     public Book save(Book book) {
-        if(repository.existsByIsbn(book.getIsbn())){
-            throw new BusinessException("Isbn já cadastrado.");
+        try {
+            return repository.saveAndFlush(book);
+        } catch (DataIntegrityViolationException e) {
+            throw duplicateIsbn(e);
         }
-        return repository.save(book);
     }
 
+    /**
+     * Caches a snapshot, never the entity, so callers can not change what the others get.
+     */
     @Override
-    public Optional<Book> getById(Long id) {
-        return repository.findById(id);
+    @Cacheable(cacheNames = BOOKS, key = "#id", unless = "#result == null")
+    public Optional<BookSnapshotDTO> getById(Long id) {
+        return repository.findById(id).map(BookSnapshotDTO::of);
     }
 
     @Override
-    public void delete(Book book) {
-        if(book == null || book.getId() == null){
+    @CachePut(cacheNames = BOOKS, key = "#id", unless = "#result == null")
+    public Optional<BookSnapshotDTO> reload(Long id) {
+        return repository.findById(id).map(BookSnapshotDTO::of);
+    }
+
+    /**
+     * Read from the primary like the book itself, a replica behind it could answer not modified for a changed book.
+     */
+    @Override
+    public Optional<Long> getVersion(Long id) {
+        return repository.findVersionById(id);
+    }
+
+    /**
+     * The cached book may be behind the database, so nothing of it is used: the isbn to evict is read from
+     * the database and the row is deleted by id. The statement skips the entity listeners.
+     */
+    @Override
+    @Transactional
+    public boolean delete(Long id) {
+        if(id == null){
             throw  new IllegalArgumentException("Book id can be null");
         }
-        this.repository.delete(book);
+        bookCacheEvictor.evict(Collections.singleton(id));
+        if (repository.deleteBook(id) == 0) {
+            return false;
+        }
+        indexListener.removed(Book.builder().id(id).build());
+        return true;
     }
 
+    /**
+     * Neither the version nor the details come from the cached book, which stays untouched. Without a version
+     * the current one is read from the database, so only a write in between fails the update.
+     */
     @Override
-    public Book update(Book book) {
-        if(book == null || book.getId() == null){
+    @Caching(evict = {
+            @CacheEvict(cacheNames = BOOKS, key = "#id", condition = "#id != null", beforeInvocation = true),
+            @CacheEvict(cacheNames = BOOKS_BY_ISBN, key = "#result.isbn", condition = "#result?.isbn != null")
+    })
+    @Transactional
+    public Optional<Book> update(Long id, Long version, BookDTO details) {
+        if(id == null){
             throw  new IllegalArgumentException("Book id can be null");
         }
-        return this.repository.save(book);
+        Optional<Long> expected = version == null ? repository.findVersionById(id) : Optional.of(version);
+        if (!expected.isPresent()) {
+            return Optional.empty();
+        }
+        if (repository.updateDetails(id, expected.get(), details.getTitle(), details.getAuthor()) == 0) {
+            if (!repository.existsById(id)) {
+                return Optional.empty();
+            }
+            throw new ObjectOptimisticLockingFailureException(Book.class, id);
+        }
+        Optional<Book> updated = repository.findById(id);
+        // the statement skips the entity listeners
+        updated.ifPresent(indexListener::saved);
+        return updated;
     }
 
     @Override
-    public Page<Book> find(Book filter, Pageable pageRequst) {
+    @Transactional(readOnly = true)
+    public Slice<BookDTO> find(Book filter, Pageable pageRequst, CountMode countMode) {
         Example<Book> example = Example.of(filter,
                 ExampleMatcher
                         .matching()
                         .withIgnoreCase()
                         .withIgnoreNullValues()
                         .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
-        return repository.findAll(example, pageRequst);
+        Specification<Book> spec = (root, query, cb) -> QueryByExamplePredicateBuilder.getPredicate(root, cb, example);
+        return pageCounter.find(repository, spec, Arrays.asList("books", filter), pageRequst, countMode, BookRepository.BOOK_DTO);
+    }
+
+    /**
+     * Ranks the matches with the search index and loads only the books of the requested page.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Book> search(String query, Pageable pageable) {
+        List<Long> ranked = searchIndex.search(query);
+        int from = (int) Math.min(pageable.getOffset(), ranked.size());
+        List<Long> ids = ranked.subList(from, Math.min(from + pageable.getPageSize(), ranked.size()));
+        Map<Long, Book> books = repository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        List<Book> content = ids.stream()
+                .map(books::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return new CountedPage<>(content, pageable, ranked.size(), CountMode.EXACT);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPage<Book> findAfter(Book filter, String after, Sort sort, int size) {
+        return repository.findAfter(BookSpecifications.matching(filter), KeysetCursor.of(after, sort, KEYSET_KEYS), size);
     }
 
     @Override
-    public Optional<Book> getBookByIsbn(String isbn) {
-        return repository.findByIsbn(isbn);
+    @Cacheable(cacheNames = BOOKS_BY_ISBN, key = "#isbn", unless = "#result == null")
+    public Optional<BookSnapshotDTO> getBookByIsbn(String isbn) {
+        return repository.findByIsbn(isbn).map(BookSnapshotDTO::of);
     }
 
+    /**
+     * Imports the books in chunks: one set-based query finds the ISBNs already stored,
+     * the new books are inserted in JDBC batches and the persistence context is cleared
+     * so memory does not grow with the size of the import.
+     * Results come in the same order as the books.
+     */
+    @Override
+    @Transactional
+    public List<BatchItemResultDTO> saveBatch(List<Book> books) {
+        List<BatchItemResultDTO> results = new ArrayList<>(books.size());
+        Set<String> seen = new HashSet<>();
+        for (int from = 0; from < books.size(); from += BATCH_CHUNK_SIZE) {
+            List<Book> chunk = books.subList(from, Math.min(from + BATCH_CHUNK_SIZE, books.size()));
+            Set<String> existing = repository.findExistingIsbns(
+                    chunk.stream().map(Book::getIsbn).collect(Collectors.toSet()));
+
+            List<Book> created = new ArrayList<>();
+            List<BatchItemResultDTO> createdResults = new ArrayList<>();
+            for (Book book : chunk) {
+                boolean duplicate = existing.contains(book.getIsbn()) || !seen.add(book.getIsbn());
+                BatchItemResultDTO result = BatchItemResultDTO.builder()
+                        .index(results.size())
+                        .key(book.getIsbn())
+                        .status(duplicate ? BatchItemStatus.DUPLICATE : BatchItemStatus.CREATED)
+                        .build();
+                if (!duplicate) {
+                    created.add(book);
+                    createdResults.add(result);
+                }
+                results.add(result);
+            }
+            repository.saveAll(created);
+            try {
+                repository.flush();
+            } catch (DataIntegrityViolationException e) {
+                // an isbn created concurrently after the check above
+                throw duplicateIsbn(e);
+            }
+            for (int i = 0; i < created.size(); i++) {
+                createdResults.get(i).setId(created.get(i).getId());
+            }
+            entityManager.clear();
+        }
+        return results;
+    }
+
+    /**
+     * The unique constraint on isbn is what keeps concurrent creates apart, its violation is
+     * the business error, any other violation goes up unchanged.
+     */
+    private static RuntimeException duplicateIsbn(DataIntegrityViolationException e) {
+        if (e.getCause() instanceof ConstraintViolationException) {
+            String constraint = ((ConstraintViolationException) e.getCause()).getConstraintName();
+            if (constraint != null && constraint.toLowerCase().contains(Book.ISBN_UNIQUE)) {
+                return new BusinessException(BusinessException.DUPLICATE_ISBN);
+            }
+        }
+        return e;
+    }
 }
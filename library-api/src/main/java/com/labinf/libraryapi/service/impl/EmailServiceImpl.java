@@ -1,31 +1,144 @@
 package com.labinf.libraryapi.service.impl;
 
+import com.labinf.libraryapi.dto.LateLoanDTO;
 import com.labinf.libraryapi.service.EmailService;
-import lombok.RequiredArgsConstructor;
+import com.labinf.libraryapi.service.mail.LateLoanDigest;
+import com.labinf.libraryapi.service.mail.MailDispatchReport;
+import com.labinf.libraryapi.service.mail.MailThrottle;
+import com.labinf.libraryapi.service.mail.SmtpConnections;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.mail.MailException;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMailMessage;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class EmailServiceImpl implements EmailService {
 
-    @Value("${application.mail.default-remetent}")
-    private String remenetent;
+    static final String SUBJECT = "Livro com emprestimo atrasado";
 
-    private final JavaMailSender javaMailSender;
+    private final String remenetent;
+    private final JavaMailSenderImpl javaMailSender;
+    private final SmtpConnections connections;
+    private final AsyncTaskExecutor mailDispatchExecutor;
+    private final int batchSize;
+    private final MailThrottle throttle;
 
+    public EmailServiceImpl(JavaMailSenderImpl javaMailSender,
+                            @Qualifier("mailDispatchExecutor") AsyncTaskExecutor mailDispatchExecutor,
+                            @Value("${application.mail.default-remetent}") String remenetent,
+                            @Value("${application.mail.dispatch.batch-size:50}") int batchSize,
+                            @Value("${application.mail.dispatch.max-per-second:0}") double maxPerSecond) {
+        this.javaMailSender = javaMailSender;
+        this.connections = new SmtpConnections(javaMailSender);
+        this.mailDispatchExecutor = mailDispatchExecutor;
+        this.remenetent = remenetent;
+        this.batchSize = batchSize;
+        this.throttle = new MailThrottle(maxPerSecond);
+    }
+
+    /**
+     * Sends one message per customer. Digests are split in batches of {@code batchSize} and the batches
+     * run in parallel on the bounded mail dispatch pool. Each pool thread keeps its SMTP connection across
+     * batches, so at most pool-size connections are open at once and they are not reopened per batch.
+     */
     @Override
-    public void sendMails(String message, List<String> mailList) {
-        String[] mails = mailList.toArray(new String[mailList.size()]);
+    public MailDispatchReport sendDigests(String message, List<LateLoanDigest> digests) {
+        if (digests.isEmpty()) {
+            return new MailDispatchReport();
+        }
+        long start = System.currentTimeMillis();
+        List<Future<MailDispatchReport>> batches = new ArrayList<>();
+        for (int from = 0; from < digests.size(); from += batchSize) {
+            List<LateLoanDigest> batch = digests.subList(from, Math.min(from + batchSize, digests.size()));
+            batches.add(mailDispatchExecutor.submit(() -> sendBatch(message, batch)));
+        }
+
+        MailDispatchReport report = new MailDispatchReport();
+        for (Future<MailDispatchReport> batch : batches) {
+            try {
+                report.add(batch.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while sending late loan digests", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Unexpected error sending late loan digests", e.getCause());
+            }
+        }
+        report = new MailDispatchReport(report.getSent(), report.getFailed(), System.currentTimeMillis() - start);
+        log.info("late loan digests: {} sent, {} failed in {} ms ({} msg/s)",
+                report.getSent(), report.getFailedCount(), report.getElapsedMillis(),
+                String.format("%.1f", report.getMessagesPerSecond()));
+        return report;
+    }
+
+    /**
+     * Every message waits for its own slot of the throttle. A rejected recipient fails only its digest,
+     * a broken connection fails the rest of the batch, which the outbox retries later.
+     */
+    private MailDispatchReport sendBatch(String message, List<LateLoanDigest> batch) throws InterruptedException {
+        List<LateLoanDigest> failed = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            LateLoanDigest digest = batch.get(i);
+            throttle.acquire();
+            try {
+                MimeMessage mimeMessage = toMimeMessage(message, digest);
+                connections.get().sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+            } catch (SendFailedException e) {
+                log.warn("late loan digest to {} not accepted: {}", digest.getEmail(), e.getMessage());
+                failed.add(digest);
+            } catch (MessagingException | MailException e) {
+                log.warn("failed to send {} late loan digests: {}", batch.size() - i, e.getMessage());
+                connections.discard();
+                failed.addAll(batch.subList(i, batch.size()));
+                break;
+            }
+        }
+        return new MailDispatchReport(batch.size() - failed.size(), failed, 0);
+    }
+
+    @PreDestroy
+    public void close() {
+        connections.closeAll();
+    }
+
+    private MimeMessage toMimeMessage(String message, LateLoanDigest digest) throws MessagingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        toMailMessage(message, digest).copyTo(new MimeMailMessage(mimeMessage));
+        mimeMessage.setSentDate(new Date());
+        mimeMessage.saveChanges();
+        return mimeMessage;
+    }
+
+    private SimpleMailMessage toMailMessage(String message, LateLoanDigest digest) {
+        StringBuilder text = new StringBuilder();
+        text.append("Olá ").append(digest.getCustomer()).append(",\n\n")
+                .append(message).append("\n");
+        for (LateLoanDTO loan : digest.getLoans()) {
+            text.append("\n - ").append(loan.getBookTitle())
+                    .append(" (isbn ").append(loan.getBookIsbn()).append(")")
+                    .append(", emprestado em ").append(loan.getLoanDate());
+        }
         SimpleMailMessage mailMessage = new SimpleMailMessage();
         mailMessage.setFrom(remenetent);
-        mailMessage.setSubject("Livro com emprestimo atrasado");
-        mailMessage.setText(message);
-        mailMessage.setTo(mails);
-        javaMailSender.send(mailMessage);
+        mailMessage.setSubject(SUBJECT);
+        mailMessage.setText(text.toString());
+        mailMessage.setTo(digest.getEmail());
+        return mailMessage;
     }
 }
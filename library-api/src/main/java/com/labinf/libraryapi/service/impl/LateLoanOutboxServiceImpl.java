@@ -0,0 +1,273 @@
+package com.labinf.libraryapi.service.impl;
+
+import com.labinf.libraryapi.dto.LateLoanDTO;
+import com.labinf.libraryapi.model.entity.LateLoanNotification;
+import com.labinf.libraryapi.model.entity.NotificationStatus;
+import com.labinf.libraryapi.model.repository.LateLoanNotificationRepository;
+import com.labinf.libraryapi.service.EmailService;
+import com.labinf.libraryapi.service.LateLoanOutboxService;
+import com.labinf.libraryapi.service.LoanService;
+import com.labinf.libraryapi.service.mail.LateLoanDigest;
+import com.labinf.libraryapi.service.mail.MailDispatchReport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class LateLoanOutboxServiceImpl implements LateLoanOutboxService {
+
+    private static final String REJECTED = "SMTP server did not accept the message";
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final LoanService loanService;
+    private final LateLoanNotificationRepository repository;
+    private final EmailService emailService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+
+    @Value("${application.mail.lateloans.message}")
+    private String message;
+
+    @Value("${application.mail.lateloans.chunk-size:500}")
+    private int chunkSize = 500;
+
+    @Value("${application.mail.outbox.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${application.mail.outbox.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${application.mail.outbox.initial-backoff:PT1M}")
+    private Duration initialBackoff = Duration.ofMinutes(1);
+
+    @Value("${application.mail.outbox.max-backoff:PT1H}")
+    private Duration maxBackoff = Duration.ofHours(1);
+
+    @Value("${application.mail.outbox.claim-timeout:PT10M}")
+    private Duration claimTimeout = Duration.ofMinutes(10);
+
+    @Autowired
+    public LateLoanOutboxServiceImpl(LoanService loanService,
+                                     LateLoanNotificationRepository repository,
+                                     EmailService emailService,
+                                     EntityManager entityManager,
+                                     PlatformTransactionManager transactionManager) {
+        this(loanService, repository, emailService, entityManager, transactionManager, Clock.systemDefaultZone());
+    }
+
+    public LateLoanOutboxServiceImpl(LoanService loanService,
+                                     LateLoanNotificationRepository repository,
+                                     EmailService emailService,
+                                     EntityManager entityManager,
+                                     PlatformTransactionManager transactionManager,
+                                     Clock clock) {
+        this.loanService = loanService;
+        this.repository = repository;
+        this.emailService = emailService;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+    }
+
+    @Override
+    public int enqueueLateLoans() {
+        return enqueueLateLoans(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public int enqueueLateLoans(long fromId, long toId) {
+        return enqueueLateLoans(fromId, toId, () -> { });
+    }
+
+    /**
+     * Writes one pending notification per late loan in the same transaction as the scan.
+     * Loans already queued today are skipped, so a rerun or a restart never queues them twice.
+     */
+    @Override
+    public int enqueueLateLoans(long fromId, long toId, Runnable afterChunk) {
+        LocalDate today = LocalDate.now(clock);
+        LocalDateTime now = LocalDateTime.now(clock);
+        int[] queued = {0};
+        transactionTemplate.execute(status -> {
+            loanService.processLateLoans(fromId, toId, chunkSize, lateLoans -> {
+                Map<String, LateLoanDTO> byKey = lateLoans.stream()
+                        .filter(lateLoan -> lateLoan.getCustomerEmail() != null && !lateLoan.getCustomerEmail().trim().isEmpty())
+                        .collect(Collectors.toMap(lateLoan -> dedupeKey(lateLoan, today), Function.identity(),
+                                (first, second) -> first, LinkedHashMap::new));
+                if (byKey.isEmpty()) {
+                    afterChunk.run();
+                    return;
+                }
+                Set<String> existing = repository.findExistingDedupeKeys(byKey.keySet());
+                List<LateLoanNotification> notifications = byKey.entrySet().stream()
+                        .filter(entry -> !existing.contains(entry.getKey()))
+                        .map(entry -> toNotification(entry.getKey(), entry.getValue(), now))
+                        .collect(Collectors.toList());
+                repository.saveAll(notifications);
+                repository.flush();
+                entityManager.clear();
+                queued[0] += notifications.size();
+                afterChunk.run();
+            });
+            return null;
+        });
+        log.info("late loans run: {} notifications queued", queued[0]);
+        return queued[0];
+    }
+
+    /**
+     * Drains the due notifications: claims every due row of up to {@code batchSize} customers,
+     * sends one digest per customer outside of any transaction, then records the outcome.
+     * Failures are retried with exponential backoff until {@code maxAttempts}, then dead-lettered.
+     * If the send itself throws, every claimed row counts as failed, so none of them stays claimed.
+     */
+    @Override
+    public MailDispatchReport relay() {
+        MailDispatchReport report = new MailDispatchReport();
+        while (true) {
+            String owner = UUID.randomUUID().toString();
+            List<LateLoanNotification> claimed = claim(owner);
+            if (claimed.isEmpty()) {
+                return report;
+            }
+            Map<String, List<LateLoanNotification>> byEmail = claimed.stream()
+                    .collect(Collectors.groupingBy(LateLoanNotification::getEmail, LinkedHashMap::new, Collectors.toList()));
+            List<LateLoanDigest> digests = byEmail.values().stream()
+                    .map(this::toDigest)
+                    .collect(Collectors.toList());
+
+            MailDispatchReport sent;
+            String error = REJECTED;
+            try {
+                sent = emailService.sendDigests(message, digests);
+            } catch (RuntimeException e) {
+                log.error("late loan digests could not be sent, releasing {} notifications", claimed.size(), e);
+                sent = new MailDispatchReport(0, digests, 0);
+                error = String.valueOf(e.getMessage());
+            }
+            Set<String> failedEmails = sent.getFailed().stream()
+                    .map(LateLoanDigest::getEmail)
+                    .collect(Collectors.toSet());
+            complete(claimed, owner, failedEmails, error);
+            report.add(sent);
+        }
+    }
+
+    private List<LateLoanNotification> claim(String owner) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        return transactionTemplate.execute(status -> {
+            List<String> emails = repository.findDueEmails(now, PageRequest.of(0, batchSize));
+            if (emails.isEmpty() || repository.claim(emails, owner, now, now.plus(claimTimeout)) == 0) {
+                return Collections.<LateLoanNotification>emptyList();
+            }
+            return repository.findByClaimedByOrderByEmailAscLoanIdAsc(owner);
+        });
+    }
+
+    /**
+     * Records the outcome with conditional updates on the claim, rows another relay took over in the
+     * meantime are left to it. Failed rows are grouped by attempts, which decide their backoff.
+     */
+    private void complete(List<LateLoanNotification> claimed, String owner, Set<String> failedEmails, String error) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        String lastError = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        List<Long> sent = new ArrayList<>();
+        Map<Integer, List<Long>> failedByAttempts = new TreeMap<>();
+        for (LateLoanNotification notification : claimed) {
+            if (failedEmails.contains(notification.getEmail())) {
+                failedByAttempts.computeIfAbsent(notification.getAttempts() + 1, attempts -> new ArrayList<>())
+                        .add(notification.getId());
+            } else {
+                sent.add(notification.getId());
+            }
+        }
+        Integer updated = transactionTemplate.execute(status -> {
+            int rows = sent.isEmpty() ? 0 : repository.markSent(sent, owner, now);
+            for (Map.Entry<Integer, List<Long>> failed : failedByAttempts.entrySet()) {
+                int attempts = failed.getKey();
+                if (attempts >= maxAttempts) {
+                    rows += repository.dead(failed.getValue(), owner, lastError);
+                    log.warn("{} late loan notifications dead after {} attempts", failed.getValue().size(), attempts);
+                } else {
+                    rows += repository.retry(failed.getValue(), owner, now.plus(backoff(attempts)), lastError);
+                }
+            }
+            return rows;
+        });
+        if (updated == null || updated < claimed.size()) {
+            log.warn("{} of {} late loan notifications were claimed again by another relay, left to it",
+                    claimed.size() - (updated == null ? 0 : updated), claimed.size());
+        }
+    }
+
+    public Duration backoff(int attempts) {
+        Duration delay = initialBackoff;
+        for (int i = 1; i < attempts && delay.compareTo(maxBackoff) < 0; i++) {
+            delay = delay.multipliedBy(2);
+        }
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private LateLoanDigest toDigest(List<LateLoanNotification> notifications) {
+        List<LateLoanDTO> loans = new ArrayList<>();
+        notifications.stream()
+                .collect(Collectors.toMap(LateLoanNotification::getLoanId, Function.identity(),
+                        (first, second) -> first, LinkedHashMap::new))
+                .values()
+                .forEach(notification -> loans.add(LateLoanDTO.builder()
+                        .loanId(notification.getLoanId())
+                        .customer(notification.getCustomer())
+                        .customerEmail(notification.getEmail())
+                        .bookTitle(notification.getBookTitle())
+                        .bookIsbn(notification.getBookIsbn())
+                        .loanDate(notification.getLoanDate())
+                        .build()));
+        LateLoanNotification first = notifications.get(0);
+        return LateLoanDigest.builder()
+                .customer(first.getCustomer())
+                .email(first.getEmail())
+                .loans(loans)
+                .build();
+    }
+
+    private LateLoanNotification toNotification(String dedupeKey, LateLoanDTO lateLoan, LocalDateTime now) {
+        return LateLoanNotification.builder()
+                .dedupeKey(dedupeKey)
+                .loanId(lateLoan.getLoanId())
+                .customer(lateLoan.getCustomer())
+                .email(lateLoan.getCustomerEmail())
+                .bookTitle(lateLoan.getBookTitle())
+                .bookIsbn(lateLoan.getBookIsbn())
+                .loanDate(lateLoan.getLoanDate())
+                .status(NotificationStatus.PENDING)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build();
+    }
+
+    private static String dedupeKey(LateLoanDTO lateLoan, LocalDate day) {
+        return "late-loan:" + lateLoan.getLoanId() + ":" + day;
+    }
+}
@@ -1,34 +1,106 @@
 package com.labinf.libraryapi.service.impl;
 
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.config.routing.ReplicaReads;
+import com.labinf.libraryapi.dto.BatchItemResultDTO;
+import com.labinf.libraryapi.dto.BatchItemStatus;
+import com.labinf.libraryapi.dto.IdRangeDTO;
+import com.labinf.libraryapi.dto.LateLoanDTO;
 import com.labinf.libraryapi.dto.LoanFilterDTO;
+import com.labinf.libraryapi.dto.LoansPageDTO;
+import com.labinf.libraryapi.dto.LoanStateDTO;
+import com.labinf.libraryapi.dto.LoansVersionDTO;
+import com.labinf.libraryapi.dto.ReturnedLoanDTO;
 import com.labinf.libraryapi.exceptions.BusinessException;
 import com.labinf.libraryapi.model.entity.Book;
 import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.repository.BookRepository;
 import com.labinf.libraryapi.model.repository.LoanRepository;
+import com.labinf.libraryapi.model.repository.LoanSpecifications;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.model.repository.support.KeysetCursor;
+import com.labinf.libraryapi.model.repository.support.KeysetPage;
 import com.labinf.libraryapi.service.LoanService;
-import org.springframework.data.domain.Page;
+import com.labinf.libraryapi.service.availability.LoanedBooksListener;
+import com.labinf.libraryapi.service.cache.BookCacheEvictor;
+import com.labinf.libraryapi.service.paging.PageCounter;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@ReplicaReads
 public class LoanServiceImpl implements LoanService {
 
+    private static final int LOAN_DAYS = 4;
+
+    static final int BATCH_CHUNK_SIZE = 500;
+
+    static final Set<String> KEYSET_KEYS = new HashSet<>(Arrays.asList("id", "loanDate"));
+
     private LoanRepository repository;
 
-    public LoanServiceImpl(LoanRepository repository) {
+    private BookRepository bookRepository;
+
+    private PageCounter pageCounter;
+
+    private LoanedBooksListener loanedBooksListener;
+
+    private BookCacheEvictor bookCacheEvictor;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public LoanServiceImpl(LoanRepository repository, BookRepository bookRepository, PageCounter pageCounter,
+                           LoanedBooksListener loanedBooksListener, BookCacheEvictor bookCacheEvictor) {
         this.repository = repository;
+        this.bookRepository = bookRepository;
+        this.pageCounter = pageCounter;
+        this.loanedBooksListener = loanedBooksListener;
+        this.bookCacheEvictor = bookCacheEvictor;
     }
 
+    /**
+     * The loan gets its id on persist, the book is then claimed for it with one conditional update
+     * on its primary key and the insert is flushed only if the claim succeeded.
+     * A loan saved as returned holds no book, so the pointer of the book is left alone.
+     */
     @Override
+    @Transactional
     public Loan save(Loan loan) {
-        if(repository.existsByBookAndNotReturned(loan.getBook())){
-            throw new BusinessException("Book already loaned");
+        try {
+            Loan saved = repository.save(loan);
+            if (saved.getActiveBook() != null && bookRepository.claim(loan.getBook().getId(), saved.getId()) == 0) {
+                throw new BusinessException(BusinessException.ALREADY_LOANED);
+            }
+            repository.flush();
+            bookCacheEvictor.evict(Collections.singleton(loan.getBook().getId()));
+            return saved;
+        } catch (DataIntegrityViolationException e) {
+            throw alreadyLoaned(e);
         }
-        return repository.save(loan);
     }
 
     @Override
@@ -36,25 +108,231 @@ public class LoanServiceImpl implements LoanService {
         return repository.findById(id);
     }
 
+    /**
+     * Reads only the book, active book and version of the loan, then one conditional statement writes it
+     * and another brings the pointer of the book up to date. Without a version the one read here is checked.
+     */
+    @Override
+    @Transactional
+    public Optional<Long> markReturned(Long id, Long version, Boolean returned) {
+        Optional<LoanStateDTO> state = repository.findState(id);
+        if (!state.isPresent()) {
+            return Optional.empty();
+        }
+        Long expected = version == null ? state.get().getVersion() : version;
+        boolean isReturned = Boolean.TRUE.equals(returned);
+        Long bookId = state.get().getBookId();
+        Long activeBook = isReturned ? null : bookId;
+        try {
+            if (!expected.equals(state.get().getVersion())
+                    || repository.markReturned(id, expected, returned, isReturned ? LocalDate.now() : null, activeBook) == 0) {
+                throw new ObjectOptimisticLockingFailureException(Loan.class, id);
+            }
+        } catch (DataIntegrityViolationException e) {
+            throw alreadyLoaned(e);
+        }
+        bookRepository.syncActiveLoan(Collections.singleton(bookId));
+        bookCacheEvictor.evict(Collections.singleton(bookId));
+        // the statement skips the entity listeners
+        loanedBooksListener.activeBookChanged(state.get().getActiveBook(), activeBook);
+        return Optional.of(expected + 1);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<LoanDTO> find(LoanFilterDTO filter, Pageable page, CountMode countMode) {
+        return pageCounter.find(repository, LoanSpecifications.filter(filter),
+                Arrays.asList("loans", filter), page, countMode, LoanRepository.LOAN_DTO);
+    }
+
+    /**
+     * The version is read before the page and on the same connection, replica or primary, so a write
+     * in between can only leave an older version on a newer page.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<LoansPageDTO> getLoansByBook(Long bookId, Pageable pageable, CountMode countMode,
+                                                 Predicate<LoansVersionDTO> unchanged) {
+        return repository.findLoansVersionByBook(bookId).map(version -> {
+            if (unchanged.test(version)) {
+                return new LoansPageDTO(version, null);
+            }
+            Slice<LoanDTO> page = pageCounter.find(repository, LoanSpecifications.ofBook(bookId),
+                    Arrays.asList("loansByBook", bookId), pageable, countMode, LoanRepository.LOAN_DTO);
+            return new LoansPageDTO(version, page);
+        });
+    }
+
     @Override
-    public Loan update(Loan loan) {
-        return repository.save(loan);
+    @Transactional(readOnly = true)
+    public KeysetPage<Loan> findAfter(LoanFilterDTO filter, String after, Sort sort, int size) {
+        return repository.findAfter(LoanSpecifications.filter(filter).toSpecification(),
+                KeysetCursor.of(after, sort, KEYSET_KEYS), size);
     }
 
     @Override
-    public Page<Loan> find(LoanFilterDTO filter, Pageable page) {
-        return repository.findByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer(), page);
+    @Transactional(readOnly = true)
+    public KeysetPage<Loan> getLoansByBookAfter(Book book, String after, Sort sort, int size) {
+        return repository.findAfter(LoanSpecifications.ofBook(book), KeysetCursor.of(after, sort, KEYSET_KEYS), size);
     }
 
+    /**
+     * Checks out the books in chunks: one query resolves the ISBNs, whose active loan pointer tells which
+     * books are still loaned, and the new loans are inserted in JDBC batches.
+     * A book asked twice in the same request is only loaned once.
+     * Results come in the same order as the loans.
+     */
     @Override
-    public Page<Loan> getLoansByBook(Book book, Pageable pageable) {
-        return repository.findByBook(book, pageable);
+    @Transactional
+    public List<BatchItemResultDTO> saveBatch(List<LoanDTO> loans) {
+        List<BatchItemResultDTO> results = new ArrayList<>(loans.size());
+        Set<Long> taken = new HashSet<>();
+        LocalDate today = LocalDate.now();
+        for (int from = 0; from < loans.size(); from += BATCH_CHUNK_SIZE) {
+            List<LoanDTO> chunk = loans.subList(from, Math.min(from + BATCH_CHUNK_SIZE, loans.size()));
+            Map<String, Book> books = bookRepository.findByIsbnIn(
+                    chunk.stream().map(LoanDTO::getIsbn).collect(Collectors.toSet()))
+                    .stream()
+                    .collect(Collectors.toMap(Book::getIsbn, Function.identity(), (first, second) -> first));
+
+            List<Loan> created = new ArrayList<>();
+            List<BatchItemResultDTO> createdResults = new ArrayList<>();
+            for (LoanDTO dto : chunk) {
+                BatchItemResultDTO result = BatchItemResultDTO.builder()
+                        .index(results.size())
+                        .key(dto.getIsbn())
+                        .build();
+                Book book = books.get(dto.getIsbn());
+                if (book == null) {
+                    result.setStatus(BatchItemStatus.NOT_FOUND);
+                } else if (book.getActiveLoanId() != null || !taken.add(book.getId())) {
+                    result.setStatus(BatchItemStatus.ALREADY_LOANED);
+                } else {
+                    result.setStatus(BatchItemStatus.CREATED);
+                    created.add(Loan.builder()
+                            .book(book)
+                            .customer(dto.getCustomer())
+                            .customerEmail(dto.getEmail())
+                            .loanDate(today)
+                            .build());
+                    createdResults.add(result);
+                }
+                results.add(result);
+            }
+            repository.saveAll(created);
+            try {
+                repository.flush();
+            } catch (DataIntegrityViolationException e) {
+                // a book checked out concurrently after the check above
+                throw alreadyLoaned(e);
+            }
+            if (!created.isEmpty()) {
+                Set<Long> bookIds = created.stream().map(loan -> loan.getBook().getId()).collect(Collectors.toSet());
+                bookRepository.syncActiveLoan(bookIds);
+                bookCacheEvictor.evict(bookIds);
+            }
+            for (int i = 0; i < created.size(); i++) {
+                createdResults.get(i).setId(created.get(i).getId());
+            }
+            entityManager.clear();
+        }
+        return results;
+    }
+
+    /**
+     * Loads each chunk of loans with one query and lets the flush write the changed
+     * ones as a JDBC batch, then one statement brings the pointers of their books up to date.
+     * Results come in the same order as the returns.
+     */
+    @Override
+    @Transactional
+    public List<BatchItemResultDTO> returnBatch(List<ReturnedLoanDTO> returns) {
+        List<BatchItemResultDTO> results = new ArrayList<>(returns.size());
+        Set<Long> seen = new HashSet<>();
+        LocalDate today = LocalDate.now();
+        for (int from = 0; from < returns.size(); from += BATCH_CHUNK_SIZE) {
+            Set<Long> bookIds = new HashSet<>();
+            List<ReturnedLoanDTO> chunk = returns.subList(from, Math.min(from + BATCH_CHUNK_SIZE, returns.size()));
+            Map<Long, Loan> loans = repository.findAllById(
+                    chunk.stream().map(ReturnedLoanDTO::getId).collect(Collectors.toSet()))
+                    .stream()
+                    .collect(Collectors.toMap(Loan::getId, Function.identity()));
+
+            for (ReturnedLoanDTO dto : chunk) {
+                BatchItemResultDTO result = BatchItemResultDTO.builder()
+                        .index(results.size())
+                        .key(String.valueOf(dto.getId()))
+                        .id(dto.getId())
+                        .build();
+                Loan loan = loans.get(dto.getId());
+                if (loan == null) {
+                    result.setStatus(BatchItemStatus.NOT_FOUND);
+                } else if (!seen.add(loan.getId())) {
+                    result.setStatus(BatchItemStatus.DUPLICATE);
+                } else {
+                    loan.setReturned(dto.getReturned());
+                    loan.setReturnedDate(Boolean.TRUE.equals(dto.getReturned()) ? today : null);
+                    bookIds.add(loan.getBook().getId());
+                    result.setStatus(BatchItemStatus.UPDATED);
+                }
+                results.add(result);
+            }
+            try {
+                repository.flush();
+            } catch (DataIntegrityViolationException e) {
+                // a loan reopened while its book is loaned again
+                throw alreadyLoaned(e);
+            }
+            if (!bookIds.isEmpty()) {
+                bookRepository.syncActiveLoan(bookIds);
+                bookCacheEvictor.evict(bookIds);
+            }
+            entityManager.clear();
+        }
+        return results;
     }
 
     @Override
-    public List<Loan> getAllLoans() {
-        final Integer loanDays = 4;
-        LocalDate threeDaysAgo = LocalDate.now().minusDays(loanDays);
-        return repository.findByLoanDateLessThanAndNotReturned(threeDaysAgo);
+    @Transactional(readOnly = true)
+    public IdRangeDTO getLateLoanIdRange() {
+        return repository.findLateLoanIdRange(LocalDate.now().minusDays(LOAN_DAYS));
+    }
+
+    /**
+     * Hands the late loans with ids from {@code fromId} to {@code toId} to the consumer in chunks of at most {@code chunkSize} rows.
+     * The rows are projections, not managed entities, so nothing piles up in the persistence
+     * context and only one chunk is held at a time whatever the number of late loans.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void processLateLoans(long fromId, long toId, int chunkSize, Consumer<List<LateLoanDTO>> chunkConsumer) {
+        LocalDate threeDaysAgo = LocalDate.now().minusDays(LOAN_DAYS);
+        List<LateLoanDTO> chunk = new ArrayList<>(chunkSize);
+        try (Stream<LateLoanDTO> lateLoans = repository.streamLateLoans(threeDaysAgo, fromId, toId)) {
+            lateLoans.forEach(lateLoan -> {
+                chunk.add(lateLoan);
+                if (chunk.size() == chunkSize) {
+                    chunkConsumer.accept(chunk);
+                    chunk.clear();
+                }
+            });
+        }
+        if (!chunk.isEmpty()) {
+            chunkConsumer.accept(chunk);
+        }
+    }
+
+    /**
+     * The unique constraint on the active book is what keeps concurrent checkouts apart, its
+     * violation is the business error, any other violation goes up unchanged.
+     */
+    private static RuntimeException alreadyLoaned(DataIntegrityViolationException e) {
+        if (e.getCause() instanceof ConstraintViolationException) {
+            String constraint = ((ConstraintViolationException) e.getCause()).getConstraintName();
+            if (constraint != null && constraint.toLowerCase().contains(Loan.ACTIVE_BOOK_UNIQUE)) {
+                return new BusinessException(BusinessException.ALREADY_LOANED);
+            }
+        }
+        return e;
     }
 }
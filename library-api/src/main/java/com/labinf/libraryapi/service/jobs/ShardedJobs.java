@@ -0,0 +1,199 @@
+package com.labinf.libraryapi.service.jobs;
+
+import com.labinf.libraryapi.dto.IdRangeDTO;
+import com.labinf.libraryapi.model.entity.JobShard;
+import com.labinf.libraryapi.model.repository.JobShardRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Runs a scheduled job once across all the nodes sharing the database. A run is split into ranges of ids
+ * and the nodes lease the ranges one at a time, so they work on a run in parallel and never twice on a range
+ * while its lease lasts. With a single shard only one node runs the job.
+ * Leases are compared with the clock of each node, which must be far more accurate than the lease timeout.
+ * The work renews its lease as it goes, so a long shard is not taken over while its node is still on it.
+ */
+@Slf4j
+@Component
+public class ShardedJobs {
+
+    private final JobShardRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate renewTemplate;
+    private final Clock clock;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    @Value("${application.jobs.lease-timeout:PT10M}")
+    private Duration leaseTimeout = Duration.ofMinutes(10);
+
+    @Value("${application.jobs.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${application.jobs.initial-backoff:PT1M}")
+    private Duration initialBackoff = Duration.ofMinutes(1);
+
+    @Value("${application.jobs.max-backoff:PT1H}")
+    private Duration maxBackoff = Duration.ofHours(1);
+
+    @Autowired
+    public ShardedJobs(JobShardRepository repository, PlatformTransactionManager transactionManager) {
+        this(repository, transactionManager, Clock.systemDefaultZone());
+    }
+
+    public ShardedJobs(JobShardRepository repository, PlatformTransactionManager transactionManager, Clock clock) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // the work renews from inside its own transaction, the new lease must be seen before that one commits
+        this.renewTemplate = new TransactionTemplate(transactionManager);
+        this.renewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.clock = clock;
+    }
+
+    /**
+     * Splits the ids into {@code shards} contiguous ranges for the run, unless a node already did.
+     * The last range is left open so ids above the highest one are not lost.
+     * Returns whether this call planned the run.
+     */
+    public boolean plan(String job, String runKey, int shards, IdRangeDTO ids) {
+        if (repository.existsByJobNameAndRunKey(job, runKey)) {
+            return false;
+        }
+        long from = ids.getFrom() == null ? 0 : ids.getFrom();
+        long to = ids.getTo() == null ? -1 : ids.getTo();
+        long size = Math.max(1, (to - from + shards) / shards);
+        LocalDateTime now = LocalDateTime.now(clock);
+        List<JobShard> planned = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            long shardFrom = from + shard * size;
+            planned.add(JobShard.builder()
+                    .jobName(job)
+                    .runKey(runKey)
+                    .shard(shard)
+                    .fromId(shardFrom)
+                    .toId(shard == shards - 1 ? Long.MAX_VALUE : shardFrom + size - 1)
+                    .createdAt(now)
+                    .build());
+        }
+        try {
+            transactionTemplate.execute(status -> repository.saveAll(planned));
+        } catch (DataIntegrityViolationException e) {
+            // another node planned the run in between
+            return false;
+        }
+        log.info("{} run {} planned in {} shards", job, runKey, shards);
+        return true;
+    }
+
+    /**
+     * Processes free shards of any run of the job until none is left, a shard is marked done only after
+     * its work returned. A failed shard is retried after an exponential backoff, here or on another node,
+     * and given up after {@code maxAttempts}. Returns the number of shards this node completed.
+     */
+    public int drain(String job, ShardWork work) {
+        int completed = 0;
+        Optional<JobShard> claimed;
+        while ((claimed = claim(job)).isPresent()) {
+            JobShard shard = claimed.get();
+            try {
+                work.process(shard.getFromId(), shard.getToId(), () -> renew(shard));
+            } catch (LeaseLostException e) {
+                log.warn("{} shard {} of run {} was taken over while it ran", job, shard.getShard(), shard.getRunKey());
+                continue;
+            } catch (RuntimeException e) {
+                fail(shard, e);
+                continue;
+            }
+            Integer done = transactionTemplate.execute(status -> repository.complete(shard.getId(), owner, LocalDateTime.now(clock)));
+            if (done == null || done == 0) {
+                log.warn("{} shard {} of run {} was taken over before it finished", job, shard.getShard(), shard.getRunKey());
+                continue;
+            }
+            completed++;
+        }
+        return completed;
+    }
+
+    public Duration backoff(int attempts) {
+        Duration delay = initialBackoff;
+        for (int i = 1; i < attempts && delay.compareTo(maxBackoff) < 0; i++) {
+            delay = delay.multipliedBy(2);
+        }
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    private Optional<JobShard> claim(String job) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        List<Long> free = repository.findFreeShardIds(job, now);
+        // nodes firing together spread over the shards instead of all racing for the first one
+        Collections.shuffle(free);
+        for (Long id : free) {
+            Integer claimed = transactionTemplate.execute(status -> repository.claim(id, owner, now, now.plus(leaseTimeout)));
+            if (claimed != null && claimed == 1) {
+                return repository.findById(id);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void renew(JobShard shard) {
+        Integer renewed = renewTemplate.execute(status ->
+                repository.renew(shard.getId(), owner, LocalDateTime.now(clock).plus(leaseTimeout)));
+        if (renewed == null || renewed == 0) {
+            throw new LeaseLostException();
+        }
+    }
+
+    private void fail(JobShard shard, RuntimeException e) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        int attempts = shard.getAttempts() + 1;
+        String error = String.valueOf(e.getMessage());
+        String lastError = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        if (attempts >= maxAttempts) {
+            log.error("{} shard {} of run {} failed {} times, given up", shard.getJobName(), shard.getShard(), shard.getRunKey(), attempts, e);
+            transactionTemplate.execute(status -> repository.fail(shard.getId(), owner, now, lastError));
+            return;
+        }
+        Duration delay = backoff(attempts);
+        log.warn("{} shard {} of run {} failed, retried in {}", shard.getJobName(), shard.getShard(), shard.getRunKey(), delay, e);
+        transactionTemplate.execute(status -> repository.retry(shard.getId(), owner, now.plus(delay), lastError));
+    }
+
+    /**
+     * The work of one shard, on the ids from {@code fromId} to {@code toId} inclusive.
+     * It calls {@code renewLease} between chunks, which throws {@link LeaseLostException} once another node
+     * took the shard over so the work stops and rolls back.
+     */
+    @FunctionalInterface
+    public interface ShardWork {
+
+        void process(long fromId, long toId, Runnable renewLease);
+    }
+
+    public static class LeaseLostException extends RuntimeException {
+
+        LeaseLostException() {
+            super("The lease of the shard was taken over by another node");
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.labinf.libraryapi.service.mail;
+
+import com.labinf.libraryapi.dto.LateLoanDTO;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * All the late loans of one customer, sent as a single email.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LateLoanDigest {
+    private String customer;
+    private String email;
+    private List<LateLoanDTO> loans;
+}
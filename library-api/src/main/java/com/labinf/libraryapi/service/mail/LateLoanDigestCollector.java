@@ -0,0 +1,48 @@
+package com.labinf.libraryapi.service.mail;
+
+import com.labinf.libraryapi.dto.LateLoanDTO;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Folds late loans ordered by email into one {@link LateLoanDigest} per customer.
+ * A digest is handed over as soon as a row of another email shows up, so only the
+ * loans of the current customer are kept, even across chunk boundaries.
+ * Loans without email can't be notified and are dropped.
+ */
+public class LateLoanDigestCollector {
+
+    private final Consumer<LateLoanDigest> digestConsumer;
+
+    private LateLoanDigest current;
+
+    public LateLoanDigestCollector(Consumer<LateLoanDigest> digestConsumer) {
+        this.digestConsumer = digestConsumer;
+    }
+
+    public void add(LateLoanDTO lateLoan) {
+        String email = lateLoan.getCustomerEmail();
+        if (email == null || email.trim().isEmpty()) {
+            return;
+        }
+        if (current != null && !current.getEmail().equals(email)) {
+            finish();
+        }
+        if (current == null) {
+            current = LateLoanDigest.builder()
+                    .customer(lateLoan.getCustomer())
+                    .email(email)
+                    .loans(new ArrayList<>())
+                    .build();
+        }
+        current.getLoans().add(lateLoan);
+    }
+
+    public void finish() {
+        if (current != null) {
+            digestConsumer.accept(current);
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.labinf.libraryapi.service.mail;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Getter
+@ToString
+public class MailDispatchReport {
+
+    private int sent;
+    private long elapsedMillis;
+    private final List<LateLoanDigest> failed = new ArrayList<>();
+
+    public MailDispatchReport() {
+    }
+
+    public MailDispatchReport(int sent, List<LateLoanDigest> failed, long elapsedMillis) {
+        this.sent = sent;
+        this.failed.addAll(failed);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public List<LateLoanDigest> getFailed() {
+        return Collections.unmodifiableList(failed);
+    }
+
+    public int getFailedCount() {
+        return failed.size();
+    }
+
+    public double getMessagesPerSecond() {
+        return elapsedMillis == 0 ? sent : sent * 1000.0 / elapsedMillis;
+    }
+
+    public MailDispatchReport add(MailDispatchReport other) {
+        this.sent += other.sent;
+        this.failed.addAll(other.failed);
+        this.elapsedMillis += other.elapsedMillis;
+        return this;
+    }
+}
@@ -0,0 +1,38 @@
+package com.labinf.libraryapi.service.mail;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out messages so no more than {@code maxPerSecond} are handed to the SMTP server,
+ * whatever the number of sending threads. A non positive rate disables the throttle.
+ */
+public class MailThrottle {
+
+    private final long intervalNanos;
+
+    private long nextSlot;
+
+    public MailThrottle(double maxPerSecond) {
+        this.intervalNanos = maxPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / maxPerSecond) : 0;
+        this.nextSlot = System.nanoTime();
+    }
+
+    /**
+     * Waits for the slot of one message, a batch asks for one slot per message so it never goes out in a burst.
+     */
+    public void acquire() throws InterruptedException {
+        if (intervalNanos == 0) {
+            return;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long start = Math.max(nextSlot, now);
+            nextSlot = start + intervalNanos;
+            wait = start - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.labinf.libraryapi.service.mail;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One SMTP connection per sending thread, opened on first use and kept across batches, so a pool thread
+ * pays for the handshake and login once. A connection the server dropped is opened again on the next use.
+ */
+@Slf4j
+public class SmtpConnections {
+
+    private static final String DEFAULT_PROTOCOL = "smtp";
+
+    private final JavaMailSenderImpl mailSender;
+
+    private final ThreadLocal<Transport> current = new ThreadLocal<>();
+
+    private final Set<Transport> opened = ConcurrentHashMap.newKeySet();
+
+    public SmtpConnections(JavaMailSenderImpl mailSender) {
+        this.mailSender = mailSender;
+    }
+
+    /**
+     * The connected transport of the calling thread.
+     */
+    public Transport get() throws MessagingException {
+        Transport transport = current.get();
+        if (transport != null && transport.isConnected()) {
+            return transport;
+        }
+        discard();
+        String protocol = mailSender.getProtocol() == null ? DEFAULT_PROTOCOL : mailSender.getProtocol();
+        transport = mailSender.getSession().getTransport(protocol);
+        // same credentials handling as JavaMailSenderImpl, empty ones are no login
+        String username = mailSender.getUsername();
+        String password = mailSender.getPassword();
+        if ("".equals(username)) {
+            username = null;
+            if ("".equals(password)) {
+                password = null;
+            }
+        }
+        transport.connect(mailSender.getHost(), mailSender.getPort(), username, password);
+        current.set(transport);
+        opened.add(transport);
+        return transport;
+    }
+
+    /**
+     * Drops the transport of the calling thread after an error left it in an unknown state.
+     */
+    public void discard() {
+        Transport transport = current.get();
+        current.remove();
+        if (transport != null) {
+            close(transport);
+        }
+    }
+
+    public void closeAll() {
+        opened.forEach(this::close);
+    }
+
+    private void close(Transport transport) {
+        opened.remove(transport);
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("failed to close SMTP connection: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.labinf.libraryapi.service.paging;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.model.repository.support.CountedPage;
+import com.labinf.libraryapi.model.repository.support.CountedSlice;
+import com.labinf.libraryapi.model.repository.support.Filter;
+import com.labinf.libraryapi.model.repository.support.PagingRepository;
+import com.labinf.libraryapi.model.repository.support.Projection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Reads one page of a listing and obtains its total the way the request asked for.
+ * The page itself never pays for a count: it is read with one extra row to know if there is a next one.
+ */
+@Component
+public class PageCounter {
+
+    private final Cache<Object, Long> counts;
+
+    private final int estimateCap;
+
+    public PageCounter(@Value("${application.paging.count-cache-ttl}") Duration countCacheTtl,
+                       @Value("${application.paging.estimate-cap}") int estimateCap) {
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(countCacheTtl)
+                .build();
+        this.estimateCap = estimateCap;
+    }
+
+    /**
+     * @param countKey identifies the listing and its filter, used by {@link CountMode#CACHED}
+     */
+    public <T> Slice<T> find(PagingRepository<T> repository, Specification<T> spec, Object countKey,
+                             Pageable pageable, CountMode mode) {
+        return count(() -> repository.count(spec), limit -> repository.countUpTo(spec, limit),
+                countKey, pageable, mode, repository.findSlice(spec, pageable));
+    }
+
+    /**
+     * Same as {@link #find(PagingRepository, Specification, Object, Pageable, CountMode)} with the rows
+     * read as the given projection.
+     */
+    public <T, P> Slice<P> find(PagingRepository<T> repository, Specification<T> spec, Object countKey,
+                                Pageable pageable, CountMode mode, Projection<P> projection) {
+        return count(() -> repository.count(spec), limit -> repository.countUpTo(spec, limit),
+                countKey, pageable, mode, repository.findSlice(spec, pageable, projection));
+    }
+
+    /**
+     * Same as {@link #find(PagingRepository, Specification, Object, Pageable, CountMode, Projection)} for a
+     * filter, read as the union of its branches when it has more than one.
+     */
+    public <T, P> Slice<P> find(PagingRepository<T> repository, Filter<T> filter, Object countKey,
+                                Pageable pageable, CountMode mode, Projection<P> projection) {
+        List<Specification<T>> branches = filter.branches();
+        if (branches.size() == 1) {
+            return find(repository, branches.get(0), countKey, pageable, mode, projection);
+        }
+        // the total counts the union of the branches like the page reads it, one index per branch
+        return count(() -> repository.count(branches), limit -> repository.countUpTo(branches, limit),
+                countKey, pageable, mode, repository.findSlice(branches, pageable, projection));
+    }
+
+    private <P> Slice<P> count(LongSupplier count, IntToLongFunction countUpTo, Object countKey,
+                               Pageable pageable, CountMode mode, Slice<P> slice) {
+        if (mode == CountMode.NONE) {
+            return new CountedSlice<>(slice.getContent(), pageable, slice.hasNext());
+        }
+        if (!slice.hasNext() && (slice.hasContent() || pageable.getOffset() == 0)) {
+            // last page: the total is known without counting
+            return new CountedPage<>(slice.getContent(), pageable,
+                    pageable.getOffset() + slice.getNumberOfElements(), CountMode.EXACT);
+        }
+        switch (mode) {
+            case CACHED:
+                long cached = counts.get(countKey, key -> count.getAsLong());
+                return new CountedPage<>(slice.getContent(), pageable, cached, CountMode.CACHED);
+            case ESTIMATED:
+                long capped = countUpTo.applyAsLong(estimateCap);
+                if (capped < estimateCap) {
+                    return new CountedPage<>(slice.getContent(), pageable, capped, CountMode.EXACT);
+                }
+                long seen = pageable.getOffset() + slice.getNumberOfElements() + 1;
+                return new CountedPage<>(slice.getContent(), pageable, Math.max(capped, seen), CountMode.ESTIMATED);
+            default:
+                return new CountedPage<>(slice.getContent(), pageable, count.getAsLong(), CountMode.EXACT);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.labinf.libraryapi.service.search;
+
+import com.labinf.libraryapi.model.entity.Book;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the {@link BookSearchIndex} in step with every write of a book, whatever service or repository did it.
+ * Changes reach the index only after the transaction commits, so a rollback never leaves phantom entries.
+ */
+@Component
+public class BookIndexListener {
+
+    private final ObjectProvider<BookSearchIndex> searchIndex;
+
+    public BookIndexListener(ObjectProvider<BookSearchIndex> searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void saved(Book book) {
+        // copy now, the entity may change again before the commit
+        Book indexed = Book.builder().id(book.getId()).title(book.getTitle()).author(book.getAuthor()).isbn(book.getIsbn()).build();
+        afterCommit(index -> index.index(indexed));
+    }
+
+    @PostRemove
+    public void removed(Book book) {
+        Long id = book.getId();
+        afterCommit(index -> index.remove(id));
+    }
+
+    private void afterCommit(Consumer<BookSearchIndex> change) {
+        BookSearchIndex index = searchIndex.getIfAvailable();
+        if (index == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.accept(index);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                change.accept(index);
+            }
+        });
+    }
+}
@@ -0,0 +1,47 @@
+package com.labinf.libraryapi.service.search;
+
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.stream.Stream;
+
+/**
+ * Builds the search index from the database when the application starts,
+ * later writes are applied by {@link BookIndexListener}.
+ */
+@Component
+@Slf4j
+public class BookIndexLoader {
+
+    private final BookRepository repository;
+
+    private final BookSearchIndex searchIndex;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public BookIndexLoader(BookRepository repository, BookSearchIndex searchIndex) {
+        this.repository = repository;
+        this.searchIndex = searchIndex;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        long start = System.currentTimeMillis();
+        try (Stream<Book> books = repository.streamAll()) {
+            books.forEach(book -> {
+                searchIndex.index(book);
+                entityManager.detach(book);
+            });
+        }
+        log.info("search index loaded with {} books in {} ms", searchIndex.size(), System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,221 @@
+package com.labinf.libraryapi.service.search;
+
+import com.labinf.libraryapi.model.entity.Book;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index of the title, author and isbn of the books.
+ * Each term points to the books holding it and the weight of the field it came from, so a search only
+ * visits the postings of its terms: the cost follows the number of matches, not the size of the catalog.
+ * Terms are kept sorted so a prefix query is a range of the term map.
+ */
+@Component
+public class BookSearchIndex {
+
+    static final int TITLE_WEIGHT = 3;
+    static final int AUTHOR_WEIGHT = 2;
+    static final int ISBN_WEIGHT = 5;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{Alnum}]+");
+    private static final String PREFIX = "*";
+
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+
+    private final Map<Long, Map<String, Integer>> documents = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void index(Book book) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, book.getTitle(), TITLE_WEIGHT);
+        addTerms(terms, book.getAuthor(), AUTHOR_WEIGHT);
+        addTerms(terms, book.getIsbn(), ISBN_WEIGHT);
+        if (book.getIsbn() != null) {
+            // the isbn is also searchable without its separators
+            terms.merge(SEPARATORS.matcher(normalize(book.getIsbn())).replaceAll(""), ISBN_WEIGHT, Math::max);
+        }
+        terms.remove("");
+
+        lock.writeLock().lock();
+        try {
+            removeDocument(book.getId());
+            documents.put(book.getId(), terms);
+            terms.forEach((term, weight) -> postings.computeIfAbsent(term, key -> new HashMap<>()).put(book.getId(), weight));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the books holding every term of the query, best ranked first.
+     * A term ending with {@code *} matches every term starting with it.
+     * Each matched term scores the weight of its field times its inverse document frequency.
+     */
+    public List<Long> search(String query) {
+        List<QueryTerm> queryTerms = parse(query);
+        if (queryTerms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            List<Map<Long, Integer>> matches = new ArrayList<>(queryTerms.size());
+            for (QueryTerm queryTerm : queryTerms) {
+                Map<Long, Integer> posting = match(queryTerm);
+                if (posting.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                matches.add(posting);
+            }
+            // walk the rarest term and probe the others, so the work is bounded by its matches
+            matches.sort(Comparator.comparingInt(Map::size));
+            double[] idfs = new double[matches.size()];
+            for (int i = 0; i < idfs.length; i++) {
+                idfs[i] = Math.log(1 + (double) documents.size() / matches.get(i).size());
+            }
+            Map<Long, Double> scores = new HashMap<>();
+            candidates:
+            for (Map.Entry<Long, Integer> candidate : matches.get(0).entrySet()) {
+                double score = candidate.getValue() * idfs[0];
+                for (int i = 1; i < idfs.length; i++) {
+                    Integer weight = matches.get(i).get(candidate.getKey());
+                    if (weight == null) {
+                        continue candidates;
+                    }
+                    score += weight * idfs[i];
+                }
+                scores.put(candidate.getKey(), score);
+            }
+            List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            List<Long> ids = new ArrayList<>(ranked.size());
+            ranked.forEach(entry -> ids.add(entry.getKey()));
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Posting of the term, or for a prefix the merge of the postings of every term starting with it.
+     */
+    private Map<Long, Integer> match(QueryTerm queryTerm) {
+        if (!queryTerm.prefix) {
+            return postings.getOrDefault(queryTerm.term, Collections.emptyMap());
+        }
+        NavigableMap<String, Map<Long, Integer>> range =
+                postings.subMap(queryTerm.term, true, queryTerm.term + Character.MAX_VALUE, false);
+        if (range.size() == 1) {
+            return range.firstEntry().getValue();
+        }
+        Map<Long, Integer> weights = new HashMap<>();
+        range.values().forEach(posting -> posting.forEach((id, weight) -> weights.merge(id, weight, Math::max)));
+        return weights;
+    }
+
+    private void removeDocument(Long id) {
+        Map<String, Integer> terms = documents.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Map<Long, Integer> posting = postings.get(term);
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static void addTerms(Map<String, Integer> terms, String text, int weight) {
+        for (String term : tokenize(text)) {
+            terms.merge(term, weight, Math::max);
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        for (String term : SEPARATORS.split(normalize(text))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private static String normalize(String text) {
+        return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static List<QueryTerm> parse(String query) {
+        List<QueryTerm> queryTerms = new ArrayList<>();
+        if (query == null) {
+            return queryTerms;
+        }
+        for (String word : query.trim().split("\\s+")) {
+            List<String> terms = tokenize(word);
+            for (int i = 0; i < terms.size(); i++) {
+                boolean last = i == terms.size() - 1;
+                queryTerms.add(new QueryTerm(terms.get(i), last && word.endsWith(PREFIX)));
+            }
+        }
+        return queryTerms;
+    }
+
+    private static final class QueryTerm {
+
+        private final String term;
+
+        private final boolean prefix;
+
+        private QueryTerm(String term, boolean prefix) {
+            this.term = term;
+            this.prefix = prefix;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+-- Schema as it was generated by Hibernate before the migrations took it over.
+
+create sequence book_seq start with 1 increment by 50;
+create sequence loan_seq start with 1 increment by 50;
+
+create table book (
+    id bigint not null,
+    title varchar(255),
+    author varchar(255),
+    isbn varchar(255),
+    active_loan_id bigint,
+    constraint pk_book primary key (id),
+    constraint uk_book_isbn unique (isbn)
+);
+
+create index ix_book_title on book (title, id);
+create index ix_book_author on book (author, id);
+
+create table loan (
+    id bigint not null,
+    customer varchar(255),
+    customer_email varchar(255),
+    id_book bigint,
+    loan_date date,
+    returned boolean,
+    active_book bigint,
+    constraint pk_loan primary key (id),
+    constraint uk_loan_active_book unique (active_book)
+);
+
+create index ix_loan_book_date on loan (id_book, loan_date, id);
+
+-- declared after the index so the foreign key reuses it instead of creating its own
+alter table loan add constraint fk_loan_book foreign key (id_book) references book (id);
+
+create table late_loan_notification (
+    id bigint generated by default as identity,
+    dedupe_key varchar(255) not null,
+    loan_id bigint,
+    customer varchar(255),
+    email varchar(255),
+    book_title varchar(255),
+    book_isbn varchar(255),
+    loan_date date,
+    status varchar(255) not null,
+    attempts integer,
+    next_attempt_at timestamp,
+    claimed_by varchar(255),
+    claimed_until timestamp,
+    last_error varchar(1000),
+    created_at timestamp,
+    sent_at timestamp,
+    constraint pk_late_loan_notification primary key (id),
+    constraint uk_late_loan_notification_dedupe unique (dedupe_key)
+);
@@ -0,0 +1,8 @@
+-- Indexes matched to the loan queries. The loans of a book are read through ix_loan_book_date,
+-- its open loan through uk_loan_active_book and a book by isbn through uk_book_isbn.
+
+-- loans of a customer: findByBookIsbnOrCustomer
+create index ix_loan_customer on loan (customer, id);
+
+-- late loans: findByLoanDateLessThanAndNotReturned, streamLateLoans
+create index ix_loan_date_returned on loan (loan_date, returned);
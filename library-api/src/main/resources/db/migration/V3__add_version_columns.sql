@@ -0,0 +1,6 @@
+-- Optimistic lock versions of book and loan, also the source of the ETags of their resources.
+-- Rows already there start at version 0.
+
+alter table book add column version bigint default 0 not null;
+
+alter table loan add column version bigint default 0 not null;
@@ -0,0 +1,3 @@
+-- Day the loan was returned, null while it is open. Loans returned before it existed keep it null.
+
+alter table loan add column returned_date date;
@@ -0,0 +1,21 @@
+-- Shards of the scheduled jobs run by several nodes. The first node to plan a run writes its shards,
+-- the unique key makes the others give up, then each shard is leased to one node at a time.
+-- A shard that fails waits out a backoff in its lease and is given up once it reaches the max attempts.
+
+create table job_shard (
+    id bigint generated by default as identity,
+    job_name varchar(100) not null,
+    run_key varchar(100) not null,
+    shard integer not null,
+    from_id bigint not null,
+    to_id bigint not null,
+    owner varchar(255),
+    lease_until timestamp,
+    attempts integer default 0 not null,
+    last_error varchar(1000),
+    done_at timestamp,
+    failed_at timestamp,
+    created_at timestamp,
+    constraint pk_job_shard primary key (id),
+    constraint uk_job_shard_run unique (job_name, run_key, shard)
+);
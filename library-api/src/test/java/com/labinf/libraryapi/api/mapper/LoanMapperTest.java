@@ -0,0 +1,52 @@
+package com.labinf.libraryapi.api.mapper;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.entity.Loan;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoanMapperTest {
+
+    BookMapper bookMapper = new BookMapper();
+
+    LoanMapper loanMapper = new LoanMapper(bookMapper);
+
+    @Test
+    @DisplayName("Deve converter um emprestimo com o livro aninhado")
+    public void loanToDtoTest(){
+        //cenario
+        Book book = Book.builder().id(1L).title("TDD").author("Diego").isbn("123").build();
+        Loan loan = Loan.builder().id(2L).customer("Fulano").customerEmail("fulano@email.com")
+                .book(book).loanDate(LocalDate.now()).returned(true).build();
+
+        //execução
+        LoanDTO dto = loanMapper.toDto(loan);
+
+        //verificação
+        assertThat(dto.getId()).isEqualTo(2L);
+        assertThat(dto.getCustomer()).isEqualTo("Fulano");
+        assertThat(dto.getEmail()).isEqualTo("fulano@email.com");
+        assertThat(dto.getIsbn()).isNull();
+        assertThat(dto.getBook()).isEqualTo(BookDTO.builder().id(1L).title("TDD").author("Diego").isbn("123").build());
+    }
+
+    @Test
+    @DisplayName("Deve converter o dto de livro em entidade")
+    public void bookToEntityTest(){
+        //cenario
+        BookDTO dto = BookDTO.builder().id(1L).title("TDD").author("Diego").isbn("123").build();
+
+        //execução
+        Book book = bookMapper.toEntity(dto);
+
+        //verificação
+        assertThat(book).isEqualTo(Book.builder().id(1L).title("TDD").author("Diego").isbn("123").build());
+        assertThat(bookMapper.toDto(book)).isEqualTo(dto);
+    }
+}
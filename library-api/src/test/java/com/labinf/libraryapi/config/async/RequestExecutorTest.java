@@ -0,0 +1,72 @@
+package com.labinf.libraryapi.config.async;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class RequestExecutorTest {
+
+    ThreadPoolTaskExecutor pool;
+
+    RequestExecutor executor;
+
+    CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() {
+        pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(1);
+        pool.setMaxPoolSize(1);
+        pool.setQueueCapacity(1);
+        pool.initialize();
+        executor = new RequestExecutor(pool, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        pool.shutdown();
+    }
+
+    @Test
+    @DisplayName("Deve entregar o resultado do trabalho executado no pool")
+    public void submitTest() throws Exception {
+        //cenario
+        CountDownLatch done = new CountDownLatch(1);
+
+        //execução
+        DeferredResult<String> result = executor.submit(() -> "ok");
+        result.setResultHandler(value -> done.countDown());
+
+        //verificação
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(result.getResult()).isEqualTo("ok");
+    }
+
+    @Test
+    @DisplayName("Deve recusar com 503 quando a fila do pool estiver cheia")
+    public void rejectWhenQueueIsFullTest() {
+        //cenario
+        executor.submit(() -> release.await(5, TimeUnit.SECONDS));
+        executor.submit(() -> "na fila");
+
+        //execução
+        Throwable exception = catchThrowable(() -> executor.submit(() -> "recusado"));
+
+        //verificação
+        assertThat(exception).isInstanceOf(ResponseStatusException.class);
+        assertThat(((ResponseStatusException) exception).getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
@@ -1,15 +1,30 @@
 package com.labinf.libraryapi.model.repository;
 
+import com.labinf.libraryapi.config.JpaConfig;
+import com.labinf.libraryapi.dto.BookDTO;
 import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.repository.support.KeysetCursor;
+import com.labinf.libraryapi.model.repository.support.KeysetPage;
+import org.hibernate.Session;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -17,6 +32,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @DataJpaTest
+@Import(JpaConfig.class)
 public class BookRepositoryTest {
 
     @Autowired
@@ -80,6 +96,26 @@ public class BookRepositoryTest {
         assertThat(saved.getId()).isNotNull();
     }
 
+    @Test
+    @DisplayName("Deve atualizar o livro apenas na versao informada")
+    public void updateDetailsTest(){
+        //cenario
+        Book book = createNewBook();
+        entityManager.persistAndFlush(book);
+        entityManager.clear();
+
+        //execução
+        int updated = repository.updateDetails(book.getId(), 0L, "TDD 2", "Diego");
+        int stale = repository.updateDetails(book.getId(), 0L, "TDD 3", "Fulano");
+
+        //verificação
+        assertThat(updated).isEqualTo(1);
+        assertThat(stale).isZero();
+        Book found = repository.findById(book.getId()).get();
+        assertThat(found.getTitle()).isEqualTo("TDD 2");
+        assertThat(found.getVersion()).isEqualTo(1L);
+    }
+
     @Test
     @DisplayName("Deve deletar um livro")
     public void deleteBookTest(){
@@ -96,5 +132,153 @@ public class BookRepositoryTest {
         assertThat(deletedBook).isNull();
     }
 
+    @Test
+    @DisplayName("Deve deletar por id um livro alterado depois de lido")
+    public void deleteBookByIdTest(){
+        //cenario
+        Book book = createNewBook();
+        entityManager.persist(book);
+        entityManager.flush();
+        repository.updateDetails(book.getId(), 0L, "TDD 2", "Diego");
+        entityManager.clear();
+
+        //execução
+        int deleted = repository.deleteBook(book.getId());
+        int missing = repository.deleteBook(book.getId());
+
+        //verificação
+        assertThat(deleted).isEqualTo(1);
+        assertThat(missing).isZero();
+        assertThat(entityManager.find(Book.class, book.getId())).isNull();
+    }
+
+
 
+    @Test
+    @DisplayName("Deve percorrer os livros por cursor sem repetir nem pular livros com o mesmo titulo")
+    public void findAfterTest(){
+        //cenario
+        List<String> titles = Arrays.asList("C", "A", "B", "A", "C", "A", "B");
+        for (int i = 0; i < titles.size(); i++) {
+            entityManager.persist(Book.builder().author("Diego").title(titles.get(i)).isbn("isbn-" + i).build());
+        }
+
+        //execução
+        List<Book> visited = new ArrayList<>();
+        int pages = 0;
+        KeysetCursor cursor = KeysetCursor.of("", Sort.by("title"), Collections.singleton("title"));
+        while (cursor != null) {
+            KeysetPage<Book> page = repository.findAfter(null, cursor, 2);
+            visited.addAll(page.getContent());
+            pages++;
+            cursor = page.getNext() == null ? null
+                    : KeysetCursor.of(page.getNext(), Sort.unsorted(), Collections.singleton("title"));
+        }
+
+        //verificação
+        assertThat(pages).isEqualTo(4);
+        assertThat(visited).extracting(Book::getTitle).containsExactly("A", "A", "A", "B", "B", "C", "C");
+        assertThat(visited).extracting(Book::getId).doesNotHaveDuplicates();
+        assertThat(visited).isSortedAccordingTo(Comparator.comparing(Book::getTitle).thenComparing(Book::getId));
+    }
+
+    @Test
+    @DisplayName("Deve percorrer os livros filtrados por cursor em ordem decrescente")
+    public void findAfterDescendingFilterTest(){
+        //cenario
+        for (int i = 0; i < 5; i++) {
+            entityManager.persist(Book.builder().author(i % 2 == 0 ? "Diego" : "Outro").title("TDD " + i).isbn("isbn-" + i).build());
+        }
+        Specification<Book> filter = BookSpecifications.matching(Book.builder().author("diego").build());
+        KeysetCursor first = KeysetCursor.of(null, Sort.by(Sort.Direction.DESC, "title"), Collections.singleton("title"));
+
+        //execução
+        KeysetPage<Book> page = repository.findAfter(filter, first, 2);
+        KeysetPage<Book> last = repository.findAfter(filter,
+                KeysetCursor.of(page.getNext(), Sort.unsorted(), Collections.singleton("title")), 2);
+
+        //verificação
+        assertThat(page.getContent()).extracting(Book::getTitle).containsExactly("TDD 4", "TDD 2");
+        assertThat(last.getContent()).extracting(Book::getTitle).containsExactly("TDD 0");
+        assertThat(last.getNext()).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve contar os livros parando no limite informado")
+    public void countUpToTest(){
+        //cenario
+        for (int i = 0; i < 5; i++) {
+            entityManager.persist(Book.builder().author("Diego").title("TDD " + i).isbn("isbn-" + i).build());
+        }
+        Specification<Book> filter = BookSpecifications.matching(Book.builder().title("tdd").build());
+
+        //execução
+        long capped = repository.countUpTo(filter, 3);
+        long below = repository.countUpTo(filter, 10);
+
+        //verificação
+        assertThat(capped).isEqualTo(3);
+        assertThat(below).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Deve obter a pagina informando se existe proxima sem contar o total")
+    public void findSliceTest(){
+        //cenario
+        for (int i = 0; i < 5; i++) {
+            entityManager.persist(Book.builder().author("Diego").title("TDD " + i).isbn("isbn-" + i).build());
+        }
+
+        //execução
+        Slice<Book> first = repository.findSlice(null, PageRequest.of(0, 2, Sort.by("title")));
+        Slice<Book> last = repository.findSlice(null, PageRequest.of(2, 2, Sort.by("title")));
+
+        //verificação
+        assertThat(first.getContent()).extracting(Book::getTitle).containsExactly("TDD 0", "TDD 1");
+        assertThat(first.hasNext()).isTrue();
+        assertThat(last.getContent()).extracting(Book::getTitle).containsExactly("TDD 4");
+        assertThat(last.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve obter a pagina como projeção sem carregar entidades")
+    public void findSliceProjectionTest(){
+        //cenario
+        for (int i = 0; i < 3; i++) {
+            entityManager.persist(Book.builder().author("Diego").title("TDD " + i).isbn("isbn-" + i).build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        //execução
+        Slice<BookDTO> first = repository.findSlice((root, query, cb) -> cb.like(root.get("title"), "TDD%"),
+                PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "title")), BookRepository.BOOK_DTO);
+
+        //verificação
+        assertThat(first.getContent()).extracting(BookDTO::getTitle).containsExactly("TDD 2", "TDD 1");
+        assertThat(first.getContent()).extracting(BookDTO::getIsbn).containsExactly("isbn-2", "isbn-1");
+        assertThat(first.getContent()).allMatch(book -> book.getId() != null && "Diego".equals(book.getAuthor()));
+        assertThat(first.hasNext()).isTrue();
+        assertThat(entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve apontar o livro para o emprestimo somente se estiver disponivel")
+    public void claimTest(){
+        //cenario
+        Book book = entityManager.persistAndFlush(Book.builder().author("Diego").title("TDD").isbn("123").build());
+
+        //execução
+        int first = repository.claim(book.getId(), 10L);
+        int second = repository.claim(book.getId(), 11L);
+
+        //verificação
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+        assertThat(repository.findAvailability(book.getId())).hasValueSatisfying(availability -> {
+            assertThat(availability.isAvailable()).isFalse();
+            assertThat(availability.getActiveLoanId()).isEqualTo(10L);
+        });
+        assertThat(repository.findAvailability(book.getId() + 1000)).isEmpty();
+    }
 }
@@ -1,28 +1,56 @@
 package com.labinf.libraryapi.model.repository;
 
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.config.JpaConfig;
+import com.labinf.libraryapi.dto.IdRangeDTO;
+import com.labinf.libraryapi.dto.LateLoanDTO;
+import com.labinf.libraryapi.dto.LoanFilterDTO;
+import com.labinf.libraryapi.dto.LoanStateDTO;
+import com.labinf.libraryapi.dto.LoansVersionDTO;
 import com.labinf.libraryapi.dto.ReturnedLoanDTO;
 import com.labinf.libraryapi.model.entity.Book;
 import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.model.repository.support.CountedPage;
+import com.labinf.libraryapi.model.repository.support.KeysetCursor;
+import com.labinf.libraryapi.model.repository.support.KeysetPage;
+import com.labinf.libraryapi.service.paging.PageCounter;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
-import org.springframework.data.domain.Page;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import javax.persistence.EntityManager;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(JpaConfig.class)
 public class LoanRepositoryTest {
 
     @Autowired
@@ -48,29 +76,247 @@ public class LoanRepositoryTest {
         assertThat(exists).isTrue();
     }
 
-    private Book createNewBook() {
-        return Book.builder().author("Diego").title("TDD").isbn("123").build();
+    @Test
+    @DisplayName("Deve mudar a versao dos emprestimos do livro quando um emprestimo for criado ou alterado")
+    public void findLoansVersionByBookTest(){
+        //cenario
+        Book book = createNewBook();
+        entityManager.persist(book);
+        LoansVersionDTO empty = repository.findLoansVersionByBook(book.getId()).get();
+        Loan loan = entityManager.persistAndFlush(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+        LoansVersionDTO loaned = repository.findLoansVersionByBook(book.getId()).get();
+
+        //execução
+        loan.setReturned(true);
+        entityManager.flush();
+        LoansVersionDTO returned = repository.findLoansVersionByBook(book.getId()).get();
+
+        //verificação
+        assertThat(empty.getCount()).isZero();
+        assertThat(loaned).isNotEqualTo(empty);
+        assertThat(returned).isNotEqualTo(loaned);
+        assertThat(repository.findLoansVersionByBook(-1L)).isEmpty();
     }
 
     @Test
-    @DisplayName("Deve buscar emprestimo pelo isbn do livro ou customer")
-    public void findBookIsbnOrCustomerTest(){
+    @DisplayName("Deve devolver o emprestimo apenas na versao informada")
+    public void markReturnedTest(){
         //cenario
         Book book = createNewBook();
         entityManager.persist(book);
+        Loan loan = entityManager.persistAndFlush(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+        entityManager.clear();
 
-        Loan loan = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build();
-        entityManager.persist(loan);
+        //execução
+        LoanStateDTO state = repository.findState(loan.getId()).get();
+        int updated = repository.markReturned(loan.getId(), 0L, true, LocalDate.now(), null);
+        int stale = repository.markReturned(loan.getId(), 0L, false, null, book.getId());
+
+        //verificação
+        assertThat(state).isEqualTo(LoanStateDTO.builder().bookId(book.getId()).activeBook(book.getId()).version(0L).build());
+        assertThat(updated).isEqualTo(1);
+        assertThat(stale).isZero();
+        Loan returned = repository.findById(loan.getId()).get();
+        assertThat(returned.getReturned()).isTrue();
+        assertThat(returned.getReturnedDate()).isEqualTo(LocalDate.now());
+        assertThat(returned.getActiveBook()).isNull();
+        assertThat(returned.getVersion()).isEqualTo(1L);
+        assertThat(repository.findState(-1L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve recusar um segundo emprestimo aberto para o mesmo livro")
+    public void singleActiveLoanPerBookTest(){
+        //cenario
+        Book book = createNewBook();
+        entityManager.persist(book);
+        Loan first = entityManager.persistAndFlush(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
 
         //execução
-        Page<Loan> result = repository.findByBookIsbnOrCustomer("123", "Fulano", PageRequest.of(0, 10));
+        Throwable duplicated = catchThrowable(() -> repository.saveAndFlush(
+                Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).build()));
+        entityManager.clear();
+        Loan returned = repository.findById(first.getId()).get();
+        returned.setReturned(true);
+        repository.saveAndFlush(returned);
+        Loan next = repository.saveAndFlush(Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).build());
+
+        //verificação
+        assertThat(duplicated).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(next.getActiveBook()).isEqualTo(book.getId());
+        assertThat(repository.findById(first.getId()).get().getActiveBook()).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve percorrer o historico de emprestimos do livro por cursor pela data")
+    public void findAfterTest(){
+        //cenario
+        Book book = createNewBook();
+        entityManager.persist(book);
+        for (int i = 0; i < 5; i++) {
+            entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now().minusDays(i / 2)).returned(i > 0).build());
+        }
+        Set<String> keys = Collections.singleton("loanDate");
+
+        //execução
+        KeysetPage<Loan> first = repository.findAfter(LoanSpecifications.ofBook(book),
+                KeysetCursor.of(null, Sort.by(Sort.Direction.DESC, "loanDate"), keys), 3);
+        KeysetPage<Loan> second = repository.findAfter(LoanSpecifications.ofBook(book),
+                KeysetCursor.of(first.getNext(), Sort.unsorted(), keys), 3);
+
+        //verificação
+        assertThat(first.getContent()).hasSize(3);
+        assertThat(second.getContent()).hasSize(2);
+        assertThat(second.getNext()).isNull();
+        List<Loan> all = new ArrayList<>(first.getContent());
+        all.addAll(second.getContent());
+        assertThat(all).extracting(Loan::getId).doesNotHaveDuplicates();
+        assertThat(all).isSortedAccordingTo(Comparator.comparing(Loan::getLoanDate).reversed()
+                .thenComparing(Comparator.comparing(Loan::getId).reversed()));
+    }
+
+    @Test
+    @DisplayName("Deve listar uma pagina de emprestimos com o mesmo numero de consultas qualquer que seja o tamanho")
+    public void pageStatementCountTest(){
+        //cenario
+        Book first = null;
+        for (int i = 0; i < 10; i++) {
+            Book book = entityManager.persist(Book.builder().author("Diego").title("TDD " + i).isbn("isbn-" + i).build());
+            entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now().minusDays(i)).returned(true).build());
+            entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+            first = first == null ? book : first;
+        }
+        Book loaned = first;
+        for (int i = 0; i < 10; i++) {
+            entityManager.persist(Loan.builder().book(loaned).customer("Ciclano").loanDate(LocalDate.now().minusDays(i)).returned(true).build());
+        }
+        entityManager.flush();
+        Specification<Loan> spec = LoanSpecifications.filter(LoanFilterDTO.builder().customer("Fulano").build()).toSpecification();
+        Set<String> keys = Collections.singleton("loanDate");
+
+        for (int size : new int[]{2, 10}) {
+            //execução
+            long slice = statementsFor(() -> repository.findSlice(spec, PageRequest.of(0, size)).getContent());
+            long page = statementsFor(() -> {
+                List<Loan> content = repository.findSlice(spec, PageRequest.of(0, size)).getContent();
+                repository.count(spec);
+                return content;
+            });
+            long projection = statementsFor(() -> {
+                repository.findSlice(spec, PageRequest.of(0, size), LoanRepository.LOAN_DTO);
+                return Collections.emptyList();
+            });
+            long cursor = statementsFor(() -> repository.findAfter(spec, KeysetCursor.of(null, Sort.by("loanDate"), keys), size).getContent());
+            long byBook = statementsFor(() -> repository.findByBook(loaned, PageRequest.of(0, size)).getContent());
+
+            //verificação
+            assertThat(slice).as("slice of %d", size).isEqualTo(1);
+            assertThat(page).as("page of %d", size).isEqualTo(2);
+            assertThat(projection).as("projection of %d", size).isEqualTo(1);
+            assertThat(cursor).as("cursor of %d", size).isEqualTo(1);
+            assertThat(byBook).as("book page of %d", size).isEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve listar emprestimos como projeção com o livro aninhado")
+    public void findSliceProjectionTest(){
+        //cenario
+        Book book = entityManager.persist(createNewBook());
+        entityManager.persist(Loan.builder().book(book).customer("Fulano").customerEmail("fulano@email.com").loanDate(LocalDate.now()).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        //execução
+        Slice<LoanDTO> result = repository.findSlice(LoanSpecifications.filter(LoanFilterDTO.builder().isbn("123").build()).toSpecification(),
+                PageRequest.of(0, 10), LoanRepository.LOAN_DTO);
 
         //verificação
         assertThat(result.getContent()).hasSize(1);
-        assertThat(result.getContent()).contains(loan);
-        assertThat(result.getPageable().getPageSize()).isEqualTo(10);
-        assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
-        assertThat(result.getTotalElements()).isEqualTo(1);
+        LoanDTO loan = result.getContent().get(0);
+        assertThat(loan.getCustomer()).isEqualTo("Fulano");
+        assertThat(loan.getEmail()).isEqualTo("fulano@email.com");
+        assertThat(loan.getIsbn()).isNull();
+        assertThat(loan.getBook().getId()).isEqualTo(book.getId());
+        assertThat(loan.getBook().getIsbn()).isEqualTo("123");
+        assertThat(result.hasNext()).isFalse();
+    }
+
+    /**
+     * Statements run by the listing, reading the book of every row, with an empty persistence context.
+     */
+    private long statementsFor(Supplier<List<Loan>> listing) {
+        entityManager.clear();
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        listing.get().forEach(loan -> loan.getBook().getTitle());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Book createNewBook() {
+        return Book.builder().author("Diego").title("TDD").isbn("123").build();
+    }
+
+    @Test
+    @DisplayName("Deve buscar emprestimo pelo isbn do livro ou customer como união dos dois indices")
+    public void findBookIsbnOrCustomerUnionTest(){
+        //cenario
+        Book book = entityManager.persist(createNewBook());
+        Book other = entityManager.persist(Book.builder().author("Diego").title("TDD").isbn("456").build());
+        Loan both = entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now().minusDays(1)).returned(true).build());
+        Loan byIsbn = entityManager.persist(Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).build());
+        Loan byCustomer = entityManager.persist(Loan.builder().book(other).customer("Fulano").loanDate(LocalDate.now().minusDays(2)).build());
+        entityManager.persist(Loan.builder().book(other).customer("Beltrano").loanDate(LocalDate.now()).returned(true).build());
+        entityManager.flush();
+        List<Specification<Loan>> branches = LoanSpecifications.filter(LoanFilterDTO.builder().isbn("123").customer("Fulano").build()).branches();
+
+        //execução
+        Slice<LoanDTO> first = repository.findSlice(branches, PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "loanDate")), LoanRepository.LOAN_DTO);
+        Slice<LoanDTO> second = repository.findSlice(branches, PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "loanDate")), LoanRepository.LOAN_DTO);
+
+        //verificação
+        assertThat(branches).hasSize(2);
+        assertThat(first.getContent()).extracting(LoanDTO::getId).containsExactly(byIsbn.getId(), both.getId());
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getContent()).extracting(LoanDTO::getId).containsExactly(byCustomer.getId());
+        assertThat(second.hasNext()).isFalse();
+        assertThat(repository.countUpTo(branches, 10)).isEqualTo(3);
+        assertThat(repository.countUpTo(branches, 2)).isEqualTo(2);
+        assertThat(repository.count(branches)).isEqualTo(3);
+        assertThat(repository.count(LoanSpecifications.filter(LoanFilterDTO.builder().isbn("123").customer("Fulano")
+                .from(LocalDate.now().minusDays(1)).to(LocalDate.now()).build()).branches())).isEqualTo(2);
+        assertThat(((CountedPage<LoanDTO>) new PageCounter(Duration.ofMinutes(1), 10).find(repository, LoanSpecifications.filter(
+                LoanFilterDTO.builder().isbn("123").customer("Fulano").build()), "key", PageRequest.of(0, 2),
+                CountMode.EXACT, LoanRepository.LOAN_DTO)).getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Deve filtrar emprestimos apenas pelos campos informados")
+    public void filterTest(){
+        //cenario
+        Book book = entityManager.persist(createNewBook());
+        Loan old = entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now().minusDays(10)).returned(true).build());
+        Loan open = entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+        entityManager.flush();
+
+        //execução
+        List<Loan> all = repository.findAll(LoanSpecifications.filter(new LoanFilterDTO()).toSpecification());
+        List<Loan> recent = repository.findAll(LoanSpecifications.filter(LoanFilterDTO.builder()
+                .customer("Fulano").from(LocalDate.now().minusDays(1)).build()).toSpecification());
+        List<Loan> returned = repository.findAll(LoanSpecifications.filter(LoanFilterDTO.builder()
+                .isbn("123").customer("Ciclano").match(LoanFilterDTO.Match.ANY).returned(true).build()).toSpecification());
+        List<Loan> ofBoth = repository.findAll(LoanSpecifications.filter(LoanFilterDTO.builder()
+                .isbn("123").customer("Ciclano").match(LoanFilterDTO.Match.ALL).build()).toSpecification());
+        List<Loan> notReturned = repository.findAll(LoanSpecifications.filter(LoanFilterDTO.builder()
+                .to(LocalDate.now()).returned(false).build()).toSpecification());
+
+        //verificação
+        assertThat(all).containsExactlyInAnyOrder(old, open);
+        assertThat(recent).containsExactly(open);
+        assertThat(returned).containsExactly(old);
+        assertThat(ofBoth).isEmpty();
+        assertThat(notReturned).containsExactly(open);
     }
 
     @Test
@@ -93,6 +339,48 @@ public class LoanRepositoryTest {
         assertThat(result).isEmpty();
     }
 
+    @Test
+    @DisplayName("Deve percorrer os emprestimos atrasados projetando apenas os dados do cliente e do livro")
+    public void streamLateLoansTest(){
+        Loan late = createAndPersistLoan(LocalDate.now().minusDays(5));
+        Book other = Book.builder().author("Diego").title("TDD").isbn("456").build();
+        entityManager.persist(other);
+        entityManager.persist(Loan.builder().book(other).customer("Fulnano").loanDate(LocalDate.now()).build());
+
+        List<LateLoanDTO> result;
+        try (Stream<LateLoanDTO> stream = repository.streamLateLoans(LocalDate.now().minusDays(4), Long.MIN_VALUE, Long.MAX_VALUE)) {
+            result = stream.collect(Collectors.toList());
+        }
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getLoanId()).isEqualTo(late.getId());
+        assertThat(result.get(0).getCustomer()).isEqualTo(late.getCustomer());
+        assertThat(result.get(0).getBookIsbn()).isEqualTo("123");
+    }
+
+    @Test
+    @DisplayName("Deve delimitar os ids dos emprestimos atrasados e percorrer apenas os de uma faixa")
+    public void lateLoanIdRangeTest(){
+        List<Loan> loans = new ArrayList<>();
+        for (int days : new int[]{5, 6, 0}) {
+            Book book = entityManager.persist(Book.builder().author("Diego").title("TDD").isbn("isbn-" + days).build());
+            loans.add(entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now().minusDays(days)).build()));
+        }
+        Loan first = loans.get(0);
+        Loan second = loans.get(1);
+        LocalDate threeDaysAgo = LocalDate.now().minusDays(4);
+
+        IdRangeDTO range = repository.findLateLoanIdRange(threeDaysAgo);
+        List<Long> shard;
+        try (Stream<LateLoanDTO> stream = repository.streamLateLoans(threeDaysAgo, second.getId(), Long.MAX_VALUE)) {
+            shard = stream.map(LateLoanDTO::getLoanId).collect(Collectors.toList());
+        }
+
+        assertThat(range).isEqualTo(IdRangeDTO.builder().from(first.getId()).to(second.getId()).build());
+        assertThat(shard).containsExactly(second.getId());
+        assertThat(repository.findLateLoanIdRange(LocalDate.now().minusDays(30)).getFrom()).isNull();
+    }
+
     public Loan createAndPersistLoan(LocalDate loanDate){
         Book book = createNewBook();
         entityManager.persist(book);
@@ -0,0 +1,153 @@
+package com.labinf.libraryapi.model.repository;
+
+import com.labinf.libraryapi.config.JpaConfig;
+import com.labinf.libraryapi.dto.LoanFilterDTO;
+import com.labinf.libraryapi.model.entity.Loan;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import java.lang.reflect.Method;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Explains on H2 the SQL that Hibernate generates for the hot queries of the repositories,
+ * so a change of a query or of the migrations that drops its index fails here.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(JpaConfig.class)
+public class QueryPlanTest {
+
+    static final String TABLE_SCAN = "tableScan";
+
+    // H2 picks any index leading with the book, its own one for the foreign key included
+    static final String LOANS_OF_BOOK = "ID_BOOK = ";
+
+    @Autowired
+    TestEntityManager testEntityManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Deve usar indice para verificar se o livro tem emprestimo aberto")
+    public void existsByBookAndNotReturnedPlanTest(){
+        //cenario
+        Long bookId = 1L;
+
+        //execução
+        String plan = explain(LoanRepository.class, "existsByBookAndNotReturned", bookId);
+
+        //verificação
+        assertThat(plan).contains("UK_LOAN_ACTIVE_BOOK").doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    @DisplayName("Deve usar indice em cada ramo do filtro de emprestimos por isbn ou cliente")
+    public void loanFilterBranchesPlanTest(){
+        //cenario
+        LoanFilterDTO byIsbn = LoanFilterDTO.builder().isbn("123").build();
+        LoanFilterDTO byCustomer = LoanFilterDTO.builder().customer("Fulano").build();
+
+        //execução
+        String isbnPlan = explain(LoanSpecifications.filter(byIsbn).toSpecification(), "123");
+        String customerPlan = explain(LoanSpecifications.filter(byCustomer).toSpecification(), "Fulano");
+
+        //verificação
+        assertThat(isbnPlan).contains("UK_BOOK_ISBN", LOANS_OF_BOOK).doesNotContain(TABLE_SCAN);
+        assertThat(customerPlan).contains("IX_LOAN_CUSTOMER").doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    @DisplayName("Deve usar indice para buscar os emprestimos de um livro")
+    public void findByBookPlanTest(){
+        //cenario
+        Long bookId = 1L;
+
+        //execução
+        String plan = explain(LoanRepository.class, "findByBook", bookId);
+
+        //verificação
+        assertThat(plan).contains(LOANS_OF_BOOK).doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    @DisplayName("Deve usar indice para buscar os emprestimos atrasados")
+    public void lateLoansPlanTest(){
+        //cenario
+        Date threeDaysAgo = Date.valueOf(LocalDate.now().minusDays(3));
+
+        //execução
+        String lateLoansPlan = explain(LoanRepository.class, "findByLoanDateLessThanAndNotReturned", threeDaysAgo);
+        String shardPlan = explain(LoanRepository.class, "streamLateLoans", threeDaysAgo, 1L, 1000L);
+
+        //verificação
+        assertThat(lateLoansPlan).contains("IX_LOAN_DATE_RETURNED").doesNotContain(TABLE_SCAN);
+        // a shard reads its own range of the primary key, the shards of a run never read the same rows
+        assertThat(shardPlan).contains("PRIMARY_KEY", "ID >= ", "ID <= ");
+    }
+
+    @Test
+    @DisplayName("Deve usar indice para buscar o livro pelo isbn")
+    public void findByIsbnPlanTest(){
+        //cenario
+        String isbn = "123";
+
+        //execução
+        String plan = explain("select b from Book b where b.isbn = :isbn", isbn);
+
+        //verificação
+        assertThat(plan).contains("UK_BOOK_ISBN").doesNotContain(TABLE_SCAN);
+    }
+
+    private String explain(Class<?> repository, String method, Object... args) {
+        Method queryMethod = Arrays.stream(repository.getMethods())
+                .filter(candidate -> candidate.getName().equals(method))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(method));
+        // SpEL parameters are bound by Spring Data, here they become plain named parameters
+        String jpql = queryMethod.getAnnotation(Query.class).value().replaceAll(":#\\{[^}]*}", ":param");
+        return explain(jpql, args);
+    }
+
+    private String explain(Specification<Loan> specification, Object... args) {
+        EntityManager entityManager = testEntityManager.getEntityManager();
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Loan> query = cb.createQuery(Loan.class);
+        Root<Loan> root = query.from(Loan.class);
+        query.where(specification.toPredicate(root, query, cb));
+        return explain(entityManager.createQuery(query).unwrap(org.hibernate.query.Query.class).getQueryString(), args);
+    }
+
+    private String explain(String jpql, Object... args) {
+        String[] sql = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getQueryPlanCache()
+                .getHQLQueryPlan(jpql, false, Collections.emptyMap())
+                .getSqlStrings();
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql[0], String.class, args);
+    }
+}
@@ -0,0 +1,24 @@
+package com.labinf.libraryapi.resource;
+
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+
+final class AsyncResults {
+
+    private AsyncResults() {
+    }
+
+    /**
+     * Performs the request and, when the controller answered with a deferred result, the dispatch
+     * that writes it. Requests refused before reaching the controller answer on the first one.
+     */
+    static ResultActions perform(MockMvc mvc, RequestBuilder request) throws Exception {
+        ResultActions actions = mvc.perform(request);
+        MvcResult result = actions.andReturn();
+        return result.getRequest().isAsyncStarted() ? mvc.perform(asyncDispatch(result)) : actions;
+    }
+}
@@ -0,0 +1,73 @@
+package com.labinf.libraryapi.resource;
+
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.generate-unique-name=true")
+public class BookConcurrencyTest {
+
+    static String BOOK_API = "/api/books";
+    static int REQUESTS = 20;
+
+    @Autowired
+    TestRestTemplate rest;
+
+    @Autowired
+    BookRepository repository;
+
+    @Test
+    @DisplayName("Deve cadastrar apenas um livro quando o mesmo isbn é enviado em paralelo")
+    public void createSameIsbnInParallelTest() throws Exception {
+        //cenario
+        BookDTO dto = BookDTO.builder().title("As aventuras").author("Artur").isbn("555").build();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(REQUESTS);
+        List<Future<ResponseEntity<String>>> responses = new ArrayList<>();
+
+        //execução
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                responses.add(executor.submit(() -> {
+                    start.await();
+                    return rest.postForEntity(BOOK_API, dto, String.class);
+                }));
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+        }
+
+        //verificação
+        int created = 0;
+        for (Future<ResponseEntity<String>> response : responses) {
+            ResponseEntity<String> entity = response.get();
+            if (entity.getStatusCode() == HttpStatus.CREATED) {
+                created++;
+            } else {
+                assertThat(entity.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+                assertThat(entity.getBody()).contains("Isbn já cadastrado.");
+            }
+        }
+        assertThat(created).isEqualTo(1);
+        assertThat(repository.findByIsbn("555")).isPresent();
+    }
+}
@@ -2,10 +2,25 @@ package com.labinf.libraryapi.resource;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.labinf.libraryapi.config.AsyncConfig;
+import com.labinf.libraryapi.dto.BatchItemResultDTO;
+import com.labinf.libraryapi.dto.BatchItemStatus;
+import com.labinf.libraryapi.dto.BookAvailabilityDTO;
 import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.dto.BookSnapshotDTO;
+import com.labinf.libraryapi.dto.BooksAvailabilityDTO;
+import com.labinf.libraryapi.dto.BooksAvailabilityRequestDTO;
+import com.labinf.libraryapi.dto.LoansPageDTO;
+import com.labinf.libraryapi.dto.LoansVersionDTO;
+import com.labinf.libraryapi.exceptions.ApiErrors;
 import com.labinf.libraryapi.exceptions.BusinessException;
 import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.model.repository.support.CountedPage;
+import com.labinf.libraryapi.model.repository.support.CountedSlice;
+import com.labinf.libraryapi.model.repository.support.KeysetPage;
 import com.labinf.libraryapi.resource.BookController;
+import com.labinf.libraryapi.service.BookAvailabilityService;
 import com.labinf.libraryapi.service.BookService;
 import com.labinf.libraryapi.service.LoanService;
 import org.hamcrest.Matchers;
@@ -18,9 +33,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -31,15 +50,25 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import javax.swing.*;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
+import static com.labinf.libraryapi.resource.AsyncResults.perform;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @WebMvcTest(controllers = BookController.class)
+@Import(AsyncConfig.class)
 @AutoConfigureMockMvc
 public class BookControllerTest {
 
@@ -54,6 +83,9 @@ public class BookControllerTest {
     @MockBean
     LoanService loanService;
 
+    @MockBean
+    BookAvailabilityService availabilityService;
+
     @Test
     @DisplayName("Deve criar um livro com sucesso.")
     public void createBootTest() throws Exception{
@@ -70,8 +102,7 @@ public class BookControllerTest {
                 .accept(MediaType.APPLICATION_JSON)
                 .content(json);
 
-        mvc
-        .perform(request)
+        perform(mvc, request)
         .andExpect(status().isCreated())
         .andExpect(jsonPath("id").isNotEmpty())
         .andExpect(jsonPath("title").value(dto.getTitle()))
@@ -93,7 +124,7 @@ public class BookControllerTest {
                 .accept(MediaType.APPLICATION_JSON)
                 .content(json);
 
-        mvc.perform(request)
+        perform(mvc, request)
                 .andExpect(status().isBadRequest())
                 .andExpect( jsonPath("errors", hasSize(3)));
 
@@ -115,7 +146,7 @@ public class BookControllerTest {
                 .accept(MediaType.APPLICATION_JSON)
                 .content(json);
 
-        mvc.perform(request).andExpect(status().isBadRequest())
+        perform(mvc, request).andExpect(status().isBadRequest())
                 .andExpect(jsonPath("errors", hasSize(1)))
                 .andExpect(jsonPath("errors[0]").value((mensagemErro)));
 
@@ -127,26 +158,130 @@ public class BookControllerTest {
        //cenario given
         Long id = 1L;
 
-        Book book = Book.builder()
+        BookSnapshotDTO book = BookSnapshotDTO.builder()
                 .id(id)
                 .author(createBook().getAuthor())
                 .isbn(createBook().getIsbn())
                 .title(createBook().getTitle())
+                .version(3L)
                 .build();
 
+        BDDMockito.given(service.getVersion(id)).willReturn(Optional.of(3L));
         BDDMockito.given( service.getById(id)).willReturn(Optional.of(book));
         //execução when
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .get(BOOK_API.concat("/" + id))
                 .accept(MediaType.APPLICATION_JSON);
 
-        mvc.perform(request)
+        perform(mvc, request)
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("id").value(id))
                 .andExpect(jsonPath("title").value(createBook().getTitle()))
                 .andExpect(jsonPath("author").value(createBook().getAuthor()))
-                .andExpect(jsonPath("isbn").value(createBook().getIsbn()));
+                .andExpect(jsonPath("isbn").value(createBook().getIsbn()))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+
+    }
+
+    @Test
+    @DisplayName("Deve responder not modified sem carregar o livro quando a versao nao mudou")
+    public void getBookNotModifiedTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.getVersion(1L)).willReturn(Optional.of(3L));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/" + 1))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .accept(MediaType.APPLICATION_JSON);
+
+        //verificação
+        perform(mvc, request)
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(content().string(""));
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve devolver o livro quando a versao informada estiver desatualizada")
+    public void getBookModifiedTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.getVersion(1L)).willReturn(Optional.of(4L));
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(BookSnapshotDTO.builder().id(1L).title("As aventuras")
+                .author("Artur").isbn("001").version(4L).build()));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/" + 1))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .accept(MediaType.APPLICATION_JSON);
+
+        //verificação
+        perform(mvc, request)
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("id").value(1L));
+    }
+
+    @Test
+    @DisplayName("Deve responder not modified para os emprestimos de um livro sem consulta-los")
+    public void loansByBookNotModifiedTest() throws Exception {
+        //cenario
+        LoansVersionDTO version = LoansVersionDTO.builder().bookVersion(0L).count(2L).lastId(7L).versions(3L).build();
+        AtomicInteger pagesRead = new AtomicInteger();
+        BDDMockito.given(loanService.getLoansByBook(Mockito.eq(1L), Mockito.any(Pageable.class), Mockito.any(CountMode.class), Mockito.any()))
+                .willAnswer(call -> {
+                    Predicate<LoansVersionDTO> unchanged = call.getArgument(3);
+                    if (unchanged.test(version)) {
+                        return Optional.of(new LoansPageDTO(version, null));
+                    }
+                    pagesRead.incrementAndGet();
+                    return Optional.of(new LoansPageDTO(version, new CountedSlice<>(Collections.emptyList(), PageRequest.of(0, 10), false)));
+                });
+        String etag = perform(mvc, MockMvcRequestBuilders.get(BOOK_API.concat("/1/loans?page=0&size=10")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/1/loans?page=0&size=10"))
+                .header(HttpHeaders.IF_NONE_MATCH, etag);
+
+        //verificação
+        assertThat(etag).isNotNull().doesNotStartWith("W/");
+        perform(mvc, request)
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        perform(mvc, MockMvcRequestBuilders.get(BOOK_API.concat("/1/loans?page=1&size=10"))
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        perform(mvc, MockMvcRequestBuilders.get(BOOK_API.concat("/1/loans?page=0&size=10&count=cached")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, Matchers.startsWith("W/\"")));
+        assertThat(pagesRead.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Deve recarregar o livro quando a copia em cache for mais antiga que o banco")
+    public void getBookStaleCacheTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.getVersion(1L)).willReturn(Optional.of(5L));
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(BookSnapshotDTO.builder().id(1L).title("Antigo")
+                .author("Artur").isbn("001").version(4L).build()));
+        BDDMockito.given(service.reload(1L)).willReturn(Optional.of(BookSnapshotDTO.builder().id(1L).title("Novo")
+                .author("Artur").isbn("001").version(5L).build()));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/" + 1))
+                .accept(MediaType.APPLICATION_JSON);
 
+        //verificação
+        perform(mvc, request)
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5\""))
+                .andExpect(jsonPath("title").value("Novo"));
     }
 
     @Test
@@ -161,35 +296,87 @@ public class BookControllerTest {
                 .accept(MediaType.APPLICATION_JSON);
 
         //verificação
-        mvc
-            .perform(request)
+        perform(mvc, request)
             .andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("Deve informar se o livro está disponivel e o seu emprestimo aberto")
+    public void availabilityTest() throws Exception {
+        //cenario
+        BDDMockito.given(availabilityService.getAvailability(1L)).willReturn(Optional.of(new BookAvailabilityDTO(1L, 7L)));
+        BDDMockito.given(availabilityService.getAvailability(2L)).willReturn(Optional.empty());
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/1/availability"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        //verificação
+        perform(mvc, request)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("id").value(1))
+            .andExpect(jsonPath("available").value(false))
+            .andExpect(jsonPath("activeLoanId").value(7));
+        perform(mvc, MockMvcRequestBuilders.get(BOOK_API.concat("/2/availability")))
+            .andExpect(status().isNotFound());
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve informar a disponibilidade de varios livros por id e por isbn")
+    public void bulkAvailabilityTest() throws Exception {
+        //cenario
+        BooksAvailabilityRequestDTO dto = BooksAvailabilityRequestDTO.builder()
+                .ids(Arrays.asList(1L, 2L))
+                .isbns(Collections.singletonList("123"))
+                .build();
+        Map<Long, Boolean> ids = new LinkedHashMap<>();
+        ids.put(1L, true);
+        ids.put(2L, false);
+        BDDMockito.given(availabilityService.getAvailability(dto))
+                .willReturn(BooksAvailabilityDTO.builder().ids(ids).isbns(Collections.singletonMap("123", false)).build());
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/availability"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(dto));
+
+        //verificação
+        perform(mvc, request)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("ids.1").value(true))
+            .andExpect(jsonPath("ids.2").value(false))
+            .andExpect(jsonPath("isbns.123").value(false));
+    }
+
     @Test
     @DisplayName("Deve deletar um livro")
     public void deleteBookTest() throws Exception {
         //cenario
-        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.of(Book.builder().id(1L).build()));
+        BDDMockito.given(service.delete(1L)).willReturn(true);
 
         //execução
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .delete(BOOK_API.concat("/" + 1));
 
         //verificação
-        mvc.perform(request)
+        perform(mvc, request)
                 .andExpect(status().isNoContent());
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
     }
     @Test
     @DisplayName("Deve retornar Not Found para livros nao encontrados")
     public void deleteBookNotFound() throws Exception {
-        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(service.delete(1L)).willReturn(false);
 
         //execução
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .delete(BOOK_API.concat("/" + 1));
 
-        mvc.perform(request)
+        perform(mvc, request)
                 .andExpect(status().isNotFound());
     }
     @Test
@@ -199,11 +386,9 @@ public class BookControllerTest {
         Long id = 1l ;
         BookDTO dto = createBook();
         String json =  new ObjectMapper(). writeValueAsString(dto);
-        Book updatingBook = Book.builder().id(1L).title("Nathalie").author("Vida_loka").isbn("312").build();
-        BDDMockito.given( service.getById(id)).willReturn(Optional.of(updatingBook));
-
-        Book bookUpdated = Book.builder().id(1L).author("Diego").title("TDD").isbn("312").build();
-        BDDMockito.given(service.update(bookUpdated)).willReturn(bookUpdated);
+        Book bookUpdated = Book.builder().id(1L).author("Diego").title("TDD").isbn("312").version(3L).build();
+        BDDMockito.given(service.update(Mockito.eq(id), Mockito.isNull(), Mockito.any(BookDTO.class)))
+                .willReturn(Optional.of(bookUpdated));
         //execução
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .put(BOOK_API.concat("/" + 1))
@@ -211,12 +396,36 @@ public class BookControllerTest {
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON);
 
-        mvc.perform(request)
+        perform(mvc, request)
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("id").value(id))
                 .andExpect(jsonPath("title").value(createBook().getTitle()))
                 .andExpect(jsonPath("author").value(createBook().getAuthor()))
-                .andExpect(jsonPath("isbn").value("312"));
+                .andExpect(jsonPath("isbn").value("312"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve retornar conflito ao atualizar um livro alterado desde a versao informada")
+    public void updateStaleBookTest() throws Exception {
+        //cenario
+        BDDMockito.given(service.update(Mockito.eq(1L), Mockito.any(), Mockito.any(BookDTO.class)))
+                .willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1L));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/" + 1))
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .content(new ObjectMapper().writeValueAsString(createBook()))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        //verificação
+        perform(mvc, request)
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("errors[0]").value(ApiErrors.CONCURRENT_UPDATE));
+        Mockito.verify(service).update(Mockito.eq(1L), Mockito.eq(2L), Mockito.argThat(details -> details.getTitle().equals(createBook().getTitle())));
     }
 
     @Test
@@ -224,7 +433,7 @@ public class BookControllerTest {
     public void updatebookTestNotFound() throws Exception {
         //cenario
         String json = new ObjectMapper().writeValueAsString(createBook());
-        BDDMockito.given(service.getById(Mockito.anyLong())).
+        BDDMockito.given(service.update(Mockito.anyLong(), Mockito.any(), Mockito.any(BookDTO.class))).
                 willReturn(Optional.empty());
 
         //execução
@@ -235,7 +444,7 @@ public class BookControllerTest {
                 .contentType(MediaType.APPLICATION_JSON);
 
         //verificação
-        mvc.perform(request)
+        perform(mvc, request)
                 .andExpect(status().isNotFound());
     }
 
@@ -244,9 +453,10 @@ public class BookControllerTest {
     public void findBookTest() throws Exception {
         //cenario
         Long id = 1L;
-        Book book = Book.builder().id(id).title(createBook().getTitle()).author(createBook().getAuthor()).isbn(createBook().getIsbn()).build();
-        BDDMockito.given( service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
-                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 100), 1) );
+        BookDTO book = createBook();
+        book.setId(id);
+        BDDMockito.given( service.find(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.eq(CountMode.EXACT)))
+                .willReturn(new CountedPage<BookDTO>(Arrays.asList(book), PageRequest.of(0, 100), 1, CountMode.EXACT) );
 
         String queryString = String.format("?title=%s&author=%s&page=0&size=100", book.getTitle(), book.getTitle());
 
@@ -254,13 +464,104 @@ public class BookControllerTest {
                 .get(BOOK_API.concat(queryString))
                 .accept(MediaType.APPLICATION_JSON);
 
-        mvc
-                .perform(request)
+        perform(mvc, request)
                 .andExpect( status().isOk())
                 .andExpect(jsonPath("content", Matchers.hasSize(1)))
                 .andExpect(jsonPath("totalElements").value(1))
                 .andExpect(jsonPath("pageable.pageSize").value(100))
-                .andExpect(jsonPath("pageable.pageNumber").value(0));
+                .andExpect(jsonPath("pageable.pageNumber").value(0))
+                .andExpect(jsonPath("countMode").value("EXACT"));
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros sem contar o total quando solicitado")
+    public void findBookWithoutCountTest() throws Exception {
+        //cenario
+        BookDTO book = createBook();
+        book.setId(1L);
+        BDDMockito.given( service.find(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.eq(CountMode.NONE)))
+                .willReturn(new CountedSlice<BookDTO>(Arrays.asList(book), PageRequest.of(0, 1), true) );
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?title=TDD&page=0&size=1&count=none"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        perform(mvc, request)
+                .andExpect( status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("hasNext").value(true))
+                .andExpect(jsonPath("countMode").value("NONE"))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve pesquisar livros por texto")
+    public void searchBookTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1L).title(createBook().getTitle()).author(createBook().getAuthor()).isbn(createBook().getIsbn()).build();
+        BDDMockito.given(service.search(Mockito.eq("tdd die*"), Mockito.any(Pageable.class)))
+                .willReturn(new CountedPage<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1, CountMode.EXACT));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?q=tdd die*"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        perform(mvc, request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(1))
+                .andExpect(jsonPath("totalElements").value(1));
+        Mockito.verify(service, Mockito.never()).find(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.any(CountMode.class));
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros por cursor")
+    public void findBookAfterTest() throws Exception {
+        //cenario
+        Book book = Book.builder().id(1L).title(createBook().getTitle()).author(createBook().getAuthor()).isbn(createBook().getIsbn()).build();
+        BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.eq(""), Mockito.eq(Sort.by("title")), Mockito.eq(10)))
+                .willReturn(new KeysetPage<>(Arrays.asList(book), 10, "next-token"));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?title=TDD&after=&size=10&sort=title"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        perform(mvc, request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(1))
+                .andExpect(jsonPath("size").value(10))
+                .andExpect(jsonPath("next").value("next-token"))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+        Mockito.verify(service, Mockito.never()).find(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.any(CountMode.class));
+    }
+
+    @Test
+    @DisplayName("Deve importar livros em lote informando o resultado de cada item")
+    public void createBatchTest() throws Exception {
+        //cenario
+        BookDTO valid = createBook();
+        BookDTO invalid = BookDTO.builder().isbn("002").build();
+        BDDMockito.given(service.saveBatch(Mockito.anyList())).willReturn(Arrays.asList(
+                BatchItemResultDTO.builder().index(0).key("001").status(BatchItemStatus.CREATED).id(1L).build()));
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(invalid, valid));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        //verificação
+        perform(mvc, request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("[0].status").value("INVALID"))
+                .andExpect(jsonPath("[0].errors", hasSize(2)))
+                .andExpect(jsonPath("[1].index").value(1))
+                .andExpect(jsonPath("[1].status").value("CREATED"))
+                .andExpect(jsonPath("[1].id").value(1));
     }
 
     private BookDTO createBook() {
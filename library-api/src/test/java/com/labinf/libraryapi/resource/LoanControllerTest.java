@@ -4,11 +4,18 @@ package com.labinf.libraryapi.resource;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.labinf.libraryapi.api.dto.LoanDTO;
 import com.labinf.libraryapi.api.dto.LoanDto;
+import com.labinf.libraryapi.config.AsyncConfig;
+import com.labinf.libraryapi.dto.BatchItemResultDTO;
+import com.labinf.libraryapi.dto.BatchItemStatus;
+import com.labinf.libraryapi.dto.BookSnapshotDTO;
 import com.labinf.libraryapi.dto.LoanFilterDTO;
 import com.labinf.libraryapi.dto.ReturnedLoanDTO;
+import com.labinf.libraryapi.exceptions.ApiErrors;
 import com.labinf.libraryapi.exceptions.BusinessException;
 import com.labinf.libraryapi.model.entity.Book;
 import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.model.repository.support.CountedPage;
 import com.labinf.libraryapi.service.BookService;
 import com.labinf.libraryapi.service.LoanService;
 import org.hamcrest.Matchers;
@@ -21,10 +28,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
@@ -33,9 +43,12 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 
+import static com.labinf.libraryapi.resource.AsyncResults.perform;
 import static com.labinf.libraryapi.resource.BookControllerTest.BOOK_API;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -44,6 +57,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test")
 @AutoConfigureMockMvc
 @WebMvcTest(controllers = LoanController.class)
+@Import(AsyncConfig.class)
 public class LoanControllerTest {
 
     static final String LOAN_API ="/api/loans" ;
@@ -65,7 +79,7 @@ public class LoanControllerTest {
         String json = new ObjectMapper().writeValueAsString(dto);
         Book book = Book.builder().id(1L).isbn("123").build();
         BDDMockito.given(bookService.getBookByIsbn("123"))
-                .willReturn(Optional.of(book));
+                .willReturn(Optional.of(BookSnapshotDTO.of(book)));
         Loan loan = Loan.builder().id(1L).customer("Fulano").book(book).loanDate(LocalDate.now()).build();
         BDDMockito.given(loanService.save(Mockito.any(Loan.class))).willReturn(loan);
 
@@ -74,7 +88,7 @@ public class LoanControllerTest {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json);
 
-        mvc.perform(request)
+        perform(mvc, request)
                 .andExpect( status().isCreated() )
                 .andExpect(content().string("1"));
     }
@@ -94,7 +108,7 @@ public class LoanControllerTest {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json);
 
-        mvc.perform(request)
+        perform(mvc, request)
                 .andExpect( status().isBadRequest() )
                 .andExpect(jsonPath("errors", Matchers.hasSize(1)))
                 .andExpect(jsonPath("errors[0]").value("Book not found for passed isbn"));
@@ -110,7 +124,7 @@ public class LoanControllerTest {
 
         Book book = Book.builder().id(1L).isbn("123").build();
         BDDMockito.given(bookService.getBookByIsbn("123"))
-                .willReturn(Optional.of(book));
+                .willReturn(Optional.of(BookSnapshotDTO.of(book)));
 
         BDDMockito.given(loanService.save(Mockito.any(Loan.class))).willThrow(new BusinessException("Book already loaned"));
 
@@ -119,7 +133,7 @@ public class LoanControllerTest {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json);
 
-        mvc.perform(request)
+        perform(mvc, request)
                 .andExpect( status().isBadRequest() )
                 .andExpect(jsonPath("errors", Matchers.hasSize(1)))
                 .andExpect(jsonPath("errors[0]").value("Book already loaned"));
@@ -130,20 +144,40 @@ public class LoanControllerTest {
     public void returnBookTest() throws Exception{
         //cenario
         ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
-        Loan loan = Loan.builder().id(1L).build();
-        BDDMockito.given(loanService.getById(Mockito.anyLong()))
-                .willReturn(Optional.of(loan));
+        BDDMockito.given(loanService.markReturned(1L, 4L, true))
+                .willReturn(Optional.of(5L));
         String json = new ObjectMapper().writeValueAsString(dto);
 
         //verificação
-        mvc.perform(
+        perform(mvc,
                 patch(LOAN_API.concat("/1"))
+                .header(HttpHeaders.IF_MATCH, "\"4\"")
                 .accept(MediaType.APPLICATION_JSON)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(json)
-        ).andExpect(status().isOk()) ;
+        ).andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5\""));
 
-        Mockito.verify(loanService, Mockito.times(1)).update(loan);
+        Mockito.verify(loanService, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve retornar conflito ao devolver um empréstimo alterado desde a versao informada")
+    public void returnStaleLoanTest() throws Exception{
+        //cenario
+        BDDMockito.given(loanService.markReturned(1L, 4L, true))
+                .willThrow(new ObjectOptimisticLockingFailureException(Loan.class, 1L));
+        String json = new ObjectMapper().writeValueAsString(ReturnedLoanDTO.builder().returned(true).build());
+
+        //verificação
+        perform(mvc,
+                patch(LOAN_API.concat("/1"))
+                        .header(HttpHeaders.IF_MATCH, "\"4\"")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+        ).andExpect(status().isConflict())
+                .andExpect(jsonPath("errors[0]").value(ApiErrors.CONCURRENT_UPDATE));
     }
 
     @Test
@@ -151,13 +185,12 @@ public class LoanControllerTest {
     public void returnInexistentBookTest() throws Exception{
         //cenario
         ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
-        Loan loan = Loan.builder().id(1L).build();
-        BDDMockito.given(loanService.getById(Mockito.anyLong()))
+        BDDMockito.given(loanService.markReturned(1L, null, true))
                 .willReturn(Optional.empty());
         String json = new ObjectMapper().writeValueAsString(dto);
 
         //verificação
-        mvc.perform(
+        perform(mvc,
                 patch(LOAN_API.concat("/1"))
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON)
@@ -173,10 +206,11 @@ public class LoanControllerTest {
 
         Loan loan = createLoan();
         loan.setId(id);
+        LoanDTO row = new LoanDTO(id, loan.getCustomer(), loan.getCustomerEmail(),
+                loan.getBook().getId(), loan.getBook().getTitle(), loan.getBook().getAuthor(), loan.getBook().getIsbn());
 
-
-        BDDMockito.given( loanService.find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
-                .willReturn(new PageImpl<Loan>(Arrays.asList(loan), PageRequest.of(0, 10), 1) );
+        BDDMockito.given( loanService.find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class), Mockito.eq(CountMode.EXACT)))
+                .willReturn(new CountedPage<LoanDTO>(Arrays.asList(row), PageRequest.of(0, 10), 1, CountMode.EXACT) );
 
         String queryString = String.format("?isbn=%s&acustomer=%s&page=0&size=10", loan.getBook().getIsbn(), loan.getCustomer());
 
@@ -184,15 +218,67 @@ public class LoanControllerTest {
                 .get(LOAN_API.concat(queryString))
                 .accept(MediaType.APPLICATION_JSON);
 
-        mvc
-                .perform(request)
+        perform(mvc, request)
                 .andExpect( status().isOk())
                 .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].book.isbn").value(loan.getBook().getIsbn()))
                 .andExpect(jsonPath("totalElements").value(1))
                 .andExpect(jsonPath("pageable.pageSize").value(10))
                 .andExpect(jsonPath("pageable.pageNumber").value(0));
     }
 
+    @Test
+    @DisplayName("Deve realizar emprestimos em lote informando o resultado de cada item")
+    public void createBatchLoanTest() throws Exception {
+        //cenario
+        LoanDTO valid = LoanDTO.builder().isbn("123").email("customer@email.com.br").customer("Fulana").build();
+        LoanDTO invalid = LoanDTO.builder().isbn("456").build();
+        BDDMockito.given(loanService.saveBatch(Mockito.anyList())).willReturn(Arrays.asList(
+                BatchItemResultDTO.builder().index(0).key("123").status(BatchItemStatus.CREATED).id(1L).build()));
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(invalid, valid));
+
+        //execução
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(LOAN_API.concat("/batch"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        //verificação
+        perform(mvc, request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(2)))
+                .andExpect(jsonPath("[0].status").value("INVALID"))
+                .andExpect(jsonPath("[0].errors", Matchers.hasSize(2)))
+                .andExpect(jsonPath("[1].index").value(1))
+                .andExpect(jsonPath("[1].status").value("CREATED"))
+                .andExpect(jsonPath("[1].id").value(1));
+        Mockito.verify(loanService).saveBatch(Collections.singletonList(valid));
+    }
+
+    @Test
+    @DisplayName("Deve devolver livros em lote informando o resultado de cada item")
+    public void returnBatchTest() throws Exception {
+        //cenario
+        List<ReturnedLoanDTO> dtos = Arrays.asList(
+                ReturnedLoanDTO.builder().returned(true).build(),
+                ReturnedLoanDTO.builder().id(1L).returned(true).build());
+        BDDMockito.given(loanService.returnBatch(Mockito.anyList())).willReturn(Arrays.asList(
+                BatchItemResultDTO.builder().index(0).key("1").status(BatchItemStatus.UPDATED).id(1L).build()));
+        String json = new ObjectMapper().writeValueAsString(dtos);
+
+        //verificação
+        perform(mvc,
+                patch(LOAN_API.concat("/batch"))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json)
+        ).andExpect(status().isOk())
+                .andExpect(jsonPath("[0].status").value("INVALID"))
+                .andExpect(jsonPath("[1].index").value(1))
+                .andExpect(jsonPath("[1].status").value("UPDATED"));
+        Mockito.verify(loanService, Mockito.never()).getById(Mockito.anyLong());
+    }
+
     private Loan createLoan(){
         Book book = Book.builder().id(1L).isbn("321").build();
         String customer = "Fulano";
@@ -0,0 +1,116 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.config.JpaConfig;
+import com.labinf.libraryapi.dto.BookAvailabilityDTO;
+import com.labinf.libraryapi.dto.BooksAvailabilityDTO;
+import com.labinf.libraryapi.dto.BooksAvailabilityRequestDTO;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.service.availability.LoanedBooks;
+import com.labinf.libraryapi.service.cache.BookCacheEvictor;
+import com.labinf.libraryapi.service.impl.BookAvailabilityServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(JpaConfig.class)
+public class BookAvailabilityServiceTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    BookRepository repository;
+
+    LoanedBooks loanedBooks;
+
+    BookAvailabilityService service;
+
+    @BeforeEach
+    public void setUp(){
+        loanedBooks = new LoanedBooks();
+        service = new BookAvailabilityServiceImpl(repository, loanedBooks, new BookCacheEvictor(repository, new NoOpCacheManager()), 2);
+    }
+
+    @Test
+    @DisplayName("Deve informar a disponibilidade dos livros por id e por isbn a partir dos livros emprestados")
+    public void bulkAvailabilityTest(){
+        //cenario
+        Book loaned = persistBook("1");
+        Book onShelf = persistBook("2");
+        loanedBooks.loaned(loaned.getId());
+        BooksAvailabilityRequestDTO request = BooksAvailabilityRequestDTO.builder()
+                .ids(Arrays.asList(onShelf.getId(), loaned.getId()))
+                .isbns(Arrays.asList("2", "unknown", "1"))
+                .build();
+
+        //execução
+        BooksAvailabilityDTO availability = service.getAvailability(request);
+
+        //verificação
+        assertThat(availability.getIds()).containsExactly(entry(onShelf.getId(), true), entry(loaned.getId(), false));
+        assertThat(availability.getIsbns()).containsExactly(entry("2", true), entry("1", false));
+    }
+
+    @Test
+    @DisplayName("Deve corrigir os livros cujo emprestimo aberto diverge da tabela de emprestimos")
+    public void reconcileTest(){
+        //cenario
+        Book missing = persistBook("1");
+        Loan open = persistLoan(missing, null);
+        Book stale = persistBook("2");
+        Loan returned = persistLoan(stale, true);
+        repository.claim(stale.getId(), returned.getId());
+        Book wrong = persistBook("3");
+        Loan other = persistLoan(wrong, null);
+        repository.claim(wrong.getId(), open.getId());
+        Book consistent = persistBook("4");
+        Loan current = persistLoan(consistent, null);
+        repository.claim(consistent.getId(), current.getId());
+        Book onShelf = persistBook("5");
+
+        //execução
+        int repaired = service.reconcile();
+        int again = service.reconcile();
+
+        //verificação
+        assertThat(repaired).isEqualTo(3);
+        assertThat(again).isZero();
+        assertThat(activeLoanOf(missing)).isEqualTo(open.getId());
+        assertThat(activeLoanOf(stale)).isNull();
+        assertThat(activeLoanOf(wrong)).isEqualTo(other.getId());
+        assertThat(activeLoanOf(consistent)).isEqualTo(current.getId());
+        assertThat(activeLoanOf(onShelf)).isNull();
+    }
+
+    private Long activeLoanOf(Book book) {
+        return service.getAvailability(book.getId()).map(BookAvailabilityDTO::getActiveLoanId).orElse(null);
+    }
+
+    private Book persistBook(String isbn) {
+        return entityManager.persistAndFlush(Book.builder().author("Diego").title("TDD").isbn(isbn).build());
+    }
+
+    private Loan persistLoan(Book book, Boolean returned) {
+        return entityManager.persistAndFlush(Loan.builder().book(book).customer("Fulano")
+                .loanDate(LocalDate.now()).returned(returned).build());
+    }
+}
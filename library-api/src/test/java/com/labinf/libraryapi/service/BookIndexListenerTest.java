@@ -0,0 +1,77 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.config.JpaConfig;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.service.search.BookIndexListener;
+import com.labinf.libraryapi.service.search.BookSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({JpaConfig.class, BookSearchIndex.class, BookIndexListener.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BookIndexListenerTest {
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    BookSearchIndex searchIndex;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void tearDown(){
+        repository.deleteAll();
+        searchIndex.clear();
+    }
+
+    @Test
+    @DisplayName("Deve indexar o livro salvo, atualizado e removido depois do commit")
+    public void indexAfterCommitTest(){
+        //execução
+        Book book = repository.save(Book.builder().title("Clean Code").author("Robert Martin").isbn("123").build());
+
+        //verificação
+        assertThat(searchIndex.search("clean")).containsExactly(book.getId());
+
+        book.setTitle("Clean Architecture");
+        book = repository.save(book);
+        assertThat(searchIndex.search("code")).isEmpty();
+        assertThat(searchIndex.search("architecture")).containsExactly(book.getId());
+
+        repository.delete(book);
+        assertThat(searchIndex.search("clean")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Não deve indexar o livro quando a transação for desfeita")
+    public void rollbackTest(){
+        //execução
+        new TransactionTemplate(transactionManager).execute(status -> {
+            repository.save(Book.builder().title("Clean Code").author("Robert Martin").isbn("123").build());
+            status.setRollbackOnly();
+            return null;
+        });
+
+        //verificação
+        assertThat(searchIndex.search("clean")).isEmpty();
+    }
+}
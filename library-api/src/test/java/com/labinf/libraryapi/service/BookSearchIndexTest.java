@@ -0,0 +1,65 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.service.search.BookSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookSearchIndexTest {
+
+    BookSearchIndex index;
+
+    @BeforeEach
+    public void setUp(){
+        index = new BookSearchIndex();
+        index.index(Book.builder().id(1L).title("Test Driven Development").author("Kent Beck").isbn("978-0321146533").build());
+        index.index(Book.builder().id(2L).title("Refactoring").author("Martin Fowler").isbn("978-0134757599").build());
+        index.index(Book.builder().id(3L).title("Extreme Programming Explained").author("Kent Beck").isbn("978-0321278654").build());
+        index.index(Book.builder().id(4L).title("Padrões de Projeto").author("Erich Gamma").isbn("978-8573076103").build());
+    }
+
+    @Test
+    @DisplayName("Deve encontrar livros com todos os termos pesquisados")
+    public void searchAllTermsTest(){
+        assertThat(index.search("kent beck")).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(index.search("kent fowler")).isEmpty();
+        assertThat(index.search("   ")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve ordenar pelo campo onde o termo foi encontrado")
+    public void rankingTest(){
+        //cenario
+        index.index(Book.builder().id(5L).title("Beck").author("Someone").isbn("5").build());
+
+        //verificação
+        assertThat(index.search("beck")).containsExactly(5L, 1L, 3L);
+    }
+
+    @Test
+    @DisplayName("Deve pesquisar por prefixo, sem acentos e pelo isbn sem separadores")
+    public void prefixAccentIsbnTest(){
+        assertThat(index.search("refact*")).containsExactly(2L);
+        assertThat(index.search("refact")).isEmpty();
+        assertThat(index.search("PADROES")).containsExactly(4L);
+        assertThat(index.search("9780134757599")).containsExactly(2L);
+        assertThat(index.search("978-0321*")).containsExactlyInAnyOrder(1L, 3L);
+    }
+
+    @Test
+    @DisplayName("Deve atualizar e remover livros do indice")
+    public void updateAndRemoveTest(){
+        //execução
+        index.index(Book.builder().id(2L).title("Refatoração").author("Martin Fowler").isbn("978-8575227244").build());
+        index.remove(1L);
+
+        //verificação
+        assertThat(index.search("refactoring")).isEmpty();
+        assertThat(index.search("refatoracao")).containsExactly(2L);
+        assertThat(index.search("kent")).containsExactly(3L);
+        assertThat(index.size()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,148 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.config.CacheConfig;
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.dto.BookSnapshotDTO;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.service.cache.BookCacheEvictor;
+import com.labinf.libraryapi.service.impl.BookServiceImpl;
+import com.labinf.libraryapi.service.paging.PageCounter;
+import com.labinf.libraryapi.service.search.BookIndexListener;
+import com.labinf.libraryapi.service.search.BookSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(classes = {CacheConfig.class, BookServiceImpl.class, BookCacheEvictor.class},
+        properties = {"spring.cache.type=caffeine", "spring.cache.cache-names=books,booksByIsbn"})
+@ImportAutoConfiguration(CacheAutoConfiguration.class)
+public class BookServiceCacheTest {
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    BookCacheEvictor evictor;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @MockBean
+    BookRepository repository;
+
+    @MockBean
+    EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    PageCounter pageCounter;
+
+    @MockBean
+    BookSearchIndex searchIndex;
+
+    @MockBean
+    BookIndexListener indexListener;
+
+    @BeforeEach
+    public void setUp(){
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    @DisplayName("Deve buscar o livro no banco apenas uma vez por id e por isbn")
+    public void cacheLookupsTest(){
+        //cenario
+        Book book = Book.builder().id(1L).isbn("123").title("TDD").author("Diego").build();
+        when(repository.findById(1L)).thenReturn(Optional.of(book));
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+
+        //execução
+        service.getById(1L);
+        service.getById(1L);
+        service.getBookByIsbn("123");
+        Optional<BookSnapshotDTO> found = service.getBookByIsbn("123");
+
+        //verificação
+        assertThat(found).contains(BookSnapshotDTO.of(book));
+        assertThat(service.getById(1L)).contains(BookSnapshotDTO.of(book));
+        verify(repository, times(1)).findById(1L);
+        verify(repository, times(1)).findByIsbn("123");
+    }
+
+    @Test
+    @DisplayName("Nao deve guardar no cache livros inexistentes")
+    public void cacheMissTest(){
+        when(repository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThat(service.getById(1L)).isEmpty();
+        assertThat(service.getById(1L)).isEmpty();
+
+        verify(repository, times(2)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("Deve invalidar o cache ao atualizar e ao deletar um livro")
+    public void evictOnWriteTest(){
+        //cenario
+        Book book = Book.builder().id(1L).isbn("123").title("TDD").author("Diego").version(0L).build();
+        when(repository.findById(1L)).thenReturn(Optional.of(book));
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+        when(repository.updateDetails(1L, 0L, "Clean Code", "Bob")).thenReturn(1);
+        when(repository.findIsbnsById(Collections.singleton(1L))).thenReturn(Collections.singleton("123"));
+        when(repository.deleteBook(1L)).thenReturn(1);
+        service.getById(1L);
+        service.getBookByIsbn("123");
+
+        //execução
+        service.update(1L, 0L, BookDTO.builder().title("Clean Code").author("Bob").build());
+        service.getById(1L);
+        service.getBookByIsbn("123");
+        service.delete(1L);
+        service.getById(1L);
+        service.getBookByIsbn("123");
+
+        //verificação
+        assertThat(book.getTitle()).isEqualTo("TDD");
+        verify(repository, times(4)).findById(1L);
+        verify(repository, times(3)).findByIsbn("123");
+    }
+
+    @Test
+    @DisplayName("Deve invalidar o cache quando um emprestimo altera o livro")
+    public void evictOnLoanWriteTest(){
+        //cenario
+        Book book = Book.builder().id(1L).isbn("123").title("TDD").author("Diego").version(0L).build();
+        when(repository.findById(1L)).thenReturn(Optional.of(book));
+        when(repository.findByIsbn("123")).thenReturn(Optional.of(book));
+        when(repository.findIsbnsById(Collections.singleton(1L))).thenReturn(Collections.singleton("123"));
+        service.getById(1L);
+        service.getBookByIsbn("123");
+
+        //execução
+        evictor.evict(Collections.singleton(1L));
+        service.getById(1L);
+        service.getBookByIsbn("123");
+
+        //verificação
+        verify(repository, times(2)).findById(1L);
+        verify(repository, times(2)).findByIsbn("123");
+    }
+}
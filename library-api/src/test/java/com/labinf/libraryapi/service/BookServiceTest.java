@@ -1,29 +1,49 @@
 package com.labinf.libraryapi.service;
 
+import com.labinf.libraryapi.dto.BatchItemResultDTO;
+import com.labinf.libraryapi.dto.BatchItemStatus;
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.dto.BookSnapshotDTO;
 import com.labinf.libraryapi.exceptions.BusinessException;
 import com.labinf.libraryapi.model.entity.Book;
 import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.service.cache.BookCacheEvictor;
 import com.labinf.libraryapi.service.impl.BookServiceImpl;
+import com.labinf.libraryapi.service.paging.PageCounter;
+import com.labinf.libraryapi.service.search.BookIndexListener;
+import com.labinf.libraryapi.service.search.BookSearchIndex;
 
 import org.assertj.core.api.Assertions;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import javax.persistence.EntityManager;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(SpringExtension.class)
@@ -35,9 +55,18 @@ public class BookServiceTest {
     @MockBean
     BookRepository repository;
 
+    @MockBean
+    BookSearchIndex searchIndex;
+
+    @MockBean
+    BookIndexListener indexListener;
+
+    @MockBean
+    BookCacheEvictor bookCacheEvictor;
+
     @BeforeEach
     public void setUp(){
-        this.service = new BookServiceImpl(repository) ;
+        this.service = new BookServiceImpl(repository, new PageCounter(Duration.ofMinutes(1), 1000), searchIndex, indexListener, bookCacheEvictor) ;
     }
 
     @Test
@@ -45,8 +74,7 @@ public class BookServiceTest {
     public void saveBookTest(){
         //cenario
         Book book = createBook();
-        when(repository.existsByIsbn(anyString())).thenReturn(false);
-        when(repository.save(book)).thenReturn(
+        when(repository.saveAndFlush(book)).thenReturn(
                 Book.builder()
                         .isbn("001")
                         .title("TDD")
@@ -72,7 +100,8 @@ public class BookServiceTest {
     public void shouldNotSaveBookWithDuplicatedISBN(){
         //cenario
         Book book = createBook();
-        when(repository.existsByIsbn(anyString())).thenReturn(true);
+        when(repository.saveAndFlush(book)).thenThrow(new DataIntegrityViolationException("duplicated",
+                new ConstraintViolationException("duplicated", null, "PUBLIC.UK_BOOK_ISBN_INDEX_1")));
 
         //execução
         Throwable throwable = Assertions.catchThrowable(() -> service.save(book));
@@ -82,9 +111,25 @@ public class BookServiceTest {
                 .isInstanceOf(BusinessException.class)
                 .hasMessage("Isbn já cadastrado.");
 
-        verify(repository, never()).save(book);
+        verify(repository, never()).existsByIsbn(anyString());
 
     }
+
+    @Test
+    @DisplayName("Deve propagar violações de integridade que não sejam do isbn")
+    public void shouldRethrowOtherIntegrityViolations(){
+        //cenario
+        Book book = createBook();
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("not null",
+                new ConstraintViolationException("not null", null, null));
+        when(repository.saveAndFlush(book)).thenThrow(violation);
+
+        //execução
+        Throwable throwable = Assertions.catchThrowable(() -> service.save(book));
+
+        //verificação
+        assertThat(throwable).isSameAs(violation);
+    }
     @Test
     @DisplayName("Deve retornar livro por id")
     public void getByIdTest(){
@@ -96,7 +141,7 @@ public class BookServiceTest {
         when(repository.findById(id)).thenReturn(Optional.of(book));
 
         //execução
-        Optional<Book> foundBook = service.getById(id);
+        Optional<BookSnapshotDTO> foundBook = service.getById(id);
 
         //verefificações
         assertThat(foundBook.isPresent()).isTrue();
@@ -114,7 +159,7 @@ public class BookServiceTest {
         when(repository.findById(anyLong())).thenReturn(Optional.empty());
 
         //execução
-        Optional<Book> foundBook = service.getById(anyLong());
+        Optional<BookSnapshotDTO> foundBook = service.getById(anyLong());
 
         //verefificações
         assertThat(foundBook.isPresent()).isFalse();
@@ -125,45 +170,113 @@ public class BookServiceTest {
     public void deleteBookTest(){
         //cenario
         Long id = 1L;
-        Book book = createBook();
-        book.setId(id);
+        when(repository.deleteBook(id)).thenReturn(1);
+
+        //execução
+        boolean deleted = service.delete(id);
+
+        //verificação
+        assertThat(deleted).isTrue();
+        verify(bookCacheEvictor, times(1)).evict(Collections.singleton(id));
+        verify(repository, times(1)).deleteBook(id);
+        verify(repository, never()).findById(Mockito.anyLong());
+        verify(indexListener, times(1)).removed(Mockito.argThat(book -> id.equals(book.getId())));
+    }
+
+    @Test
+    @DisplayName("Delete deve retornar false para livro inexistente")
+    public void deleteBookNotFoundTest(){
+        //cenario
+        when(repository.deleteBook(1L)).thenReturn(0);
 
         //execução
-        org.junit.jupiter.api.Assertions.assertDoesNotThrow( () -> service.delete(book));
+        boolean deleted = service.delete(1L);
 
         //verificação
-        verify(repository, times(1)).delete(book);
+        assertThat(deleted).isFalse();
+        verify(indexListener, never()).removed(Mockito.any());
     }
 
     @Test
     @DisplayName("Delete Deve lançar IllegalArgumentsException")
     public void invalidDeleteBookTest(){
         //cenario
-        Book book = new Book();
+        Long id = null;
 
         //execução
-        org.junit.jupiter.api.Assertions.assertThrows(IllegalArgumentException.class, () -> service.delete(book));
+        org.junit.jupiter.api.Assertions.assertThrows(IllegalArgumentException.class, () -> service.delete(id));
 
         //verificação
-        verify(repository, never()).delete(book);
+        verify(repository, never()).deleteBook(Mockito.any());
     }
 
     @Test
     @DisplayName("Deve atualizar um livro")
     public void updateBookTest(){
         //cenario
-        Book oldBook = Book.builder().id(1L).build();
-        Book newBook = createBook();
-        when(service.update(oldBook)).thenReturn(newBook);
+        BookDTO details = BookDTO.builder().title("TDD").author("Diego").build();
+        Book written = Book.builder().id(1L).title("TDD").author("Diego").isbn("123").version(3L).build();
+        when(repository.updateDetails(1L, 2L, "TDD", "Diego")).thenReturn(1);
+        when(repository.findById(1L)).thenReturn(Optional.of(written));
+
+        //execução
+        Optional<Book> book = service.update(1L, 2L, details);
+
+        //verificação
+        assertThat(book).contains(written);
+        verify(repository, never()).findVersionById(Mockito.anyLong());
+        verify(repository, never()).save(Mockito.any(Book.class));
+        verify(indexListener).saved(written);
+    }
+
+    @Test
+    @DisplayName("Deve atualizar um livro na versao atual do banco quando nenhuma for informada")
+    public void updateBookCurrentVersionTest(){
+        //cenario
+        BookDTO details = BookDTO.builder().title("TDD").author("Diego").build();
+        when(repository.findVersionById(1L)).thenReturn(Optional.of(5L));
+        when(repository.updateDetails(1L, 5L, "TDD", "Diego")).thenReturn(1);
+        when(repository.findById(1L)).thenReturn(Optional.of(Book.builder().id(1L).version(6L).build()));
+
+        //execução
+        Optional<Book> book = service.update(1L, null, details);
+
+        //verificação
+        assertThat(book).hasValueSatisfying(updated -> assertThat(updated.getVersion()).isEqualTo(6L));
+        verify(repository).updateDetails(1L, 5L, "TDD", "Diego");
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de concorrencia ao atualizar um livro com versao desatualizada")
+    public void updateStaleBookTest(){
+        //cenario
+        BookDTO details = BookDTO.builder().title("TDD").author("Diego").build();
+        when(repository.updateDetails(1L, 2L, "TDD", "Diego")).thenReturn(0);
+        when(repository.existsById(1L)).thenReturn(true);
+
+        //execução
+        Throwable exception = catchThrowable(() -> service.update(1L, 2L, details));
+
+        //verificação
+        assertThat(exception).isInstanceOf(OptimisticLockingFailureException.class);
+        verify(repository, never()).findById(1L);
+        verify(indexListener, never()).saved(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Nao deve atualizar um livro inexistente")
+    public void updateMissingBookTest(){
+        //cenario
+        BookDTO details = BookDTO.builder().title("TDD").author("Diego").build();
+        when(repository.updateDetails(1L, 2L, "TDD", "Diego")).thenReturn(0);
+        when(repository.existsById(1L)).thenReturn(false);
 
         //execução
-        Book book = service.update(oldBook);
+        Optional<Book> book = service.update(1L, 2L, details);
 
         //verificação
-        assertThat(book.getId()).isEqualTo(newBook.getId());
-        assertThat(book.getTitle()).isEqualTo(newBook.getTitle());
-        assertThat(book.getAuthor()).isEqualTo(newBook.getAuthor());
-        assertThat(book.getIsbn()).isEqualTo(newBook.getIsbn());
+        assertThat(book).isEmpty();
+        verify(indexListener, never()).saved(Mockito.any(Book.class));
     }
 
     @Test
@@ -171,14 +284,14 @@ public class BookServiceTest {
     public void notUpdateBookTest(){
 
         //cenario
-        Book book = new Book();
+        BookDTO details = new BookDTO();
 
         //execução
-        org.junit.jupiter.api.Assertions.assertThrows(IllegalArgumentException.class, () -> service.update(book));
+        org.junit.jupiter.api.Assertions.assertThrows(IllegalArgumentException.class, () -> service.update(null, 1L, details));
 
 
         //verificação
-        verify(repository, never()).save(book);
+        verify(repository, never()).updateDetails(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
 
     }
 
@@ -188,11 +301,11 @@ public class BookServiceTest {
         //cenario
         Book book = createBook();
         PageRequest pageRequest = PageRequest.of(0, 10);
-        List<Book> list = Arrays.asList(book);
-        Page<Book> page = new PageImpl<Book>(list, pageRequest, 1);
-        when( repository.findAll(any(Example.class), any(PageRequest.class))).thenReturn(page);
+        List<BookDTO> list = Arrays.asList(BookDTO.builder().id(10L).title("TDD").author("Diego").isbn("001").build());
+        Slice<BookDTO> page = new SliceImpl<BookDTO>(list, pageRequest, false);
+        when( repository.findSlice(any(Specification.class), any(PageRequest.class), eq(BookRepository.BOOK_DTO))).thenReturn(page);
         //cenario
-        Page<Book> result = service.find(book, pageRequest);
+        Page<BookDTO> result = (Page<BookDTO>) service.find(book, pageRequest, CountMode.EXACT);
         //verificação
         assertThat(result.getTotalElements()).isEqualTo(1);
         assertThat(result.getContent()).isEqualTo(list);
@@ -208,7 +321,7 @@ public class BookServiceTest {
         when(repository.findByIsbn(isbn)).thenReturn(Optional.of(Book.builder().id(1L).isbn(isbn).build()));
 
         //execução
-        Optional<Book> book = service.getBookByIsbn(isbn);
+        Optional<BookSnapshotDTO> book = service.getBookByIsbn(isbn);
 
         //verificação
         assertThat(book.isPresent()).isTrue();
@@ -218,4 +331,47 @@ public class BookServiceTest {
         verify(repository, times(1)).findByIsbn(isbn);
 
     }
+
+    @Test
+    @DisplayName("Deve importar em lote apenas os livros com isbn novo")
+    public void saveBatchTest(){
+        //cenario
+        ReflectionTestUtils.setField(service, "entityManager", mock(EntityManager.class));
+        Book existing = Book.builder().isbn("001").build();
+        Book created = Book.builder().isbn("002").build();
+        Book repeated = Book.builder().isbn("002").build();
+        when(repository.findExistingIsbns(anyCollection())).thenReturn(Collections.singleton("001"));
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            created.setId(10L);
+            return invocation.getArgument(0);
+        });
+
+        //execução
+        List<BatchItemResultDTO> results = service.saveBatch(Arrays.asList(existing, created, repeated));
+
+        //verificação
+        assertThat(results).extracting(BatchItemResultDTO::getStatus)
+                .containsExactly(BatchItemStatus.DUPLICATE, BatchItemStatus.CREATED, BatchItemStatus.DUPLICATE);
+        assertThat(results.get(1).getId()).isEqualTo(10L);
+        verify(repository, times(1)).findExistingIsbns(anyCollection());
+        verify(repository).saveAll(Collections.singletonList(created));
+    }
+
+    @Test
+    @DisplayName("Deve pesquisar livros pelo indice mantendo a ordem de relevancia")
+    public void searchTest(){
+        //cenario
+        Book first = Book.builder().id(3L).isbn("003").build();
+        Book second = Book.builder().id(1L).isbn("001").build();
+        when(searchIndex.search("tdd")).thenReturn(Arrays.asList(3L, 1L, 2L));
+        when(repository.findAllById(Arrays.asList(3L, 1L))).thenReturn(Arrays.asList(second, first));
+
+        //execução
+        Page<Book> result = service.search("tdd", PageRequest.of(0, 2));
+
+        //verificação
+        assertThat(result.getContent()).containsExactly(first, second);
+        assertThat(result.getTotalElements()).isEqualTo(3);
+        verify(repository, never()).findAll(any(Example.class), any(PageRequest.class));
+    }
 }
@@ -0,0 +1,153 @@
+package com.labinf.libraryapi.service;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.labinf.libraryapi.dto.LateLoanDTO;
+import com.labinf.libraryapi.service.impl.EmailServiceImpl;
+import com.labinf.libraryapi.service.mail.LateLoanDigest;
+import com.labinf.libraryapi.service.mail.MailDispatchReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.mail.Message;
+import javax.mail.internet.MimeMessage;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmailServiceTest {
+
+    GreenMail smtp;
+
+    ThreadPoolTaskExecutor executor;
+
+    EmailServiceImpl service;
+
+    @BeforeEach
+    public void setUp(){
+        smtp = new GreenMail(ServerSetupTest.SMTP);
+        smtp.start();
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.initialize();
+
+        service = new EmailServiceImpl(mailSender, executor, "mail@library-api.com", 2, 0);
+    }
+
+    @AfterEach
+    public void tearDown(){
+        service.close();
+        executor.shutdown();
+        smtp.stop();
+    }
+
+    @Test
+    @DisplayName("Deve enviar um unico email por cliente listando todos os livros atrasados")
+    public void sendDigestsTest() throws Exception {
+        //cenario
+        List<LateLoanDigest> digests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            digests.add(LateLoanDigest.builder()
+                    .customer("Cliente " + i)
+                    .email("cliente" + i + "@email.com")
+                    .loans(Arrays.asList(lateLoan("Livro A"), lateLoan("Livro B")))
+                    .build());
+        }
+
+        //execução
+        MailDispatchReport report = service.sendDigests("Devolva os livros", digests);
+
+        //verificação
+        assertThat(report.getSent()).isEqualTo(5);
+        assertThat(report.getFailedCount()).isZero();
+        // the connections stay open, the server may still be storing the last message
+        assertThat(smtp.waitForIncomingEmail(5000, 5)).isTrue();
+        MimeMessage[] received = smtp.getReceivedMessages();
+        assertThat(received).hasSize(5);
+        for (MimeMessage message : received) {
+            assertThat(message.getRecipients(Message.RecipientType.TO)).hasSize(1);
+            assertThat(String.valueOf(message.getContent())).contains("Livro A", "Livro B");
+        }
+    }
+
+    @Test
+    @DisplayName("Deve reportar como falha os emails que o servidor nao aceitou")
+    public void sendDigestsServerDownTest(){
+        //cenario
+        smtp.stop();
+        List<LateLoanDigest> digests = Arrays.asList(
+                LateLoanDigest.builder().customer("Fulano").email("fulano@email.com")
+                        .loans(Arrays.asList(lateLoan("Livro A"))).build());
+
+        //execução
+        MailDispatchReport report = service.sendDigests("Devolva os livros", digests);
+
+        //verificação
+        assertThat(report.getSent()).isZero();
+        assertThat(report.getFailed()).containsExactlyElementsOf(digests);
+    }
+
+    @Test
+    @DisplayName("Deve reaproveitar as conexoes SMTP entre envios")
+    public void sendDigestsReusedConnectionTest(){
+        //cenario
+        List<LateLoanDigest> first = digests("primeiro", 4);
+        List<LateLoanDigest> second = digests("segundo", 4);
+
+        //execução
+        MailDispatchReport firstReport = service.sendDigests("Devolva os livros", first);
+        MailDispatchReport secondReport = service.sendDigests("Devolva os livros", second);
+
+        //verificação
+        assertThat(firstReport.getSent()).isEqualTo(4);
+        assertThat(secondReport.getSent()).isEqualTo(4);
+        assertThat(smtp.waitForIncomingEmail(5000, 8)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve respeitar o limite de emails por segundo dentro de um mesmo lote")
+    public void sendDigestsThrottleTest(){
+        //cenario
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        EmailServiceImpl throttled = new EmailServiceImpl(mailSender, executor, "mail@library-api.com", 5, 20);
+
+        //execução
+        long start = System.nanoTime();
+        MailDispatchReport report = throttled.sendDigests("Devolva os livros", digests("cliente", 5));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        throttled.close();
+
+        //verificação
+        assertThat(report.getSent()).isEqualTo(5);
+        // five messages at 20 per second need four intervals of 50 ms
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(200);
+    }
+
+    private List<LateLoanDigest> digests(String prefix, int count){
+        List<LateLoanDigest> digests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            digests.add(LateLoanDigest.builder().customer("Cliente " + i).email(prefix + i + "@email.com")
+                    .loans(Arrays.asList(lateLoan("Livro A"))).build());
+        }
+        return digests;
+    }
+
+    private LateLoanDTO lateLoan(String title){
+        return LateLoanDTO.builder().bookTitle(title).bookIsbn("123").loanDate(LocalDate.now().minusDays(5)).build();
+    }
+}
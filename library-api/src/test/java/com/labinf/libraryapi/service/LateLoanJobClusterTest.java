@@ -0,0 +1,282 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.LibraryApiApplication;
+import com.labinf.libraryapi.dto.IdRangeDTO;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.entity.JobShard;
+import com.labinf.libraryapi.model.entity.LateLoanNotification;
+import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.model.repository.JobShardRepository;
+import com.labinf.libraryapi.model.repository.LateLoanNotificationRepository;
+import com.labinf.libraryapi.model.repository.LoanRepository;
+import com.labinf.libraryapi.service.jobs.ShardedJobs;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Several application contexts on the same in-memory database stand for the nodes of a cluster.
+ */
+public class LateLoanJobClusterTest {
+
+    static final int NODES = 3;
+    static final int SHARDS = 6;
+    static final int LATE_LOANS = 60;
+
+    static List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    @BeforeAll
+    public static void startNodes() {
+        for (int i = 0; i < NODES; i++) {
+            nodes.add(new SpringApplicationBuilder(LibraryApiApplication.class)
+                    .profiles("test")
+                    .run("--spring.datasource.url=jdbc:h2:mem:late-loan-cluster-test;DB_CLOSE_DELAY=-1",
+                            "--server.port=0",
+                            "--spring.jmx.enabled=false",
+                            "--spring.boot.admin.client.enabled=false",
+                            "--application.jobs.late-loans.shards=" + SHARDS,
+                            // scheduled runs only fire at startup, the test drives the jobs itself
+                            "--application.jobs.takeover-delay=PT1H",
+                            "--application.mail.outbox.relay-delay=PT1H"));
+        }
+    }
+
+    @AfterAll
+    public static void stopNodes() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        node(0).getBean(JobShardRepository.class).deleteAll();
+        node(0).getBean(LateLoanNotificationRepository.class).deleteAll();
+        node(0).getBean(LoanRepository.class).deleteAll();
+        node(0).getBean(BookRepository.class).deleteAll();
+        BookRepository books = node(0).getBean(BookRepository.class);
+        LoanRepository loans = node(0).getBean(LoanRepository.class);
+        for (int i = 0; i < LATE_LOANS; i++) {
+            Book book = books.save(Book.builder().title("Livro " + i).author("Autor").isbn("cluster-" + i).build());
+            loans.save(Loan.builder().book(book).customer("Cliente " + i).customerEmail("cliente" + i + "@email.com")
+                    .loanDate(LocalDate.now().minusDays(10)).build());
+        }
+    }
+
+    @Test
+    @DisplayName("Deve enfileirar cada emprestimo atrasado uma unica vez quando todos os nós disparam juntos")
+    public void allNodesFireTogetherTest() throws Exception {
+        //cenario
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(NODES);
+        List<Future<?>> runs = new ArrayList<>();
+
+        //execução
+        try {
+            for (ConfigurableApplicationContext node : nodes) {
+                runs.add(executor.submit(() -> {
+                    start.await();
+                    node.getBean(ScheduleService.class).sendMailToLateLoans();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        //verificação
+        List<LateLoanNotification> notifications = node(0).getBean(LateLoanNotificationRepository.class).findAll();
+        List<JobShard> shards = node(0).getBean(JobShardRepository.class).findAll();
+        assertThat(notifications).hasSize(LATE_LOANS);
+        assertThat(notifications.stream().map(LateLoanNotification::getLoanId).distinct().count()).isEqualTo(LATE_LOANS);
+        assertThat(shards).hasSize(SHARDS);
+        assertThat(shards).allMatch(shard -> shard.getDoneAt() != null);
+    }
+
+    @Test
+    @DisplayName("Deve assumir o shard de um nó parado quando a sua concessão expirar")
+    public void takeOverExpiredLeaseTest() {
+        //cenario
+        JobShardRepository shards = node(0).getBean(JobShardRepository.class);
+        node(0).getBean(ShardedJobs.class).plan(ScheduleService.LATE_LOANS_JOB, LocalDate.now().toString(), SHARDS,
+                node(0).getBean(LoanService.class).getLateLoanIdRange());
+        List<JobShard> planned = shards.findAll();
+        JobShard crashed = planned.get(0);
+        crashed.setOwner("crashed-node");
+        crashed.setLeaseUntil(LocalDateTime.now().minusMinutes(1));
+        JobShard running = planned.get(1);
+        running.setOwner("running-node");
+        running.setLeaseUntil(LocalDateTime.now().plusHours(1));
+        shards.saveAll(planned);
+
+        //execução
+        node(1).getBean(ScheduleService.class).resumeLateLoans();
+        node(2).getBean(ScheduleService.class).resumeLateLoans();
+
+        //verificação
+        List<JobShard> after = shards.findAll();
+        String[] owners = nodes.stream().map(node -> node.getBean(ShardedJobs.class).getOwner()).toArray(String[]::new);
+        assertThat(after).filteredOn(shard -> shard.getId().equals(crashed.getId()))
+                .allMatch(shard -> shard.getDoneAt() != null && !shard.getOwner().equals("crashed-node"));
+        assertThat(after).filteredOn(shard -> shard.getId().equals(running.getId()))
+                .allMatch(shard -> shard.getDoneAt() == null && shard.getOwner().equals("running-node"));
+        assertThat(after).filteredOn(shard -> !shard.getId().equals(running.getId()))
+                .allMatch(shard -> shard.getDoneAt() != null)
+                .extracting(JobShard::getOwner).isSubsetOf(owners);
+        List<Long> queued = node(0).getBean(LateLoanNotificationRepository.class).findAll().stream()
+                .map(LateLoanNotification::getLoanId).collect(Collectors.toList());
+        assertThat(queued).doesNotHaveDuplicates()
+                .noneMatch(loanId -> loanId >= running.getFromId() && loanId <= running.getToId());
+    }
+
+    @Test
+    @DisplayName("Deve reagendar com backoff o shard que falhou e desistir dele no limite de tentativas")
+    public void failedShardBackoffTest() {
+        //cenario
+        JobShardRepository shards = node(0).getBean(JobShardRepository.class);
+        MovableClock clock = new MovableClock();
+        ShardedJobs jobs = shardedJobs(clock);
+        jobs.plan("failing-job", "run", 1, node(0).getBean(LoanService.class).getLateLoanIdRange());
+        AtomicInteger calls = new AtomicInteger();
+        ShardedJobs.ShardWork failing = (fromId, toId, renewLease) -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("falhou");
+        };
+
+        //execução
+        int completed = jobs.drain("failing-job", failing);
+        jobs.drain("failing-job", failing);
+
+        //verificação
+        assertThat(completed).isZero();
+        assertThat(calls).hasValue(1);
+        JobShard failed = shards.findAll().get(0);
+        assertThat(failed.getAttempts()).isEqualTo(1);
+        assertThat(failed.getLastError()).isEqualTo("falhou");
+        assertThat(failed.getLeaseUntil()).isEqualTo(clock.now().plus(jobs.backoff(1)));
+        assertThat(failed.getFailedAt()).isNull();
+
+        clock.advance(jobs.backoff(1).plusSeconds(1));
+        jobs.drain("failing-job", failing);
+        assertThat(calls).hasValue(2);
+        assertThat(shards.findAll().get(0).getAttempts()).isEqualTo(2);
+
+        JobShard last = shards.findAll().get(0);
+        last.setAttempts(4);
+        last.setLeaseUntil(clock.now().minusMinutes(1));
+        shards.save(last);
+        jobs.drain("failing-job", failing);
+        clock.advance(Duration.ofDays(1));
+        jobs.drain("failing-job", failing);
+        JobShard givenUp = shards.findAll().get(0);
+        assertThat(calls).hasValue(3);
+        assertThat(givenUp.getAttempts()).isEqualTo(5);
+        assertThat(givenUp.getFailedAt()).isNotNull();
+        assertThat(givenUp.getLeaseUntil()).isNull();
+        assertThat(givenUp.getDoneAt()).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve renovar a concessão do shard durante o trabalho e parar quando outro nó o assumir")
+    public void renewLeaseTest() {
+        //cenario
+        JobShardRepository shards = node(0).getBean(JobShardRepository.class);
+        MovableClock clock = new MovableClock();
+        ShardedJobs jobs = shardedJobs(clock);
+        IdRangeDTO ids = node(0).getBean(LoanService.class).getLateLoanIdRange();
+        jobs.plan("long-job", "run", 1, ids);
+        jobs.plan("stolen-job", "run", 1, ids);
+        List<Long> freeWhileRunning = new ArrayList<>();
+
+        //execução
+        int longCompleted = jobs.drain("long-job", (fromId, toId, renewLease) -> {
+            for (int chunk = 0; chunk < 3; chunk++) {
+                clock.advance(Duration.ofMinutes(8));
+                renewLease.run();
+                freeWhileRunning.addAll(shards.findFreeShardIds("long-job", clock.now().plusMinutes(5)));
+            }
+        });
+        int stolenCompleted = jobs.drain("stolen-job", (fromId, toId, renewLease) -> {
+            JobShard stolen = shards.findAll().stream()
+                    .filter(shard -> shard.getJobName().equals("stolen-job")).findFirst().get();
+            stolen.setOwner("other-node");
+            shards.save(stolen);
+            renewLease.run();
+        });
+
+        //verificação
+        assertThat(longCompleted).isEqualTo(1);
+        assertThat(freeWhileRunning).isEmpty();
+        assertThat(stolenCompleted).isZero();
+        assertThat(shards.findAll()).filteredOn(shard -> shard.getJobName().equals("long-job"))
+                .allMatch(shard -> shard.getDoneAt() != null);
+        assertThat(shards.findAll()).filteredOn(shard -> shard.getJobName().equals("stolen-job"))
+                .allMatch(shard -> shard.getOwner().equals("other-node") && shard.getDoneAt() == null
+                        && shard.getAttempts() == 0 && shard.getFailedAt() == null);
+    }
+
+    private static ShardedJobs shardedJobs(Clock clock) {
+        return new ShardedJobs(node(0).getBean(JobShardRepository.class),
+                node(0).getBean(PlatformTransactionManager.class), clock);
+    }
+
+    private static ConfigurableApplicationContext node(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * Lets a test move the time of the leases forward.
+     */
+    static class MovableClock extends Clock {
+
+        private Instant instant = Instant.now();
+
+        LocalDateTime now() {
+            return LocalDateTime.now(this);
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
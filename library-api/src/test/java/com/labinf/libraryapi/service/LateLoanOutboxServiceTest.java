@@ -0,0 +1,213 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.config.JpaConfig;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.entity.LateLoanNotification;
+import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.entity.NotificationStatus;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.model.repository.LateLoanNotificationRepository;
+import com.labinf.libraryapi.model.repository.LoanRepository;
+import com.labinf.libraryapi.service.availability.LoanedBooksListener;
+import com.labinf.libraryapi.service.cache.BookCacheEvictor;
+import com.labinf.libraryapi.service.impl.LateLoanOutboxServiceImpl;
+import com.labinf.libraryapi.service.impl.LoanServiceImpl;
+import com.labinf.libraryapi.service.mail.LateLoanDigest;
+import com.labinf.libraryapi.service.mail.MailDispatchReport;
+import com.labinf.libraryapi.service.paging.PageCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(JpaConfig.class)
+public class LateLoanOutboxServiceTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LateLoanNotificationRepository repository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    EmailService emailService;
+
+    LateLoanOutboxServiceImpl service;
+
+    @BeforeEach
+    public void setUp(){
+        emailService = Mockito.mock(EmailService.class);
+        Clock clock = Clock.fixed(Instant.now(), ZoneId.systemDefault());
+        service = new LateLoanOutboxServiceImpl(new LoanServiceImpl(loanRepository, bookRepository, new PageCounter(Duration.ofMinutes(1), 1000),
+                Mockito.mock(LoanedBooksListener.class), Mockito.mock(BookCacheEvictor.class)), repository, emailService,
+                entityManager.getEntityManager(), transactionManager, clock);
+    }
+
+    @Test
+    @DisplayName("Deve enfileirar uma notificacao por emprestimo atrasado mesmo executando duas vezes")
+    public void enqueueLateLoansTest(){
+        //cenario
+        createLateLoan("fulano@email.com", "1");
+        createLateLoan("fulano@email.com", "2");
+
+        //execução
+        int first = service.enqueueLateLoans();
+        int second = service.enqueueLateLoans();
+
+        //verificação
+        assertThat(first).isEqualTo(2);
+        assertThat(second).isZero();
+        assertThat(repository.findAll()).hasSize(2)
+                .allMatch(notification -> notification.getStatus() == NotificationStatus.PENDING);
+    }
+
+    @Test
+    @DisplayName("Deve enviar um resumo por cliente e marcar as notificacoes como enviadas")
+    public void relayTest(){
+        //cenario
+        createLateLoan("fulano@email.com", "1");
+        createLateLoan("fulano@email.com", "2");
+        createLateLoan("ciclano@email.com", "3");
+        service.enqueueLateLoans();
+        when(emailService.sendDigests(any(), anyList()))
+                .thenAnswer(invocation -> new MailDispatchReport(invocation.<List<?>>getArgument(1).size(), Collections.emptyList(), 1));
+
+        //execução
+        MailDispatchReport report = service.relay();
+
+        //verificação
+        ArgumentCaptor<List<LateLoanDigest>> digests = ArgumentCaptor.forClass(List.class);
+        verify(emailService).sendDigests(any(), digests.capture());
+        assertThat(digests.getValue()).hasSize(2);
+        assertThat(report.getSent()).isEqualTo(2);
+        assertThat(repository.findAll()).allMatch(notification -> notification.getStatus() == NotificationStatus.SENT);
+        assertThat(service.relay().getSent()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve reagendar com backoff e depois enviar para dead letter as notificacoes que falharam")
+    public void relayFailureTest(){
+        //cenario
+        createLateLoan("fulano@email.com", "1");
+        service.enqueueLateLoans();
+        when(emailService.sendDigests(any(), anyList()))
+                .thenAnswer(invocation -> new MailDispatchReport(0, invocation.getArgument(1), 1));
+
+        //execução
+        service.relay();
+
+        //verificação
+        LateLoanNotification notification = repository.findAll().get(0);
+        assertThat(notification.getStatus()).isEqualTo(NotificationStatus.PENDING);
+        assertThat(notification.getAttempts()).isEqualTo(1);
+        assertThat(notification.getNextAttemptAt()).isAfter(notification.getCreatedAt());
+        assertThat(service.relay().getFailedCount()).isZero();
+
+        notification.setAttempts(4);
+        notification.setNextAttemptAt(notification.getCreatedAt());
+        repository.saveAndFlush(notification);
+        service.relay();
+        assertThat(repository.findAll().get(0).getStatus()).isEqualTo(NotificationStatus.DEAD);
+    }
+
+    @Test
+    @DisplayName("Deve liberar com backoff as notificacoes reservadas quando o envio lancar erro")
+    public void relayExceptionTest(){
+        //cenario
+        createLateLoan("fulano@email.com", "1");
+        createLateLoan("ciclano@email.com", "2");
+        service.enqueueLateLoans();
+        when(emailService.sendDigests(any(), anyList())).thenThrow(new IllegalStateException("SMTP fora do ar"));
+
+        //execução
+        MailDispatchReport report = service.relay();
+
+        //verificação
+        verify(emailService, times(1)).sendDigests(any(), anyList());
+        assertThat(report.getSent()).isZero();
+        assertThat(report.getFailedCount()).isEqualTo(2);
+        assertThat(repository.findAll()).hasSize(2).allSatisfy(notification -> {
+            assertThat(notification.getStatus()).isEqualTo(NotificationStatus.PENDING);
+            assertThat(notification.getAttempts()).isEqualTo(1);
+            assertThat(notification.getNextAttemptAt()).isAfter(notification.getCreatedAt());
+            assertThat(notification.getClaimedBy()).isNull();
+            assertThat(notification.getClaimedUntil()).isNull();
+            assertThat(notification.getLastError()).isEqualTo("SMTP fora do ar");
+        });
+    }
+
+    @Test
+    @DisplayName("Não deve sobrescrever as notificacoes reservadas de novo por outro relay")
+    public void relayClaimTakenOverTest(){
+        //cenario
+        createLateLoan("fulano@email.com", "1");
+        createLateLoan("ciclano@email.com", "2");
+        service.enqueueLateLoans();
+        when(emailService.sendDigests(any(), anyList())).thenAnswer(invocation -> {
+            // the claim expired while sending and another relay took the rows over
+            repository.findAll().forEach(notification -> notification.setClaimedBy("outro-relay"));
+            repository.flush();
+            return new MailDispatchReport(1, invocation.<List<LateLoanDigest>>getArgument(1).subList(1, 2), 1);
+        });
+
+        //execução
+        service.relay();
+
+        //verificação
+        assertThat(repository.findAll()).hasSize(2).allSatisfy(notification -> {
+            assertThat(notification.getStatus()).isEqualTo(NotificationStatus.SENDING);
+            assertThat(notification.getClaimedBy()).isEqualTo("outro-relay");
+            assertThat(notification.getAttempts()).isZero();
+            assertThat(notification.getSentAt()).isNull();
+        });
+    }
+
+    @Test
+    @DisplayName("Deve dobrar o intervalo entre tentativas ate o limite")
+    public void backoffTest(){
+        assertThat(service.backoff(1)).hasMinutes(1);
+        assertThat(service.backoff(3)).hasMinutes(4);
+        assertThat(service.backoff(20)).hasHours(1);
+    }
+
+    private void createLateLoan(String email, String isbn){
+        Book book = Book.builder().author("Diego").title("TDD").isbn(isbn).build();
+        entityManager.persist(book);
+        Loan loan = Loan.builder().book(book).customer("Fulano").customerEmail(email)
+                .loanDate(LocalDate.now().minusDays(10)).build();
+        entityManager.persist(loan);
+    }
+}
@@ -0,0 +1,153 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.exceptions.BusinessException;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.model.repository.LoanRepository;
+import com.labinf.libraryapi.service.availability.LoanedBooks;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@ActiveProfiles("test")
+@SpringBootTest(properties = "spring.datasource.generate-unique-name=true")
+public class LoanCheckoutStressTest {
+
+    static int BOOKS = 4;
+    static int THREADS = 16;
+    static int ROUNDS = 25;
+
+    @Autowired
+    LoanService service;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    LoanedBooks loanedBooks;
+
+    @Test
+    @DisplayName("Não deve haver dois emprestimos abertos do mesmo livro sob checkouts concorrentes")
+    public void concurrentCheckoutStressTest() throws Exception {
+        //cenario
+        List<Book> books = IntStream.range(0, BOOKS)
+                .mapToObj(i -> bookRepository.save(Book.builder().title("Livro " + i).author("Autor").isbn("stress-" + i).build()))
+                .collect(Collectors.toList());
+        AtomicInteger conflicts = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long begin = System.nanoTime();
+
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                //execução
+                // every thread tries every book at once and the winners keep their loans until the round is checked
+                Map<Long, Queue<Loan>> winners = new ConcurrentHashMap<>();
+                books.forEach(book -> winners.put(book.getId(), new ConcurrentLinkedQueue<>()));
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> workers = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    workers.add(executor.submit(() -> {
+                        start.await();
+                        List<Book> order = new ArrayList<>(books);
+                        Collections.shuffle(order);
+                        for (Book book : order) {
+                            try {
+                                winners.get(book.getId()).add(service.save(Loan.builder().book(book)
+                                        .customer("Fulano").loanDate(LocalDate.now()).build()));
+                            } catch (BusinessException e) {
+                                if (BusinessException.ALREADY_LOANED.equals(e.getMessage())) {
+                                    conflicts.incrementAndGet();
+                                } else {
+                                    unexpected.add(e);
+                                }
+                            } catch (RuntimeException e) {
+                                unexpected.add(e);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+
+                //verificação
+                assertThat(unexpected).as("round %d", round).isEmpty();
+                Map<Long, List<Long>> openByBook = loanRepository.findAll().stream()
+                        .filter(loan -> loan.getActiveBook() != null)
+                        .collect(Collectors.groupingBy(Loan::getActiveBook, Collectors.mapping(Loan::getId, Collectors.toList())));
+                for (Book book : bookRepository.findAllById(winners.keySet())) {
+                    List<Long> won = winners.get(book.getId()).stream().map(Loan::getId).collect(Collectors.toList());
+                    assertThat(won).as("round %d, winners of book %d", round, book.getId()).hasSize(1);
+                    assertThat(openByBook.get(book.getId())).as("round %d, open loans of book %d", round, book.getId())
+                            .containsExactlyElementsOf(won);
+                    assertThat(book.getActiveLoanId()).as("round %d, active loan of book %d", round, book.getId())
+                            .isEqualTo(won.get(0));
+                    assertThat(loanedBooks.isLoaned(book.getId())).as("round %d, book %d loaned", round, book.getId()).isTrue();
+                }
+
+                winners.values().forEach(loans -> loans.forEach(loan -> service.markReturned(loan.getId(), null, true)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int checkouts = ROUNDS * BOOKS;
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        log.info("{} checkouts and {} conflicts in {} s with {} threads over {} books",
+                checkouts, conflicts.get(), String.format("%.2f", seconds), THREADS, BOOKS);
+        assertThat(conflicts.get()).isEqualTo(ROUNDS * BOOKS * (THREADS - 1));
+        Set<Long> bookIds = books.stream().map(Book::getId).collect(Collectors.toSet());
+        assertThat(loanRepository.findAll()).filteredOn(loan -> bookIds.contains(loan.getBook().getId()))
+                .hasSize(checkouts).allMatch(loan -> loan.getActiveBook() == null);
+        assertThat(books).noneMatch(book -> loanedBooks.isLoaned(book.getId()));
+    }
+
+    @Test
+    @DisplayName("Deve emprestar o livro depois de salvar um emprestimo já devolvido do mesmo livro")
+    public void saveReturnedThenCheckoutTest() {
+        //cenario
+        Book book = bookRepository.save(Book.builder().title("Livro").author("Autor").isbn("returned-first").build());
+        Loan returned = service.save(Loan.builder().book(book).customer("Fulano")
+                .loanDate(LocalDate.now()).returned(true).build());
+
+        //execução
+        Loan open = service.save(Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).build());
+
+        //verificação
+        assertThat(returned.getActiveBook()).isNull();
+        assertThat(open.getActiveBook()).isEqualTo(book.getId());
+        assertThat(bookRepository.findById(book.getId()).get().getActiveLoanId()).isEqualTo(open.getId());
+        assertThat(loanedBooks.isLoaned(book.getId())).isTrue();
+        service.markReturned(open.getId(), null, true);
+    }
+}
@@ -1,27 +1,50 @@
 package com.labinf.libraryapi.service;
 
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.dto.BatchItemResultDTO;
+import com.labinf.libraryapi.dto.BatchItemStatus;
+import com.labinf.libraryapi.dto.LateLoanDTO;
 import com.labinf.libraryapi.dto.LoanFilterDTO;
+import com.labinf.libraryapi.dto.LoanStateDTO;
+import com.labinf.libraryapi.dto.ReturnedLoanDTO;
 import com.labinf.libraryapi.exceptions.BusinessException;
 import com.labinf.libraryapi.model.entity.Book;
 import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.repository.BookRepository;
 import com.labinf.libraryapi.model.repository.LoanRepository;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.service.availability.LoanedBooksListener;
+import com.labinf.libraryapi.service.cache.BookCacheEvictor;
 import com.labinf.libraryapi.service.impl.LoanServiceImpl;
+import com.labinf.libraryapi.service.paging.PageCounter;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import javax.persistence.EntityManager;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
@@ -33,11 +56,22 @@ public class LoanServiceTest {
     @MockBean
     LoanRepository repository;
 
+    @MockBean
+    BookRepository bookRepository;
+
+    @MockBean
+    LoanedBooksListener loanedBooksListener;
+
+    @MockBean
+    BookCacheEvictor bookCacheEvictor;
+
     LoanService service;
 
     @BeforeEach
     public void setUp(){
-        this.service = new LoanServiceImpl(repository);
+        this.service = new LoanServiceImpl(repository, bookRepository, new PageCounter(Duration.ofMinutes(1), 1000), loanedBooksListener,
+                bookCacheEvictor);
+        ReflectionTestUtils.setField(service, "entityManager", mock(EntityManager.class));
     }
 
     @Test
@@ -55,14 +89,17 @@ public class LoanServiceTest {
                 .id(1L)
                 .customer(customer)
                 .loanDate(LocalDate.now())
+                .activeBook(1L)
                 .build();
-        when(repository.existsByBookAndNotReturned(book)).thenReturn(false);
         when(repository.save(savingLoan)).thenReturn(savedLoan);
+        when(bookRepository.claim(1L, 1L)).thenReturn(1);
 
         //execução
         Loan loan = service.save(savingLoan);
 
         //verificação
+        verify(bookRepository).claim(1L, 1L);
+        verify(repository).flush();
         assertThat(loan.getId()).isEqualTo(savedLoan.getId());
         assertThat(loan.getBook().getId()).isEqualTo(savedLoan.getBook().getId());
         assertThat(loan.getCustomer()).isEqualTo(savedLoan.getCustomer());
@@ -81,14 +118,62 @@ public class LoanServiceTest {
                 .loanDate(LocalDate.now())
                 .build();
 
-        when(repository.existsByBookAndNotReturned(book)).thenReturn(true);
+        // the persist sets the active book of an open loan
+        when(repository.save(savingLoan)).thenAnswer(invocation -> {
+            savingLoan.setActiveBook(1L);
+            return savingLoan;
+        });
+        when(bookRepository.claim(eq(1L), any())).thenReturn(0);
+
+        //execução
+        Throwable exception = catchThrowable(() -> service.save(savingLoan));
+
+        //verificação
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book already loaned");
+        verify(repository,never()).existsByBookAndNotReturned(book);
+        verify(repository,never()).flush();
+    }
+
+    @Test
+    @DisplayName("Não deve reservar o livro ao salvar um emprestimo já devolvido")
+    public void saveReturnedLoanTest(){
+        //cenario
+        Loan savingLoan = createLoan();
+        savingLoan.setReturned(true);
+        when(repository.save(savingLoan)).thenAnswer(invocation -> {
+            savingLoan.setId(1L);
+            return savingLoan;
+        });
+
+        //execução
+        Loan loan = service.save(savingLoan);
+
+        //verificação
+        assertThat(loan.getId()).isEqualTo(1L);
+        verify(bookRepository, never()).claim(any(), any());
+        verify(repository).flush();
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de negocio quando a restrição de emprestimo aberto é violada")
+    public void loanedBookConstraintSaveTest(){
+        //cenario
+        Loan savingLoan = createLoan();
+        // the persist sets the active book of an open loan
+        when(repository.save(savingLoan)).thenAnswer(invocation -> {
+            savingLoan.setActiveBook(1L);
+            return savingLoan;
+        });
+        when(bookRepository.claim(eq(1L), any())).thenReturn(1);
+        doThrow(new DataIntegrityViolationException("duplicated",
+                new ConstraintViolationException("duplicated", null, "PUBLIC.UK_LOAN_ACTIVE_BOOK_INDEX_2")))
+                .when(repository).flush();
 
         //execução
         Throwable exception = catchThrowable(() -> service.save(savingLoan));
 
         //verificação
         assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book already loaned");
-        verify(repository,never()).save(savingLoan);
     }
 
     @Test
@@ -115,41 +200,87 @@ public class LoanServiceTest {
     }
 
     @Test
-    @DisplayName("Deve atualizar um empréstimo")
-    public void updateLoanTest(){
+    @DisplayName("Deve devolver um empréstimo com uma unica escrita sem carrega-lo")
+    public void markReturnedTest(){
         //cenario
-        Long id = 1L;
-        Loan loan = createLoan();
-        loan.setId(id);
-        loan.setReturned(true);
+        when(repository.findState(1L)).thenReturn(Optional.of(LoanStateDTO.builder().bookId(1L).activeBook(1L).version(4L).build()));
+        when(repository.markReturned(1L, 4L, true, LocalDate.now(), null)).thenReturn(1);
+
+        //execução
+        Optional<Long> version = service.markReturned(1L, 4L, true);
+
+        //verificação
+        assertThat(version).contains(5L);
+        verify(repository, never()).findById(1L);
+        verify(repository, never()).save(Mockito.any(Loan.class));
+        verify(bookRepository).syncActiveLoan(Collections.singleton(1L));
+        verify(loanedBooksListener).activeBookChanged(1L, null);
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de concorrencia ao devolver um empréstimo com versao desatualizada")
+    public void markReturnedStaleTest(){
+        //cenario
+        when(repository.findState(1L)).thenReturn(Optional.of(LoanStateDTO.builder().bookId(1L).activeBook(1L).version(4L).build()));
+        when(repository.markReturned(1L, 4L, true, LocalDate.now(), null)).thenReturn(0);
 
-        when(repository.save(loan)).thenReturn(loan);
+        //execução
+        Throwable exception = catchThrowable(() -> service.markReturned(1L, 4L, true));
 
-        Loan updatedLoan = service.update(loan);
+        //verificação
+        assertThat(exception).isInstanceOf(OptimisticLockingFailureException.class);
+        verify(bookRepository, never()).syncActiveLoan(Mockito.anyCollection());
+        verify(loanedBooksListener, never()).activeBookChanged(Mockito.any(), Mockito.any());
+    }
 
-        assertThat(updatedLoan.getReturned()).isTrue();
-        verify(repository).save(loan);
+    @Test
+    @DisplayName("Deve retornar vazio ao devolver um empréstimo inexistente")
+    public void markReturnedNotFoundTest(){
+        //cenario
+        when(repository.findState(1L)).thenReturn(Optional.empty());
+
+        //execução
+        Optional<Long> version = service.markReturned(1L, null, true);
 
+        //verificação
+        assertThat(version).isEmpty();
+        verify(repository, never()).markReturned(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     @Test
     @DisplayName("Deve filtrar emprestimos pelas propriedades")
     public void findLoanTest(){
         //cenario
-        Loan loan = createLoan();
         PageRequest pageRequest = PageRequest.of(0, 10);
-        List<Loan> list = Arrays.asList(loan);
-        Page<Loan> page = new PageImpl<Loan>(list, pageRequest, 1);
-        when( repository.findByBookIsbnOrCustomer(Mockito.anyString(), Mockito.anyString(), any(PageRequest.class))).thenReturn(page);
+        List<LoanDTO> list = Arrays.asList(new LoanDTO(1L, "Fulano", "fulano@email.com", 1L, "TDD", "Diego", "321"));
+        Slice<LoanDTO> page = new SliceImpl<LoanDTO>(list, pageRequest, false);
+        when( repository.findSlice(anyList(), any(PageRequest.class), eq(LoanRepository.LOAN_DTO))).thenReturn(page);
         //execução
-        Page<Loan> result = service.find(LoanFilterDTO.builder().isbn("321").customer("Fulano").build(), pageRequest);
+        Page<LoanDTO> result = (Page<LoanDTO>) service.find(LoanFilterDTO.builder().isbn("321").customer("Fulano").build(), pageRequest, CountMode.EXACT);
         //verificação
+        verify(repository, never()).findSlice(any(Specification.class), any(PageRequest.class), eq(LoanRepository.LOAN_DTO));
         assertThat(result.getTotalElements()).isEqualTo(1);
         assertThat(result.getContent()).isEqualTo(list);
         assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
         assertThat(result.getPageable().getPageSize()).isEqualTo(10);
     }
 
+    @Test
+    @DisplayName("Deve entregar os emprestimos atrasados em blocos de tamanho fixo")
+    public void processLateLoansTest(){
+        //cenario
+        Stream<LateLoanDTO> lateLoans = Stream.of(1L, 2L, 3L, 4L, 5L)
+                .map(id -> LateLoanDTO.builder().loanId(id).customerEmail("customer@email.com").build());
+        when(repository.streamLateLoans(any(LocalDate.class), eq(1L), eq(5L))).thenReturn(lateLoans);
+        List<Integer> chunkSizes = new ArrayList<>();
+
+        //execução
+        service.processLateLoans(1L, 5L, 2, chunk -> chunkSizes.add(chunk.size()));
+
+        //verificação
+        assertThat(chunkSizes).containsExactly(2, 2, 1);
+    }
+
     private Loan createLoan(){
         Book book = Book.builder().id(1L).isbn("321").build();
         String customer = "Fulano";
@@ -158,4 +289,57 @@ public class LoanServiceTest {
                 .loanDate(LocalDate.now())
                 .build();
     }
+
+    @Test
+    @DisplayName("Deve realizar emprestimos em lote informando o resultado de cada item")
+    public void saveBatchTest(){
+        //cenario
+        Book available = Book.builder().id(1L).isbn("001").build();
+        Book loaned = Book.builder().id(2L).isbn("002").activeLoanId(5L).build();
+        when(bookRepository.findByIsbnIn(anyCollection())).thenReturn(Arrays.asList(available, loaned));
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Loan> loans = invocation.getArgument(0);
+            loans.forEach(loan -> loan.setId(10L));
+            return loans;
+        });
+
+        //execução
+        List<BatchItemResultDTO> results = service.saveBatch(Arrays.asList(
+                LoanDTO.builder().isbn("001").customer("Fulano").email("fulano@email.com").build(),
+                LoanDTO.builder().isbn("002").customer("Fulano").email("fulano@email.com").build(),
+                LoanDTO.builder().isbn("003").customer("Fulano").email("fulano@email.com").build(),
+                LoanDTO.builder().isbn("001").customer("Ciclano").email("ciclano@email.com").build()));
+
+        //verificação
+        assertThat(results).extracting(BatchItemResultDTO::getStatus).containsExactly(
+                BatchItemStatus.CREATED, BatchItemStatus.ALREADY_LOANED,
+                BatchItemStatus.NOT_FOUND, BatchItemStatus.ALREADY_LOANED);
+        assertThat(results.get(0).getId()).isEqualTo(10L);
+        verify(bookRepository, times(1)).findByIsbnIn(anyCollection());
+        verify(bookRepository, times(1)).syncActiveLoan(Collections.singleton(1L));
+        verify(repository, never()).existsByBookAndNotReturned(any());
+    }
+
+    @Test
+    @DisplayName("Deve devolver emprestimos em lote informando o resultado de cada item")
+    public void returnBatchTest(){
+        //cenario
+        Loan loan = createLoan();
+        loan.setId(1L);
+        when(repository.findAllById(anyIterable())).thenReturn(Collections.singletonList(loan));
+
+        //execução
+        List<BatchItemResultDTO> results = service.returnBatch(Arrays.asList(
+                ReturnedLoanDTO.builder().id(1L).returned(true).build(),
+                ReturnedLoanDTO.builder().id(2L).returned(true).build(),
+                ReturnedLoanDTO.builder().id(1L).returned(true).build()));
+
+        //verificação
+        assertThat(results).extracting(BatchItemResultDTO::getStatus).containsExactly(
+                BatchItemStatus.UPDATED, BatchItemStatus.NOT_FOUND, BatchItemStatus.DUPLICATE);
+        assertThat(loan.getReturned()).isTrue();
+        verify(repository, times(1)).findAllById(anyIterable());
+        verify(repository).flush();
+        verify(bookRepository).syncActiveLoan(Collections.singleton(1L));
+    }
 }
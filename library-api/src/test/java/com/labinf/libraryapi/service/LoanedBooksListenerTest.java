@@ -0,0 +1,114 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.config.JpaConfig;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.entity.Loan;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.model.repository.LoanRepository;
+import com.labinf.libraryapi.service.availability.LoanedBooks;
+import com.labinf.libraryapi.service.availability.LoanedBooksListener;
+import com.labinf.libraryapi.service.availability.LoanedBooksLoader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({JpaConfig.class, LoanedBooks.class, LoanedBooksListener.class, LoanedBooksLoader.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class LoanedBooksListenerTest {
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanedBooks loanedBooks;
+
+    @Autowired
+    LoanedBooksLoader loader;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void tearDown(){
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        loanedBooks.rebuild(bitmap -> { });
+    }
+
+    @Test
+    @DisplayName("Deve marcar o livro como emprestado e devolvido depois do commit")
+    public void loanedAndReturnedAfterCommitTest(){
+        //cenario
+        Book book = bookRepository.save(Book.builder().title("Clean Code").author("Robert Martin").isbn("123").build());
+
+        //execução
+        Loan loan = loanRepository.save(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+
+        //verificação
+        assertThat(loanedBooks.isLoaned(book.getId())).isTrue();
+
+        loan.setCustomer("Ciclano");
+        loan = loanRepository.save(loan);
+        assertThat(loanedBooks.isLoaned(book.getId())).isTrue();
+
+        loan.setReturned(true);
+        loanRepository.save(loan);
+        assertThat(loanedBooks.isLoaned(book.getId())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Não deve marcar o livro como emprestado quando a transação for desfeita")
+    public void rollbackTest(){
+        //cenario
+        Book book = bookRepository.save(Book.builder().title("Clean Code").author("Robert Martin").isbn("123").build());
+
+        //execução
+        new TransactionTemplate(transactionManager).execute(status -> {
+            loanRepository.saveAndFlush(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+            status.setRollbackOnly();
+            return null;
+        });
+
+        //verificação
+        assertThat(loanedBooks.isLoaned(book.getId())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve recarregar os livros emprestados a partir dos emprestimos abertos")
+    public void loadTest(){
+        //cenario
+        Book loaned = bookRepository.save(Book.builder().title("Clean Code").author("Robert Martin").isbn("123").build());
+        Book returned = bookRepository.save(Book.builder().title("Refactoring").author("Martin Fowler").isbn("456").build());
+        loanRepository.save(Loan.builder().book(loaned).customer("Fulano").loanDate(LocalDate.now()).build());
+        loanRepository.save(Loan.builder().book(returned).customer("Fulano").loanDate(LocalDate.now()).returned(true).build());
+        loanedBooks.rebuild(bitmap -> bitmap.accept(returned.getId()));
+
+        //execução
+        loader.load();
+
+        //verificação
+        assertThat(loanedBooks.isLoaned(loaned.getId())).isTrue();
+        assertThat(loanedBooks.isLoaned(returned.getId())).isFalse();
+        assertThat(loanedBooks.size()).isEqualTo(1);
+    }
+}
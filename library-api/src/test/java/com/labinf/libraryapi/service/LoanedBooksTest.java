@@ -0,0 +1,61 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.service.availability.LoanedBooks;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class LoanedBooksTest {
+
+    LoanedBooks loanedBooks;
+
+    @BeforeEach
+    public void setUp(){
+        loanedBooks = new LoanedBooks();
+    }
+
+    @Test
+    @DisplayName("Deve marcar o livro como emprestado e disponivel de novo na devolução")
+    public void loanedAndReturnedTest(){
+        //execução
+        loanedBooks.loaned(1L);
+        loanedBooks.loaned(3_000_000_000L);
+        loanedBooks.returned(1L);
+
+        //verificação
+        assertThat(loanedBooks.isLoaned(1L)).isFalse();
+        assertThat(loanedBooks.isLoaned(3_000_000_000L)).isTrue();
+        assertThat(loanedBooks.size()).isEqualTo(1);
+        assertThat(loanedBooks.availability(Arrays.asList(3_000_000_000L, 1L, 2L)))
+                .containsExactly(entry(3_000_000_000L, false), entry(1L, true), entry(2L, true));
+    }
+
+    @Test
+    @DisplayName("Deve manter as mudanças feitas enquanto os livros emprestados são recarregados")
+    public void rebuildTest(){
+        //cenario
+        loanedBooks.loaned(1L);
+        loanedBooks.loaned(2L);
+
+        //execução
+        loanedBooks.rebuild(bitmap -> {
+            bitmap.accept(2L);
+            bitmap.accept(3L);
+            // a return and a checkout committed after the database was read
+            loanedBooks.returned(3L);
+            loanedBooks.loaned(4L);
+        });
+
+        //verificação
+        assertThat(loanedBooks.isLoaned(1L)).isFalse();
+        assertThat(loanedBooks.isLoaned(2L)).isTrue();
+        assertThat(loanedBooks.isLoaned(3L)).isFalse();
+        assertThat(loanedBooks.isLoaned(4L)).isTrue();
+        assertThat(loanedBooks.size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,155 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import com.labinf.libraryapi.model.repository.support.CountedPage;
+import com.labinf.libraryapi.model.repository.support.CountedSlice;
+import com.labinf.libraryapi.model.repository.support.Filter;
+import com.labinf.libraryapi.service.paging.PageCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+public class PageCounterTest {
+
+    @MockBean
+    BookRepository repository;
+
+    PageCounter pageCounter;
+
+    Specification<Book> spec = (root, query, cb) -> null;
+
+    List<Book> content = Arrays.asList(Book.builder().id(1L).build(), Book.builder().id(2L).build());
+
+    @BeforeEach
+    public void setUp(){
+        pageCounter = new PageCounter(Duration.ofMinutes(1), 100);
+    }
+
+    @Test
+    @DisplayName("Não deve contar quando o modo for none")
+    public void noneTest(){
+        //cenario
+        PageRequest page = PageRequest.of(0, 2);
+        when(repository.findSlice(spec, page)).thenReturn(new SliceImpl<>(content, page, true));
+
+        //execução
+        Slice<Book> result = pageCounter.find(repository, spec, "key", page, CountMode.NONE);
+
+        //verificação
+        assertThat(result).isInstanceOf(CountedSlice.class);
+        assertThat(result.hasNext()).isTrue();
+        verify(repository, never()).count(any(Specification.class));
+    }
+
+    @Test
+    @DisplayName("Não deve contar na ultima pagina")
+    public void lastPageTest(){
+        //cenario
+        PageRequest page = PageRequest.of(3, 2);
+        when(repository.findSlice(spec, page)).thenReturn(new SliceImpl<>(content, page, false));
+
+        //execução
+        CountedPage<Book> result = (CountedPage<Book>) pageCounter.find(repository, spec, "key", page, CountMode.EXACT);
+
+        //verificação
+        assertThat(result.getTotalElements()).isEqualTo(8);
+        assertThat(result.getCountMode()).isEqualTo(CountMode.EXACT);
+        verify(repository, never()).count(any(Specification.class));
+    }
+
+    @Test
+    @DisplayName("Deve reutilizar a contagem do mesmo filtro no modo cached")
+    public void cachedTest(){
+        //cenario
+        PageRequest page = PageRequest.of(0, 2);
+        when(repository.findSlice(any(Specification.class), any(PageRequest.class))).thenReturn(new SliceImpl<>(content, page, true));
+        when(repository.count(spec)).thenReturn(50L);
+
+        //execução
+        pageCounter.find(repository, spec, "key", page, CountMode.CACHED);
+        CountedPage<Book> result = (CountedPage<Book>) pageCounter.find(repository, spec, "key", PageRequest.of(1, 2), CountMode.CACHED);
+        pageCounter.find(repository, spec, "other", page, CountMode.CACHED);
+
+        //verificação
+        assertThat(result.getTotalElements()).isEqualTo(50);
+        assertThat(result.getCountMode()).isEqualTo(CountMode.CACHED);
+        verify(repository, times(2)).count(spec);
+    }
+
+    @Test
+    @DisplayName("Deve limitar a contagem no modo estimated")
+    public void estimatedTest(){
+        //cenario
+        PageRequest page = PageRequest.of(0, 2);
+        when(repository.findSlice(spec, page)).thenReturn(new SliceImpl<>(content, page, true));
+        when(repository.countUpTo(spec, 100)).thenReturn(100L);
+
+        //execução
+        CountedPage<Book> result = (CountedPage<Book>) pageCounter.find(repository, spec, "key", page, CountMode.ESTIMATED);
+
+        //verificação
+        assertThat(result.getTotalElements()).isEqualTo(100);
+        assertThat(result.getCountMode()).isEqualTo(CountMode.ESTIMATED);
+        verify(repository, never()).count(any(Specification.class));
+    }
+
+    @Test
+    @DisplayName("Deve informar contagem exata quando ficar abaixo do limite no modo estimated")
+    public void estimatedBelowCapTest(){
+        //cenario
+        PageRequest page = PageRequest.of(0, 2);
+        when(repository.findSlice(spec, page)).thenReturn(new SliceImpl<>(content, page, true));
+        when(repository.countUpTo(any(Specification.class), anyInt())).thenReturn(7L);
+
+        //execução
+        CountedPage<Book> result = (CountedPage<Book>) pageCounter.find(repository, spec, "key", page, CountMode.ESTIMATED);
+
+        //verificação
+        assertThat(result.getTotalElements()).isEqualTo(7);
+        assertThat(result.getCountMode()).isEqualTo(CountMode.EXACT);
+    }
+
+    @Test
+    @DisplayName("Deve contar um filtro com varios ramos em uma unica consulta no modo exact")
+    public void exactBranchesTest(){
+        //cenario
+        PageRequest page = PageRequest.of(0, 2);
+        Filter<Book> filter = Filter.<Book>anyOf()
+                .with(Filter.<Book>allOf().equal("title", "TDD"))
+                .with(Filter.<Book>allOf().equal("author", "Diego"));
+        List<BookDTO> rows = Arrays.asList(BookDTO.builder().id(1L).build(), BookDTO.builder().id(2L).build());
+        when(repository.findSlice(anyList(), eq(page), eq(BookRepository.BOOK_DTO))).thenReturn(new SliceImpl<>(rows, page, true));
+        when(repository.count(anyList())).thenReturn(9L);
+
+        //execução
+        CountedPage<BookDTO> result = (CountedPage<BookDTO>) pageCounter.find(repository, filter, "key", page, CountMode.EXACT, BookRepository.BOOK_DTO);
+
+        //verificação
+        assertThat(result.getTotalElements()).isEqualTo(9);
+        verify(repository, times(1)).count(argThat((List<Specification<Book>> branches) -> branches.size() == 2));
+        verify(repository, never()).count(any(Specification.class));
+        verify(repository, never()).countUpTo(anyList(), anyInt());
+    }
+}
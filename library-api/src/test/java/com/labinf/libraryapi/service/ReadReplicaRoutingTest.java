@@ -0,0 +1,107 @@
+package com.labinf.libraryapi.service;
+
+import com.labinf.libraryapi.api.dto.LoanDTO;
+import com.labinf.libraryapi.config.routing.ReplicaRouting;
+import com.labinf.libraryapi.dto.BookDTO;
+import com.labinf.libraryapi.dto.LoansPageDTO;
+import com.labinf.libraryapi.model.entity.Book;
+import com.labinf.libraryapi.model.repository.BookRepository;
+import com.labinf.libraryapi.model.repository.support.CountMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "spring.datasource.generate-unique-name=true",
+        "application.datasource.replica.urls=" + ReadReplicaRoutingTest.REPLICA_URL,
+        "application.datasource.replica.migrate=true"
+})
+public class ReadReplicaRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica-routing-test;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    BookRepository repository;
+
+    JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll();
+        replica.update("delete from loan");
+        replica.update("delete from book");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReplicaRouting.endRequest();
+    }
+
+    @Test
+    @DisplayName("Deve gravar no primario e listar livros a partir da replica")
+    public void readFromReplicaTest() {
+        //cenario
+        service.save(Book.builder().title("As aventuras").author("Fulano").isbn("123").build());
+        replica.update("insert into book (id, title, author, isbn) values (9000, 'Da replica', 'Ciclano', '999')");
+
+        //execução
+        Slice<BookDTO> result = service.find(new Book(), PageRequest.of(0, 10), CountMode.EXACT);
+
+        //verificação
+        assertThat(repository.findByIsbn("123")).isPresent();
+        assertThat(result.getContent()).extracting(BookDTO::getIsbn).containsExactly("999");
+    }
+
+    @Test
+    @DisplayName("Deve ler do primario depois de uma escrita na mesma requisição")
+    public void readYourWritesTest() {
+        //cenario
+        ReplicaRouting.beginRequest();
+
+        //execução
+        service.save(Book.builder().title("As aventuras").author("Fulano").isbn("123").build());
+        Slice<BookDTO> result = service.find(new Book(), PageRequest.of(0, 10), CountMode.EXACT);
+
+        //verificação
+        assertThat(ReplicaRouting.isPinnedToPrimary()).isTrue();
+        assertThat(result.getContent()).extracting(BookDTO::getIsbn).containsExactly("123");
+    }
+
+    @Test
+    @DisplayName("Deve ler a versao e a pagina dos emprestimos de um livro da mesma replica")
+    public void loansByBookFromOneReplicaTest() {
+        //cenario
+        replica.update("insert into book (id, title, author, isbn) values (9000, 'Da replica', 'Ciclano', '999')");
+        replica.update("insert into loan (id, customer, customer_email, id_book, loan_date, version) " +
+                "values (9001, 'Fulano', 'fulano@email.com', 9000, current_date, 0)");
+
+        //execução
+        Optional<LoansPageDTO> loans = loanService.getLoansByBook(9000L, PageRequest.of(0, 10), CountMode.EXACT,
+                version -> false);
+
+        //verificação
+        assertThat(repository.findById(9000L)).isNotPresent();
+        assertThat(loans).isPresent();
+        assertThat(loans.get().getVersion().getCount()).isEqualTo(1L);
+        assertThat(loans.get().getPage().getContent()).extracting(LoanDTO::getId).containsExactly(9001L);
+    }
+}